@@ -0,0 +1,70 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Counts the states A* expands with the landmark bounds against the Manhattan distance, on a generated maze.
+ *
+ * Usage: java mycontroller.utilities.AltBench <maze size> <loops> <queries>
+ *
+ * Each query is between two random roads, starting in a random heading. Both searches must find the same cost as
+ * TurnAwarePlanner, or the query counts as a mismatch.
+ */
+public class AltBench {
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: java mycontroller.utilities.AltBench <size> <loops> <queries>");
+        }
+        final int size = Integer.parseInt(args[0]);
+        final double loops = Double.parseDouble(args[1]);
+        final int queries = Integer.parseInt(args[2]);
+        final Random random = new Random(3);
+        final HashMap<Coordinate, MapTile> map = Mazes.generate(size, loops, 0, random);
+        final ArrayList<Coordinate> roads = Mazes.getRoads(map, size);
+
+        final OneWayAStar manhattan = new OneWayAStar(false);
+        final OneWayAStar landmarks = new OneWayAStar(true);
+        final TurnAwarePlanner reference = new TurnAwarePlanner();
+        long manhattanExpansions = 0;
+        long landmarkExpansions = 0;
+        long manhattanTime = 0;
+        long landmarkTime = 0;
+        int mismatches = 0;
+        // The first search works out the landmarks, which isn't what's being timed.
+        landmarks.getPathCost(map, roads.get(0), Direction.NORTH, roads.get(1));
+        for (int i = 0; i < queries; i++) {
+            final Coordinate start = roads.get(random.nextInt(roads.size()));
+            final Coordinate goal = roads.get(random.nextInt(roads.size()));
+            final Direction heading = Direction.values()[random.nextInt(Direction.values().length)];
+
+            long time = System.nanoTime();
+            final float manhattanCost = manhattan.getPathCost(map, start, heading, goal);
+            manhattanTime += System.nanoTime() - time;
+            time = System.nanoTime();
+            final float landmarkCost = landmarks.getPathCost(map, start, heading, goal);
+            landmarkTime += System.nanoTime() - time;
+            manhattanExpansions += manhattan.getExpansions();
+            landmarkExpansions += landmarks.getExpansions();
+
+            final float cost = reference.getPathCost(map, start, heading, goal);
+            if (manhattanCost != cost || landmarkCost != cost) {
+                mismatches++;
+            }
+        }
+        System.out.printf("%dx%d maze, %.2f loops: %d queries, %d mismatches; expansions: landmarks %d, Manhattan %d; "
+                + "ms/query: landmarks %.2f, Manhattan %.2f%n", size, size, loops, queries, mismatches,
+                landmarkExpansions / queries, manhattanExpansions / queries, landmarkTime / 1e6 / queries,
+                manhattanTime / 1e6 / queries);
+    }
+}
@@ -0,0 +1,120 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Compares BidirectionalPlanner with searching from one end only, on a generated maze.
+ *
+ * Usage: java mycontroller.utilities.BidiBench <maze size> <loops> <lava> <queries>
+ *
+ * Each query is between two random roads, starting in a random heading. The bidirectional path must cost the same as
+ * TurnAwarePlanner says the cheapest path does, or the query counts as a mismatch. It's timed against a one-way A*
+ * search with the same landmark bounds, TurnAwarePlanner working out a distance field for a new goal, and AStar.
+ */
+public class BidiBench {
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            throw new IllegalArgumentException(
+                    "Usage: java mycontroller.utilities.BidiBench <size> <loops> <lava> <queries>");
+        }
+        final int size = Integer.parseInt(args[0]);
+        final double loops = Double.parseDouble(args[1]);
+        final double lava = Double.parseDouble(args[2]);
+        final int queries = Integer.parseInt(args[3]);
+        final Random random = new Random(5);
+        final HashMap<Coordinate, MapTile> map = Mazes.generate(size, loops, lava, random);
+        final ArrayList<Coordinate> roads = Mazes.getRoads(map, size);
+
+        final BidirectionalPlanner bidirectional = new BidirectionalPlanner();
+        final OneWayAStar oneWay = new OneWayAStar(true);
+        final TurnAwarePlanner turnAware = new TurnAwarePlanner();
+        long bidirectionalTime = 0;
+        long oneWayTime = 0;
+        long turnAwareTime = 0;
+        long legacyTime = 0;
+        long bidirectionalExpansions = 0;
+        long oneWayExpansions = 0;
+        int paths = 0;
+        int mismatches = 0;
+        // The first searches work out the landmarks, which isn't what's being timed.
+        bidirectional.getShortestPath(map, roads.get(0), Direction.NORTH, roads.get(1));
+        oneWay.getPathCost(map, roads.get(0), Direction.NORTH, roads.get(1));
+        for (int i = 0; i < queries; i++) {
+            final Coordinate start = roads.get(random.nextInt(roads.size()));
+            final Coordinate goal = roads.get(random.nextInt(roads.size()));
+            final Direction heading = Direction.values()[random.nextInt(Direction.values().length)];
+
+            long time = System.nanoTime();
+            final ArrayList<Coordinate> path = bidirectional.getShortestPath(map, start, heading, goal);
+            bidirectionalTime += System.nanoTime() - time;
+            time = System.nanoTime();
+            final float oneWayCost = oneWay.getPathCost(map, start, heading, goal);
+            oneWayTime += System.nanoTime() - time;
+            time = System.nanoTime();
+            final float cost = turnAware.getPathCost(map, start, heading, goal);
+            turnAwareTime += System.nanoTime() - time;
+            time = System.nanoTime();
+            AStar.getShortestPath(map, start, start, goal);
+            legacyTime += System.nanoTime() - time;
+
+            if (path == null) {
+                if (cost != Float.POSITIVE_INFINITY) {
+                    mismatches++;
+                }
+                continue;
+            }
+            paths++;
+            bidirectionalExpansions += bidirectional.getExpansions();
+            oneWayExpansions += oneWay.getExpansions();
+            if (getCost(map, path, heading) != cost || oneWayCost != cost) {
+                mismatches++;
+            }
+        }
+        System.out.printf("%dx%d maze, %.2f loops, %.3f lava: %d paths, %d mismatches; expansions: bidirectional %d, "
+                + "one-way %d; ms/query: bidirectional %.2f, one-way %.2f, TurnAwarePlanner %.2f, AStar %.2f%n", size,
+                size, loops, lava, paths, mismatches, bidirectionalExpansions / Math.max(1, paths),
+                oneWayExpansions / Math.max(1, paths), bidirectionalTime / 1e6 / queries, oneWayTime / 1e6 / queries,
+                turnAwareTime / 1e6 / queries, legacyTime / 1e6 / queries);
+    }
+
+    /**
+     * Prices a path the way TurnAwarePlanner does, starting in the given heading.
+     * @return the cost of the path, or NaN if it doesn't go one tile at a time.
+     */
+    static float getCost(HashMap<Coordinate, MapTile> map, ArrayList<Coordinate> path, Direction heading) {
+        int direction = heading.ordinal();
+        float cost = 0;
+        for (int i = 1; i < path.size(); i++) {
+            final int dx = path.get(i).x - path.get(i - 1).x;
+            final int dy = path.get(i).y - path.get(i - 1).y;
+            int step = -1;
+            for (int next = 0; next < GridMap.NUM_DIRECTIONS; next++) {
+                if (GridMap.getDX(next) == dx && GridMap.getDY(next) == dy) {
+                    step = next;
+                }
+            }
+            if (step < 0) {
+                return Float.NaN;
+            }
+            if (step != direction) {
+                // Turning around is two turns.
+                cost += step == GridMap.getOpposite(direction) ? 2 * TurnAwarePlanner.TURN_COST
+                        : TurnAwarePlanner.TURN_COST;
+                direction = step;
+            }
+            cost += Utilities.isLava(map, path.get(i)) ? TurnAwarePlanner.LAVA_COST : TurnAwarePlanner.MOVE_COST;
+        }
+        return cost;
+    }
+}
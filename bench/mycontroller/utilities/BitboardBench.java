@@ -0,0 +1,230 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.Car;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks Bitboard against plain versions of what it does, on a generated maze, and times both.
+ *
+ * Usage: java mycontroller.utilities.BitboardBench <maze size> <loops> <lava> <repetitions>
+ *
+ * Reachability: the fill from a random road is checked against a breadth-first search over GridMap from the same road
+ * and from 20 more, and timed against that search, a breadth-first search over the HashMap, and, on mazes of up to
+ * PATH_QUERY_TILES tiles, a path query to every tile, which is how FogOfWarController used to find what it could reach.
+ * View counts: half the tiles are picked at random, and the number picked in the car's view square around every tile
+ * is counted with the bitboard and with a boolean per tile. Then random view squares are cleared from both, which must
+ * still agree.
+ */
+public class BitboardBench {
+
+    // The largest maze to make a path query to every tile on, since it takes seconds from here up.
+    private static final int PATH_QUERY_TILES = 10000;
+    private static final int EXTRA_ORIGINS = 20;
+    private static final int CLEARS = 50;
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            throw new IllegalArgumentException(
+                    "Usage: java mycontroller.utilities.BitboardBench <size> <loops> <lava> <repetitions>");
+        }
+        final int size = Integer.parseInt(args[0]);
+        final double loops = Double.parseDouble(args[1]);
+        final double lava = Double.parseDouble(args[2]);
+        final int repetitions = Integer.parseInt(args[3]);
+        final Random random = new Random(5);
+        final HashMap<Coordinate, MapTile> map = Mazes.generate(size, loops, lava, random);
+        final ArrayList<Coordinate> roads = Mazes.getRoads(map, size);
+        final GridMap grid = new GridMap();
+        grid.refresh(map);
+        final Coordinate start = roads.get(random.nextInt(roads.size()));
+        final int startTile = grid.getIndex(start);
+
+        String pathQueryTime = "-";
+        int pathQueryCount = -1;
+        if (grid.size() <= PATH_QUERY_TILES) {
+            final TurnAwarePlanner planner = new TurnAwarePlanner();
+            final long time = System.nanoTime();
+            pathQueryCount = 0;
+            for (Map.Entry<Coordinate, MapTile> tile : map.entrySet()) {
+                if (isTraversable(tile.getValue())
+                        && planner.getShortestPath(map, start, Direction.NORTH, tile.getKey()) != null) {
+                    pathQueryCount++;
+                }
+            }
+            pathQueryTime = String.format("%.0f ms", (System.nanoTime() - time) / 1e6);
+        }
+
+        long time = System.nanoTime();
+        int hashMapCount = 0;
+        for (int i = 0; i < repetitions; i++) {
+            hashMapCount = getReachable(map, start).size();
+        }
+        final long hashMapTime = (System.nanoTime() - time) / repetitions;
+
+        time = System.nanoTime();
+        int[] distances = null;
+        for (int i = 0; i < repetitions; i++) {
+            distances = getDistances(grid, startTile);
+        }
+        final long arrayTime = (System.nanoTime() - time) / repetitions;
+
+        final Bitboard traversable = Bitboard.getTraversable(grid);
+        time = System.nanoTime();
+        Bitboard reachable = null;
+        for (int i = 0; i < repetitions; i++) {
+            reachable = traversable.getReachable(startTile);
+        }
+        final long bitboardTime = (System.nanoTime() - time) / repetitions;
+
+        int count = 0;
+        int mismatches = countMismatches(grid, distances, reachable);
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (distances[tile] >= 0) {
+                count++;
+            }
+        }
+        if (hashMapCount != count || (pathQueryCount >= 0 && pathQueryCount != count)) {
+            mismatches++;
+        }
+        for (int i = 0; i < EXTRA_ORIGINS; i++) {
+            final int origin = grid.getIndex(roads.get(random.nextInt(roads.size())));
+            mismatches += countMismatches(grid, getDistances(grid, origin), traversable.getReachable(origin));
+        }
+        System.out.printf("%dx%d maze, %.2f loops, %.3f lava: %d reachable, %d mismatches; ms/fill: path queries %s, "
+                + "HashMap BFS %.2f, array BFS %.2f, bitboard %.3f%n", size, size, loops, lava, count, mismatches,
+                pathQueryTime, hashMapTime / 1e6, arrayTime / 1e6, bitboardTime / 1e6);
+
+        final boolean[] picked = new boolean[grid.size()];
+        final Bitboard pickedBits = new Bitboard(grid.getWidth(), grid.getHeight());
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (random.nextBoolean()) {
+                picked[tile] = true;
+                pickedBits.set(tile);
+            }
+        }
+        time = System.nanoTime();
+        long booleanSum = 0;
+        for (int tile = 0; tile < grid.size(); tile++) {
+            booleanSum += countAround(grid, picked, tile);
+        }
+        final long booleanTime = System.nanoTime() - time;
+        time = System.nanoTime();
+        long bitboardSum = 0;
+        for (int tile = 0; tile < grid.size(); tile++) {
+            bitboardSum += pickedBits.countAround(tile, Car.VIEW_SQUARE);
+        }
+        final long countTime = System.nanoTime() - time;
+
+        mismatches = booleanSum == bitboardSum ? 0 : 1;
+        for (int i = 0; i < CLEARS; i++) {
+            final int tile = random.nextInt(grid.size());
+            pickedBits.clearAround(tile, Car.VIEW_SQUARE);
+            for (int y = grid.getY(tile) - Car.VIEW_SQUARE; y <= grid.getY(tile) + Car.VIEW_SQUARE; y++) {
+                for (int x = grid.getX(tile) - Car.VIEW_SQUARE; x <= grid.getX(tile) + Car.VIEW_SQUARE; x++) {
+                    final int index = grid.getIndex(x, y);
+                    if (index >= 0) {
+                        picked[index] = false;
+                    }
+                }
+            }
+        }
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (picked[tile] != pickedBits.get(tile)) {
+                mismatches++;
+            }
+        }
+        System.out.printf("  view counts over every tile: %d mismatches; ms: boolean %.2f, bitboard %.2f%n",
+                mismatches, booleanTime / 1e6, countTime / 1e6);
+    }
+
+    /**
+     * Finds the coordinates that can be driven to from the start, breadth first over the map itself.
+     */
+    private static HashSet<Coordinate> getReachable(HashMap<Coordinate, MapTile> map, Coordinate start) {
+        final HashSet<Coordinate> reached = new HashSet<>();
+        final ArrayDeque<Coordinate> queue = new ArrayDeque<>();
+        reached.add(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            final Coordinate coordinate = queue.poll();
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                final Coordinate next = new Coordinate(coordinate.x + GridMap.getDX(direction),
+                        coordinate.y + GridMap.getDY(direction));
+                final MapTile tile = map.get(next);
+                if (tile != null && isTraversable(tile) && reached.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Counts the steps from the origin to every tile, breadth first over the grid.
+     * @return the steps to each tile, or -1 where it can't be reached.
+     */
+    private static int[] getDistances(GridMap grid, int origin) {
+        final int[] distances = new int[grid.size()];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[grid.size()];
+        int head = 0;
+        int tail = 0;
+        distances[origin] = 0;
+        queue[tail++] = origin;
+        while (head < tail) {
+            final int tile = queue[head++];
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                final int next = grid.getNeighbor(tile, direction);
+                if (next >= 0 && distances[next] < 0 && grid.isTraversable(next)) {
+                    distances[next] = distances[tile] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Determines whether a tile can be driven on, the same way GridMap does.
+     */
+    private static boolean isTraversable(MapTile tile) {
+        return !tile.isType(MapTile.Type.WALL) && !tile.isType(MapTile.Type.EMPTY);
+    }
+
+    private static int countMismatches(GridMap grid, int[] distances, Bitboard reachable) {
+        int mismatches = 0;
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if ((distances[tile] >= 0) != reachable.get(tile)) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private static int countAround(GridMap grid, boolean[] picked, int tile) {
+        int count = 0;
+        for (int y = grid.getY(tile) - Car.VIEW_SQUARE; y <= grid.getY(tile) + Car.VIEW_SQUARE; y++) {
+            for (int x = grid.getX(tile) - Car.VIEW_SQUARE; x <= grid.getX(tile) + Car.VIEW_SQUARE; x++) {
+                final int index = grid.getIndex(x, y);
+                if (index >= 0 && picked[index]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
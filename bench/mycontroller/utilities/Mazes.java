@@ -0,0 +1,100 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.LavaTrap;
+import tiles.MapTile;
+import utilities.Coordinate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Generates mazes for the planner benchmarks.
+ */
+class Mazes {
+
+    private static final int[][] STEPS = {{2, 0}, {-2, 0}, {0, 2}, {0, -2}};
+
+    /**
+     * Carves a perfect maze with a recursive backtracker through the tiles at odd coordinates, then opens up walls and
+     * turns roads into lava at random.
+     * @param size is the number of tiles along each side, which is odd for a maze with walls all round.
+     * @param loops is the chance of each inner wall being opened up, which adds loops.
+     * @param lava is the chance of each road being lava.
+     * @param random is where the randomness comes from.
+     * @return the maze.
+     */
+    static HashMap<Coordinate, MapTile> generate(int size, double loops, double lava, Random random) {
+        final boolean[][] open = new boolean[size][size];
+        final Deque<int[]> stack = new ArrayDeque<>();
+        open[1][1] = true;
+        stack.push(new int[] {1, 1});
+        while (!stack.isEmpty()) {
+            final int[] cell = stack.peek();
+            final ArrayList<int[]> steps = new ArrayList<>();
+            for (int[] step : STEPS) {
+                final int x = cell[0] + step[0];
+                final int y = cell[1] + step[1];
+                if (x > 0 && y > 0 && x < size - 1 && y < size - 1 && !open[x][y]) {
+                    steps.add(step);
+                }
+            }
+            if (steps.isEmpty()) {
+                stack.pop();
+                continue;
+            }
+            final int[] step = steps.get(random.nextInt(steps.size()));
+            open[cell[0] + step[0] / 2][cell[1] + step[1] / 2] = true;
+            open[cell[0] + step[0]][cell[1] + step[1]] = true;
+            stack.push(new int[] {cell[0] + step[0], cell[1] + step[1]});
+        }
+        for (int x = 1; x < size - 1; x++) {
+            for (int y = 1; y < size - 1; y++) {
+                if (!open[x][y] && random.nextDouble() < loops) {
+                    open[x][y] = true;
+                }
+            }
+        }
+
+        final HashMap<Coordinate, MapTile> map = new HashMap<>();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                final MapTile tile;
+                if (!open[x][y]) {
+                    tile = new MapTile(MapTile.Type.WALL);
+                } else if (random.nextDouble() < lava) {
+                    tile = new LavaTrap();
+                } else {
+                    tile = new MapTile(MapTile.Type.ROAD);
+                }
+                map.put(new Coordinate(x, y), tile);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Lists the roads of a map, in the same order every time.
+     * @param map is the map.
+     * @param size is the number of tiles along each side.
+     * @return the coordinates of the roads.
+     */
+    static ArrayList<Coordinate> getRoads(HashMap<Coordinate, MapTile> map, int size) {
+        final ArrayList<Coordinate> roads = new ArrayList<>();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                final Coordinate coordinate = new Coordinate(x, y);
+                if (map.get(coordinate).isType(MapTile.Type.ROAD)) {
+                    roads.add(coordinate);
+                }
+            }
+        }
+        return roads;
+    }
+}
@@ -0,0 +1,105 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An A* search over the same (tile, heading) states and costs as TurnAwarePlanner, from the car's state to the goal,
+ * bounded by either the Manhattan distance or the landmarks. It's what the planners are compared against.
+ */
+class OneWayAStar {
+
+    private final GridMap grid = new GridMap();
+    private final LandmarkHeuristic landmarks = new LandmarkHeuristic();
+    private final MinHeap open = new MinHeap();
+    private final boolean useLandmarks;
+    private float[] costs = new float[0];
+    private int goalTile;
+    private int expansions = 0;
+
+    /**
+     * @param useLandmarks is whether to bound costs with the landmarks rather than the Manhattan distance.
+     */
+    OneWayAStar(boolean useLandmarks) {
+        this.useLandmarks = useLandmarks;
+    }
+
+    /**
+     * Returns the cost of the cheapest path from start to goal.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param goal is the target coordinate.
+     * @return the cost of the cheapest path, or infinity if there's no path.
+     */
+    float getPathCost(HashMap<Coordinate, MapTile> map, Coordinate start, Direction heading, Coordinate goal) {
+        grid.refresh(map);
+        landmarks.update(grid);
+        if (costs.length != grid.size() * GridMap.NUM_DIRECTIONS) {
+            costs = new float[grid.size() * GridMap.NUM_DIRECTIONS];
+        }
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        goalTile = grid.getIndex(goal);
+        expansions = 0;
+
+        open.clear();
+        relax(grid.getIndex(start) * GridMap.NUM_DIRECTIONS + heading.ordinal(), 0);
+        while (!open.isEmpty()) {
+            final float priority = open.peekKey();
+            final int state = open.pop();
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            final int direction = state % GridMap.NUM_DIRECTIONS;
+            if (priority > costs[state] + getHeuristic(tile)) {
+                continue;
+            }
+            if (tile == goalTile) {
+                return costs[state];
+            }
+            expansions++;
+
+            final int next = grid.getNeighbor(tile, direction);
+            if (next >= 0 && grid.isTraversable(next)) {
+                relax(next * GridMap.NUM_DIRECTIONS + direction, costs[state]
+                        + (Utilities.isLava(grid.getTile(next)) ? TurnAwarePlanner.LAVA_COST
+                        : TurnAwarePlanner.MOVE_COST));
+            }
+            for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+                if (GridMap.getDX(direction) * GridMap.getDX(turn) + GridMap.getDY(direction) * GridMap.getDY(turn)
+                        == 0) {
+                    relax(tile * GridMap.NUM_DIRECTIONS + turn, costs[state] + TurnAwarePlanner.TURN_COST);
+                }
+            }
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the number of states expanded by the last search.
+     */
+    int getExpansions() {
+        return expansions;
+    }
+
+    private void relax(int state, float cost) {
+        if (cost < costs[state]) {
+            costs[state] = cost;
+            open.push(cost + getHeuristic(state / GridMap.NUM_DIRECTIONS), state);
+        }
+    }
+
+    private float getHeuristic(int tile) {
+        if (useLandmarks) {
+            return landmarks.getLowerBound(grid, tile, goalTile) * TurnAwarePlanner.MOVE_COST;
+        }
+        return (Math.abs(grid.getX(tile) - grid.getX(goalTile)) + Math.abs(grid.getY(tile) - grid.getY(goalTile)))
+                * TurnAwarePlanner.MOVE_COST;
+    }
+}
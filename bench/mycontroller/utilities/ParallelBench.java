@@ -0,0 +1,84 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Compares ParallelPlanner at different numbers of threads with a one-way A* search, on a generated maze.
+ *
+ * Usage: java mycontroller.utilities.ParallelBench <maze size> <loops> <lava> <queries> <threads>...
+ *
+ * Each query is between two random roads, starting in a random heading. The parallel path must cost the same as the
+ * one-way search's cheapest path, or the query counts as a mismatch. Both bound costs with the same landmarks.
+ */
+public class ParallelBench {
+
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            throw new IllegalArgumentException(
+                    "Usage: java mycontroller.utilities.ParallelBench <size> <loops> <lava> <queries> <threads>...");
+        }
+        final int size = Integer.parseInt(args[0]);
+        final double loops = Double.parseDouble(args[1]);
+        final double lava = Double.parseDouble(args[2]);
+        final int queries = Integer.parseInt(args[3]);
+        final Random random = new Random(5);
+        final HashMap<Coordinate, MapTile> map = Mazes.generate(size, loops, lava, random);
+        final ArrayList<Coordinate> roads = Mazes.getRoads(map, size);
+
+        final Coordinate[] starts = new Coordinate[queries];
+        final Coordinate[] goals = new Coordinate[queries];
+        final Direction[] headings = new Direction[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = roads.get(random.nextInt(roads.size()));
+            goals[i] = roads.get(random.nextInt(roads.size()));
+            headings[i] = Direction.values()[random.nextInt(Direction.values().length)];
+        }
+
+        // The first search works out the landmarks, which isn't what's being timed.
+        final OneWayAStar oneWay = new OneWayAStar(true);
+        oneWay.getPathCost(map, starts[0], headings[0], goals[0]);
+        final float[] costs = new float[queries];
+        long oneWayTime = 0;
+        long oneWayExpansions = 0;
+        for (int i = 0; i < queries; i++) {
+            final long time = System.nanoTime();
+            costs[i] = oneWay.getPathCost(map, starts[i], headings[i], goals[i]);
+            oneWayTime += System.nanoTime() - time;
+            oneWayExpansions += oneWay.getExpansions();
+        }
+        System.out.printf("%dx%d maze, %.2f loops, %.3f lava, %d cores: one-way %.2f ms/query, %d expansions%n", size,
+                size, loops, lava, Runtime.getRuntime().availableProcessors(), oneWayTime / 1e6 / queries,
+                oneWayExpansions / queries);
+
+        for (int arg = 4; arg < args.length; arg++) {
+            final int threads = Integer.parseInt(args[arg]);
+            final ParallelPlanner parallel = new ParallelPlanner(threads);
+            parallel.getShortestPath(map, starts[0], headings[0], goals[0]);
+            long parallelTime = 0;
+            long parallelExpansions = 0;
+            int mismatches = 0;
+            for (int i = 0; i < queries; i++) {
+                final long time = System.nanoTime();
+                final ArrayList<Coordinate> path = parallel.getShortestPath(map, starts[i], headings[i], goals[i]);
+                parallelTime += System.nanoTime() - time;
+                parallelExpansions += parallel.getExpansions();
+                final float cost = path == null ? Float.POSITIVE_INFINITY : BidiBench.getCost(map, path, headings[i]);
+                if (cost != costs[i]) {
+                    mismatches++;
+                }
+            }
+            System.out.printf("  %d threads: %.2f ms/query, %d expansions, %d mismatches%n", threads,
+                    parallelTime / 1e6 / queries, parallelExpansions / queries, mismatches);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.LavaTrap;
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Times refining the start of a hierarchical plan with LatticePlanner, keeping state only near the refined route as
+ * AStarController does, against planning the same stretch over the whole grid.
+ *
+ * Usage: java mycontroller.utilities.RefinementBench <map size> <queries>
+ *
+ * The map is square, with a quarter of its tiles walls and a few lava, at random. Each query is between two random
+ * road tiles. Both plans must reach the end of the refined route, and the number of them that are identical is printed.
+ */
+public class RefinementBench {
+
+    // The same margin as AStarController uses.
+    private static final int MARGIN = 10;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: java mycontroller.utilities.RefinementBench <size> <queries>");
+        }
+        final int size = Integer.parseInt(args[0]);
+        final int queries = Integer.parseInt(args[1]);
+        final Random random = new Random(1);
+        final HashMap<Coordinate, MapTile> map = new HashMap<>();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                final double roll = random.nextDouble();
+                map.put(new Coordinate(x, y), roll < 0.25 ? new MapTile(MapTile.Type.WALL)
+                        : roll < 0.28 ? new LavaTrap() : new MapTile(MapTile.Type.ROAD));
+            }
+        }
+
+        final HierarchicalPlanner hierarchy = new HierarchicalPlanner();
+        final LatticePlanner bounded = new LatticePlanner();
+        final LatticePlanner whole = new LatticePlanner();
+        // The first plan works out the landmarks, which isn't what's being timed.
+        final Coordinate first = getRoad(map, random, size);
+        bounded.getPlan(map, first, Direction.NORTH, 0, SpeedProfile.SIGHT_SPEED, first, false, new ArrayList<>(),
+                MARGIN);
+        whole.getPlan(map, first, Direction.NORTH, 0, SpeedProfile.SIGHT_SPEED, first, false);
+        long boundedTime = 0;
+        long wholeTime = 0;
+        int planned = 0;
+        int identical = 0;
+        for (int i = 0; i < queries; i++) {
+            final Coordinate start = getRoad(map, random, size);
+            final Coordinate goal = getRoad(map, random, size);
+            final ArrayList<Coordinate> route = hierarchy.getPath(map, start, goal);
+            if (route == null) {
+                continue;
+            }
+            final Coordinate end = route.get(route.size() - 1);
+
+            long time = System.nanoTime();
+            final LatticePlanner.Plan boundedPlan = bounded.getPlan(map, start, Direction.NORTH, 0,
+                    SpeedProfile.SIGHT_SPEED, end, false, route, MARGIN);
+            boundedTime += System.nanoTime() - time;
+            time = System.nanoTime();
+            final LatticePlanner.Plan wholePlan = whole.getPlan(map, start, Direction.NORTH, 0,
+                    SpeedProfile.SIGHT_SPEED, end, false);
+            wholeTime += System.nanoTime() - time;
+
+            if (boundedPlan == null || wholePlan == null) {
+                System.out.printf("No plan from %s to %s: bounded %s, whole grid %s%n", start, end,
+                        boundedPlan != null, wholePlan != null);
+                continue;
+            }
+            planned++;
+            if (boundedPlan.path.equals(wholePlan.path)) {
+                identical++;
+            }
+        }
+        System.out.printf("%dx%d: %d plans, %d identical; near the route %.3f ms/plan, whole grid %.3f ms/plan%n", size,
+                size, planned, identical, boundedTime / 1e6 / planned, wholeTime / 1e6 / planned);
+    }
+
+    private static Coordinate getRoad(HashMap<Coordinate, MapTile> map, Random random, int size) {
+        while (true) {
+            final Coordinate coordinate = new Coordinate(random.nextInt(size), random.nextInt(size));
+            if (map.get(coordinate).isType(MapTile.Type.ROAD)) {
+                return coordinate;
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package world;
+
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import controller.CarController;
+import swen30006.driving.Simulation;
+import tiles.LavaTrap;
+import tiles.MapTile;
+import tiles.TrapTile;
+import utilities.Coordinate;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a controller on a map without a window, as fast as it will go, and prints whether it won.
+ *
+ * Usage: java world.Headless <map.tmx> <controller class> [max simulated seconds] [Key=Value]...
+ *
+ * The map is read straight from the .tmx and .tsx files rather than through libGDX, and World's tiles are filled in
+ * the same way World.initialiseMap does. The car is updated at the game's fixed step of 1/45 s. With -Dtrace=N the
+ * car's state is printed every N steps, and with -Dframes=true the spread of controller update times is printed at
+ * the end. Key=Value arguments are read as if they were in Driving.Properties, for controllers with settings there.
+ */
+public class Headless {
+
+	private static final float STEP = 1 / 45f;
+	private static final int CAR_WIDTH = 32;
+	private static final int CAR_HEIGHT = 24;
+	private static final float TILE_SIZE = 32f;
+	private static final String[] LAYERS = {"Road", "Utility", "Trap", "Wall"};
+
+	// Tile properties from the tilesets, by global tile id.
+	private static final Map<Integer, Map<String, String>> properties = new HashMap<>();
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException(
+					"Usage: java world.Headless <map.tmx> <controller class> [max seconds] [Key=Value]...");
+		}
+		Path mapFile = Paths.get(args[0]).toAbsolutePath();
+		float maxTime = args.length > 2 ? Float.parseFloat(args[2]) : 300;
+		setDrivingProperties(args);
+		int keys = loadMap(mapFile);
+
+		Sprite sprite = new Sprite();
+		sprite.setSize(CAR_WIDTH, CAR_HEIGHT);
+		Car car = new Car(sprite);
+		car.setKey(keys + 1);
+		car.setSize(car.getWidth() / TILE_SIZE, car.getHeight() / TILE_SIZE);
+		car.setOriginCenter();
+		CarController controller = (CarController) Class.forName(args[1]).getConstructor(Car.class).newInstance(car);
+
+		Field gameEnded = Simulation.class.getDeclaredField("gameEnded");
+		Field gameWon = Simulation.class.getDeclaredField("gameWon");
+		gameEnded.setAccessible(true);
+		gameWon.setAccessible(true);
+
+		int trace = Integer.getInteger("trace", 0);
+		ArrayList<Long> frameTimes = new ArrayList<>();
+		long start = System.nanoTime();
+		float time = 0;
+		int steps = 0;
+		String error = "";
+		try {
+			while (time < maxTime && !(Boolean) gameEnded.get(null)) {
+				long frameStart = System.nanoTime();
+				controller.update(STEP);
+				frameTimes.add(System.nanoTime() - frameStart);
+				car.update(STEP);
+				time += STEP;
+				steps++;
+				if (trace > 0 && steps % trace == 0) {
+					System.out.printf("T %.2f %s x=%.2f y=%.2f v=%.2f ang=%.1f hp=%.0f %s%n", time,
+							getState(controller), car.getX(), car.getY(), car.getSpeed(), car.getAngle(),
+							car.getHealth(), describe(World.lookUp(car.getX(), car.getY())));
+				}
+			}
+		} catch (RuntimeException e) {
+			error = " ERROR " + e;
+		}
+
+		String result = !(Boolean) gameEnded.get(null) ? "TIMEOUT" : (Boolean) gameWon.get(null) ? "WIN" : "LOSE";
+		System.out.printf("%s %s: %s simT=%.1fs health=%.0f key=%d wall=%dms%s%n", mapFile.getFileName(),
+				controller.getClass().getSimpleName(), result, time, car.getHealth(), car.getKey(),
+				(System.nanoTime() - start) / 1000000, error);
+		if (Boolean.getBoolean("frames") && !frameTimes.isEmpty()) {
+			Collections.sort(frameTimes);
+			int n = frameTimes.size();
+			System.out.printf("  frames=%d p50=%.3fms p99=%.3fms p999=%.3fms max=%.1fms%n", n,
+					frameTimes.get(n / 2) / 1e6, frameTimes.get((int) (n * 0.99)) / 1e6,
+					frameTimes.get((int) (n * 0.999)) / 1e6, frameTimes.get(n - 1) / 1e6);
+		}
+	}
+
+	/**
+	 * Fills World's tiles from the given map file.
+	 * @return the number of keys on the map.
+	 */
+	private static int loadMap(Path mapFile) throws Exception {
+		String map = new String(Files.readAllBytes(mapFile));
+		Matcher tilesets = Pattern.compile("<tileset firstgid=\"(\\d+)\" source=\"([^\"]+)\"").matcher(map);
+		while (tilesets.find()) {
+			loadTileset(Integer.parseInt(tilesets.group(1)), mapFile.getParent().resolve(tilesets.group(2)));
+		}
+
+		Matcher size = Pattern.compile("<map [^>]*width=\"(\\d+)\" height=\"(\\d+)\"").matcher(map);
+		if (!size.find()) {
+			throw new IllegalArgumentException("No map size in " + mapFile);
+		}
+		World.MAP_WIDTH = Integer.parseInt(size.group(1));
+		World.MAP_HEIGHT = Integer.parseInt(size.group(2));
+
+		Map<String, String> layers = new HashMap<>();
+		Matcher layer = Pattern.compile("<layer name=\"(\\w+)\".*?<data encoding=\"csv\">(.*?)</data>",
+				Pattern.DOTALL).matcher(map);
+		while (layer.find()) {
+			layers.put(layer.group(1), layer.group(2));
+		}
+
+		List<Coordinate> finish = new ArrayList<>();
+		int keys = 0;
+		for (String name : LAYERS) {
+			String[] rows = layers.get(name).trim().split("\n");
+			for (int row = 0; row < World.MAP_HEIGHT; row++) {
+				String[] cells = rows[row].trim().split(",");
+				for (int x = 0; x < World.MAP_WIDTH; x++) {
+					// The top bits of a tile id are flip flags.
+					int id = (int) (Long.parseLong(cells[x].trim()) & 0x0FFFFFFFL);
+					if (id == 0) {
+						continue;
+					}
+					Coordinate coordinate = new Coordinate(x, row + 1);
+					Map<String, String> tileProperties = properties.getOrDefault(id, Collections.emptyMap());
+					MapTile tile;
+					switch (name) {
+						case "Trap":
+							tile = (TrapTile) Class.forName("tiles." + tileProperties.get("type")).newInstance();
+							if (tile instanceof LavaTrap) {
+								int key = Integer.parseInt(tileProperties.getOrDefault("key", "0"));
+								((LavaTrap) tile).setKey(key);
+								if (key != 0) {
+									keys++;
+								}
+							}
+							break;
+						case "Utility":
+							if (tileProperties.get("exit") != null) {
+								tile = new MapTile(MapTile.Type.FINISH);
+								finish.add(coordinate);
+							} else {
+								tile = new MapTile(MapTile.Type.START);
+								setWorldField("carStart", new Coordinate(x, World.MAP_HEIGHT - 1 - row));
+								setWorldField("start", coordinate);
+							}
+							break;
+						case "Wall":
+							tile = new MapTile(MapTile.Type.WALL);
+							break;
+						default:
+							tile = new MapTile(MapTile.Type.ROAD);
+							break;
+					}
+					World.mapTiles.put(coordinate, tile);
+				}
+			}
+		}
+		setWorldField("finish", finish);
+		World.buildTileGrid();
+		return keys;
+	}
+
+	private static void loadTileset(int firstId, Path tilesetFile) throws Exception {
+		String tileset = new String(Files.readAllBytes(tilesetFile));
+		Matcher tile = Pattern.compile("<tile id=\"(\\d+)\">(.*?)</tile>", Pattern.DOTALL).matcher(tileset);
+		while (tile.find()) {
+			Map<String, String> tileProperties = new HashMap<>();
+			Matcher property = Pattern.compile("<property name=\"(\\w+)\"(?: type=\"\\w+\")? value=\"([^\"]*)\"")
+					.matcher(tile.group(2));
+			while (property.find()) {
+				tileProperties.put(property.group(1), property.group(2));
+			}
+			properties.put(firstId + Integer.parseInt(tile.group(1)), tileProperties);
+		}
+	}
+
+	private static void setWorldField(String name, Object value) throws Exception {
+		Field field = World.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(null, value);
+	}
+
+	/**
+	 * Puts the Key=Value arguments after the first three into Simulation's driving properties.
+	 */
+	private static void setDrivingProperties(String[] args) throws Exception {
+		Field field = Simulation.class.getDeclaredField("drivingProperties");
+		field.setAccessible(true);
+		Properties drivingProperties = (Properties) field.get(null);
+		for (int i = 3; i < args.length; i++) {
+			String[] setting = args[i].split("=", 2);
+			if (setting.length < 2) {
+				throw new IllegalArgumentException("Expected Key=Value, not " + args[i]);
+			}
+			drivingProperties.setProperty(setting[0], setting[1]);
+		}
+	}
+
+	/**
+	 * Returns the controller's state and destination, if it has fields by those names.
+	 */
+	private static String getState(CarController controller) {
+		try {
+			Field state = controller.getClass().getDeclaredField("currentState");
+			Field destination = controller.getClass().getDeclaredField("destination");
+			state.setAccessible(true);
+			destination.setAccessible(true);
+			return state.get(controller) + "->" + destination.get(controller);
+		} catch (ReflectiveOperationException e) {
+			return "?";
+		}
+	}
+
+	private static String describe(MapTile tile) {
+		return tile instanceof TrapTile ? ((TrapTile) tile).getTrap() : tile.getType().toString();
+	}
+}
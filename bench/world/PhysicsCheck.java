@@ -0,0 +1,210 @@
+package world;
+
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import tiles.GrassTrap;
+import tiles.HealthTrap;
+import tiles.LavaTrap;
+import tiles.MapTile;
+import tiles.MudTrap;
+import utilities.Coordinate;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+
+/**
+ * Checks that the car's physics are unchanged by moving them into CarPhysics, and that CarPhysics.step predicts
+ * Car.update exactly.
+ *
+ * Usage: java world.PhysicsCheck <seed> <steps>
+ *
+ * A random walled map with every kind of trap is built, and the same random controls are applied to Car and to
+ * ReferenceCar (Car as it was before) every step, with an odd frame time every few steps. Their position, velocity,
+ * angle, health, direction and orientation must match bit for bit. Then a second Car is driven with random controls,
+ * and each step is first played on a snapshot of it, which must land exactly where the car does.
+ */
+public class PhysicsCheck {
+
+	private static final int MAP_SIZE = 40;
+	private static final Coordinate START = new Coordinate(MAP_SIZE / 2, MAP_SIZE / 2);
+	private static final float STEP = 1 / 45f;
+	private static final float MAX_HEALTH = 100;
+	// One step in this many reverses, which is often enough to get the car off walls.
+	private static final int REVERSE_ODDS = 8;
+	// Health is topped up to full below this, so the cars don't die (and the game end) on lava.
+	private static final float MIN_HEALTH = 50;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Usage: java world.PhysicsCheck <seed> <steps>");
+		}
+		Random random = new Random(Long.parseLong(args[0]));
+		int steps = Integer.parseInt(args[1]);
+		buildMap(random);
+
+		boolean passed = compareWithReference(random, steps) & compareWithSnapshot(random, steps);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Drives Car and ReferenceCar side by side.
+	 * @return whether they matched at every step.
+	 */
+	private static boolean compareWithReference(Random random, int steps) {
+		Sprite sprite = new Sprite();
+		sprite.setSize(34, 18);
+		Car car = new Car(sprite);
+		ReferenceCar reference = new ReferenceCar(sprite);
+		car.setKey(3);
+		reference.setKey(3);
+
+		int movingSteps = 0;
+		for (int i = 0; i < steps; i++) {
+			if (random.nextInt(10) < 8) {
+				car.applyForwardAcceleration();
+				reference.applyForwardAcceleration();
+			}
+			if (random.nextInt(REVERSE_ODDS) == 0) {
+				car.applyReverseAcceleration();
+				reference.applyReverseAcceleration();
+			}
+			if (random.nextInt(30) == 0) {
+				car.brake();
+				reference.brake();
+			}
+			int turn = random.nextInt(4);
+			if (turn == 0) {
+				car.turnLeft(STEP);
+				reference.turnLeft(STEP);
+			} else if (turn == 1) {
+				car.turnRight(STEP);
+				reference.turnRight(STEP);
+			}
+			if (car.getHealth() < MIN_HEALTH) {
+				car.increaseHealth(MAX_HEALTH);
+				reference.increaseHealth(MAX_HEALTH);
+			}
+			float delta = i % 7 == 0 ? random.nextFloat() * 0.05f : STEP;
+			car.update(delta);
+			reference.update(delta);
+			if (car.getSpeed() > 1) {
+				movingSteps++;
+			}
+
+			if (!same(car.getX(), reference.getX()) || !same(car.getY(), reference.getY())
+					|| !same(car.getVelocity().x, reference.getVelocity().x)
+					|| !same(car.getVelocity().y, reference.getVelocity().y)
+					|| !same(car.getAngle(), reference.getAngle()) || !same(car.getHealth(), reference.getHealth())
+					|| Car.carDirection.ordinal() != ReferenceCar.carDirection.ordinal()
+					|| car.getOrientation() != reference.getOrientation()) {
+				System.out.printf("Car and ReferenceCar differ at step %d: (%s, %s) vs (%s, %s)%n", i, car.getX(),
+						car.getY(), reference.getX(), reference.getY());
+				return false;
+			}
+		}
+		System.out.printf("Car matches ReferenceCar for %d steps (%d moving), ending at %s with health %.2f%n", steps,
+				movingSteps, car.getPosition(), car.getHealth());
+		return true;
+	}
+
+	/**
+	 * Plays each step on a snapshot of the car before the car takes it.
+	 * @return whether the snapshot matched the car at every step.
+	 */
+	private static boolean compareWithSnapshot(Random random, int steps) {
+		Sprite sprite = new Sprite();
+		sprite.setSize(32, 24);
+		Car car = new Car(sprite);
+		car.setKey(3);
+
+		for (int i = 0; i < steps; i++) {
+			if (car.getHealth() < MIN_HEALTH) {
+				car.increaseHealth(MAX_HEALTH);
+			}
+			CarPhysics snapshot = car.getPhysicsSnapshot();
+			int controls = 0;
+			if (random.nextInt(10) < 8) {
+				car.applyForwardAcceleration();
+				controls |= CarPhysics.ACCELERATE;
+			}
+			if (random.nextInt(REVERSE_ODDS) == 0) {
+				car.applyReverseAcceleration();
+				controls |= CarPhysics.REVERSE;
+			}
+			if (random.nextInt(30) == 0) {
+				car.brake();
+				controls |= CarPhysics.BRAKE;
+			}
+			int turn = random.nextInt(4);
+			if (turn == 0) {
+				car.turnLeft(STEP);
+				controls |= CarPhysics.TURN_LEFT;
+			} else if (turn == 1) {
+				car.turnRight(STEP);
+				controls |= CarPhysics.TURN_RIGHT;
+			}
+			snapshot.step(controls, STEP);
+			car.update(STEP);
+
+			if (!same(snapshot.getX(), car.getX()) || !same(snapshot.getY(), car.getY())
+					|| !same(snapshot.getAngle(), car.getAngle()) || !same(snapshot.getHealth(), car.getHealth())
+					|| snapshot.getOrientation() != car.getOrientation()) {
+				System.out.printf("CarPhysics.step and Car differ at step %d: (%s, %s) vs (%s, %s)%n", i,
+						snapshot.getX(), snapshot.getY(), car.getX(), car.getY());
+				return false;
+			}
+		}
+		System.out.printf("CarPhysics.step matches Car for %d steps, ending at %s%n", steps, car.getPosition());
+		return true;
+	}
+
+	private static boolean same(float a, float b) {
+		return Float.floatToRawIntBits(a) == Float.floatToRawIntBits(b);
+	}
+
+	/**
+	 * Fills World with a walled map of random walls and traps, with the start in the middle.
+	 */
+	private static void buildMap(Random random) throws Exception {
+		World.MAP_WIDTH = MAP_SIZE;
+		World.MAP_HEIGHT = MAP_SIZE;
+		for (int x = 0; x < MAP_SIZE; x++) {
+			for (int y = 1; y <= MAP_SIZE; y++) {
+				MapTile tile;
+				if (x == 0 || y == 1 || x == MAP_SIZE - 1 || y == MAP_SIZE || random.nextInt(30) == 0) {
+					tile = new MapTile(MapTile.Type.WALL);
+				} else {
+					switch (random.nextInt(40)) {
+						case 0:
+							tile = new GrassTrap();
+							break;
+						case 1:
+							tile = new MudTrap();
+							break;
+						case 2:
+							tile = new LavaTrap();
+							break;
+						case 3:
+							tile = new HealthTrap();
+							break;
+						default:
+							tile = new MapTile(MapTile.Type.ROAD);
+							break;
+					}
+				}
+				World.mapTiles.put(new Coordinate(x, y), tile);
+			}
+		}
+		World.mapTiles.put(START, new MapTile(MapTile.Type.ROAD));
+		setWorldField("start", START);
+		setWorldField("carStart", START);
+		World.buildTileGrid();
+	}
+
+	private static void setWorldField(String name, Object value) throws Exception {
+		Field field = World.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(null, value);
+	}
+}
@@ -8,6 +8,7 @@ import tiles.MapTile;
 import utilities.Coordinate;
 import utilities.PeekTuple;
 import world.Car;
+import world.CarPhysics;
 import world.World;
 import world.WorldSpatial;
 
@@ -128,6 +129,14 @@ public abstract class CarController {
 		return car.peek(velocity, targetDegree, turnDirection, delta);
 	}
 	
+	/**
+	 * Returns a copy of the car's physical state. Stepping the copy (see CarPhysics.step and CarPhysics.simulate)
+	 * predicts where the car will go under given controls, without moving the car itself.
+	 */
+	public CarPhysics getPhysicsSnapshot(){
+		return car.getPhysicsSnapshot();
+	}
+	
 	/**
 	 * Returns the view around your car (this is a VIEW_SQUARExVIEW_SQUARE area)
 	 */
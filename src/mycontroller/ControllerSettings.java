@@ -0,0 +1,138 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller;
+
+import mycontroller.strategies.pathing.AStarController;
+import mycontroller.strategies.pathing.ModelPredictiveController;
+import mycontroller.strategies.pathing.PathingStrategy;
+import mycontroller.strategies.recon.FogOfWarController;
+import mycontroller.strategies.recon.FrontierController;
+import mycontroller.strategies.recon.ReconStrategy;
+import mycontroller.strategies.recon.SweepController;
+import swen30006.driving.Simulation;
+import world.Car;
+
+import java.util.Arrays;
+
+/**
+ * Makes the strategies MyAIController and its sub-controllers drive with, as chosen in Driving.Properties. Every
+ * setting is optional:
+ *
+ * Pathing: MODEL_PREDICTIVE (the default) follows paths with ModelPredictiveController. A_STAR follows them with
+ * AStarController, which plans the route and its speeds with LatticePlanner, refining a HierarchicalPlanner route on
+ * large maps.
+ *
+ * Planning_Budget: the most seconds ModelPredictiveController may spend planning paths each frame, planning them a
+ * little at a time with AnytimePlanner, e.g. 0.002. 0, the default, plans each path in full when it's needed. Only read
+ * when Pathing is MODEL_PREDICTIVE.
+ *
+ * Path_Query: how AStarController answers questions about paths, e.g. how much lava lies on the way somewhere. One of
+ * AStarController.PathQuery; TURN_AWARE is the default. Only read when Pathing is A_STAR.
+ *
+ * Background_Planning: true to have AStarController replan on a background thread while the car follows the path it
+ * has, rather than on every new tile before it moves on. False by default. Only read when Pathing is A_STAR.
+ *
+ * Recon: FRONTIER (the default) explores with FrontierController, going wherever the most unseen tiles can be seen for
+ * the cost of getting there. SWEEP explores with SweepController, which drives a sweep planned once at the start.
+ * FOG_OF_WAR explores with FogOfWarController, driving to random unseen tiles.
+ */
+public class ControllerSettings {
+
+    /** The ways paths can be followed. */
+    public enum Pathing {
+        MODEL_PREDICTIVE,
+        A_STAR
+    }
+
+    /** The ways the map can be explored. */
+    public enum Recon {
+        FRONTIER,
+        SWEEP,
+        FOG_OF_WAR
+    }
+
+    /**
+     * Makes the pathing strategy chosen by the Pathing setting.
+     * @param car is the car to control.
+     * @return the pathing strategy.
+     * @throws IllegalArgumentException if the setting isn't one of the choices.
+     */
+    public static PathingStrategy createPathingStrategy(Car car) {
+        switch (getChoice("Pathing", Pathing.class, Pathing.MODEL_PREDICTIVE)) {
+            case A_STAR:
+                return new AStarController(car, getChoice("Path_Query", AStarController.PathQuery.class,
+                        AStarController.PathQuery.TURN_AWARE), getFlag("Background_Planning", false));
+            default:
+                return new ModelPredictiveController(car, getNumber("Planning_Budget", 0));
+        }
+    }
+
+    /**
+     * Makes the recon strategy chosen by the Recon setting.
+     * @param car is the car to control.
+     * @return the recon strategy.
+     * @throws IllegalArgumentException if the setting isn't one of the choices.
+     */
+    public static ReconStrategy createReconStrategy(Car car) {
+        switch (getChoice("Recon", Recon.class, Recon.FRONTIER)) {
+            case SWEEP:
+                return new SweepController(car);
+            case FOG_OF_WAR:
+                return new FogOfWarController(car);
+            default:
+                return new FrontierController(car);
+        }
+    }
+
+    /**
+     * Returns the number a setting holds.
+     * @param key is the name of the setting.
+     * @param defaultValue is the number if the setting isn't there.
+     * @return the number.
+     * @throws IllegalArgumentException if the setting isn't a number.
+     */
+    private static float getNumber(String key, float defaultValue) {
+        final String value = Simulation.getDrivingProperty(key, Float.toString(defaultValue)).trim();
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number, not " + value + ".", e);
+        }
+    }
+
+    /**
+     * Returns whether a true or false setting is true, ignoring case.
+     * @param key is the name of the setting.
+     * @param defaultValue is the value if the setting isn't there.
+     * @return the value.
+     * @throws IllegalArgumentException if the setting is neither true nor false.
+     */
+    private static boolean getFlag(String key, boolean defaultValue) {
+        final String value = Simulation.getDrivingProperty(key, Boolean.toString(defaultValue)).trim();
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException(key + " must be true or false, not " + value + ".");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Returns the choice a setting names, ignoring case.
+     * @param key is the name of the setting.
+     * @param choices is the type of the choices.
+     * @param defaultChoice is the choice if the setting isn't there.
+     * @return the choice.
+     * @throws IllegalArgumentException if the setting isn't one of the choices.
+     */
+    private static <E extends Enum<E>> E getChoice(String key, Class<E> choices, E defaultChoice) {
+        final String value = Simulation.getDrivingProperty(key, defaultChoice.name()).trim();
+        for (E choice : choices.getEnumConstants()) {
+            if (choice.name().equalsIgnoreCase(value)) {
+                return choice;
+            }
+        }
+        throw new IllegalArgumentException(key + " must be one of " + Arrays.toString(choices.getEnumConstants())
+                + ", not " + value + ".");
+    }
+}
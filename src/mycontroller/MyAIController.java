@@ -7,11 +7,12 @@ package mycontroller;
 import controller.CarController;
 import mycontroller.strategies.healing.HealStopController;
 import mycontroller.strategies.healing.HealingStrategy;
-import mycontroller.strategies.pathing.AStarController;
 import mycontroller.strategies.pathing.PathingStrategy;
-import mycontroller.strategies.recon.FogOfWarController;
 import mycontroller.strategies.recon.ReconStrategy;
+import mycontroller.utilities.HealthAwarePlanner;
+import mycontroller.utilities.TourPlanner;
 import mycontroller.utilities.Utilities;
+import swen30006.driving.SimulationMetrics;
 import tiles.LavaTrap;
 import tiles.MapTile;
 import tiles.TrapTile;
@@ -25,13 +26,18 @@ public class MyAIController extends CarController {
 
     private enum ControllerState {RECONNING, HEALING, PATHING}
 
-    private static final float MIN_HEALTH_BEFORE_HEAL = 50;
-    private static final float MIN_HEALTH_BEFORE_GET_KEY = 100;
-    private static final float FULL_HEALTH = 100;
-
     private ReconStrategy recon;
     private HealingStrategy healing;
     private PathingStrategy pathing;
+    // Plans the rest of the trip through the keys we know of and the exit, including where to heal on the way.
+    private final TourPlanner tourPlanner = new TourPlanner();
+    // Finds how much lava lies between where we'd explore next and a health trap.
+    private final HealthAwarePlanner healthAwarePlanner = new HealthAwarePlanner();
+    // The lava tiles to drive onto to explore and then heal, and where the car was and would explore when that was
+    // worked out. It takes path searches, so it's only worked out again when either changes.
+    private int lavaTilesToExploreAndHeal;
+    private Coordinate exploredFrom = null;
+    private Coordinate placeToExplore = null;
 
     // The data structure that holds the car's internal representation of the world map.
     private final HashMap<Coordinate, MapTile> internalWorldMap = super.getMap();
@@ -50,9 +56,9 @@ public class MyAIController extends CarController {
         super(car);
 
         // Initialize concrete implementations of utilized strategies.
-        this.recon = new FogOfWarController(car, true, true);
+        this.recon = ControllerSettings.createReconStrategy(car);
         this.healing = new HealStopController(car);
-        this.pathing = new AStarController(car);
+        this.pathing = ControllerSettings.createPathingStrategy(car);
 
         // Save the coordinates finish tiles.
         saveFinishLineCoordinates();
@@ -71,6 +77,7 @@ public class MyAIController extends CarController {
 
         // Based on the current map, decide what the controller should be doing and change its state to reflect it.
         determineState();
+        SimulationMetrics.reportControllerState(this.currentState.name());
 
         // Based on our current state, query the respective sub-controller to update the car.
         switch (this.currentState) {
@@ -91,92 +98,141 @@ public class MyAIController extends CarController {
      * in charge.
      */
     private void determineState() {
+        // The next thing to get: the exit if we have every key, otherwise the next key, if we've seen it.
+        ArrayList<Coordinate> waypoints = getWaypoints();
+        Coordinate target = waypoints.isEmpty() ? null : waypoints.get(0);
 
-        if (getKey() == 1) {
-            // We should go to the exit.
-            Coordinate finishCoordinate = finishLocations.get(0);
-            if (currentState != ControllerState.PATHING || pathing.hasArrived()) {
-                // We're not already currently going there. Determine if we should go now or heal first.
-                if (getHealth() < FULL_HEALTH) {
-                    // Determine which of the path to exit or best healing position has fewer lava tiles along the way
-                    // and take that path.
-                    int numLavaTilesToBestHealthTrap = this.healing.getNumLavaTilesToBestHealingPos();
-                    Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
-                    Coordinate behindPosition = Utilities.getBehindCoordinate(currPosition, getOrientation());
-                    int numLavaTilesToFinish = Utilities.getLavaCount(internalWorldMap,
-                            this.pathing.getBestPathTo(internalWorldMap, behindPosition, currPosition,
-                                    finishLocations.get(0)));
-                    if (numLavaTilesToFinish <= numLavaTilesToBestHealthTrap) {
-                        // We can just go to the finish.
-                        this.destination = finishCoordinate;
-                        beginPathing(destination);
-                    } else {
-                        // The path to the exit has more lava tiles than to healing. Let's be safe and go heal first,
-                        // if we can.
-                        if (healthLocations.size() > 0) {
-                            // We know a healing location. Go to it.
-                            beginHealing();
-                        } else if (currentState != ControllerState.RECONNING) {
-                            // We don't know a healing location. Look for one.
-                            beginRecon();
-                        }
-                    }
-                } else {
-                    // We're full health already. Just go finish.
-                    this.destination = finishCoordinate;
-                    beginPathing(destination);
-                }
+        if (target != null) {
+            if ((currentState == ControllerState.PATHING && target.equals(destination) && !pathing.hasArrived())
+                    || (currentState == ControllerState.HEALING && !healing.isFinished())) {
+                // We're already on our way there, or healing up for it.
+                return;
             }
-        } else if (keyLocations.containsKey(getKey() - 1)) {
-            // We know where the next key is.
-            Coordinate nextKeyLocation = keyLocations.get(getKey() - 1);
-            if (destination == null || !this.destination.equals(nextKeyLocation)) {
-                // We're not currently going for the key. Decide if we should heal first or go straight there.
-                if (getHealth() < MIN_HEALTH_BEFORE_GET_KEY) {
-                    // We need to heal first.
-                    if (currentState != ControllerState.HEALING && this.pathing.hasArrived()) {
-                        // We're not already healing.
-                        if (healthLocations.size() > 0) {
-                            // We know where a healing location is. Go there.
-                            beginHealing();
-                        } else if (currentState != ControllerState.RECONNING && this.pathing.hasArrived()) {
-                            // We don't know where a healing location is. Go look for it.
-                            beginRecon();
-                        }
+
+            // Plan the rest of the trip, and go now if its first stop is the target. If there's no way to make it
+            // without running out of health even after healing to full, there's nothing better to do than try anyway.
+            // Tiles we haven't seen are planned as road, so the tour is a lower bound on what the trip really costs:
+            // if even that needs a healer we don't know of, exploring is the only thing that can pay for itself.
+            Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
+            TourPlanner.Tour tour = tourPlanner.getTour(internalWorldMap, currPosition, getHealth(), waypoints,
+                    healthLocations);
+            TourPlanner.Stop firstStop = tour == null ? null : tour.getStops().get(0);
+            if ((firstStop != null && !firstStop.isHealingStop())
+                    || (tour == null && getHealth() >= HealthAwarePlanner.FULL_HEALTH)) {
+                this.destination = target;
+                beginPathing(destination);
+            } else if (currentState != ControllerState.PATHING || this.pathing.hasArrived()) {
+                // We need to heal first, once we're done with what we're doing.
+                if (healthLocations.size() > 0) {
+                    // We know where a healing location is. Go to the one the tour stops at, and heal as much as the
+                    // tour says to.
+                    beginHealing();
+                    if (firstStop != null) {
+                        this.healing.setHealingLocation(firstStop.getLocation());
+                        this.healing.setRequiredHealth(firstStop.getHealTo());
                     }
-                } else {
-                    // We're good on health. Go for the key.
-                    this.destination = nextKeyLocation;
+                } else if (!isExplorationWorthwhile(tour == null)) {
+                    // There's nowhere left to look for a healing location, or we can't afford to go looking. Try
+                    // anyway.
+                    this.destination = target;
                     beginPathing(destination);
+                } else if (currentState != ControllerState.RECONNING) {
+                    // We don't know where a healing location is. Go look for it.
+                    beginRecon();
                 }
             }
         } else {
-            // There's no key or finish to go to. Begin reconning or healing.
+            // There's no key or finish we know of to go to. Explore, healing first if we can't afford to get to where
+            // we'd explore next.
             if (currentState == ControllerState.HEALING) {
                 // We're currently healing.
                 if (this.healing.isFinished()) {
                     // Healing is finished. Go back to reconning.
                     beginRecon();
                 }
-            } else if (getHealth() < MIN_HEALTH_BEFORE_HEAL || currentState == ControllerState.PATHING) {
-                // We need to heal and/or we just got done getting a key.
-                if (currentState != ControllerState.HEALING && this.pathing.hasArrived()) {
-                    // We're not already healing.
-                    if (healthLocations.size() > 0) {
-                        // We know where a healing location is. Go there.
-                        beginHealing();
-                    } else if (currentState != ControllerState.RECONNING && this.pathing.hasArrived()) {
-                        // We don't know where a healing location is. Go look for it.
-                        beginRecon();
-                    }
-                }
-            } else {
-                if (currentState != ControllerState.RECONNING) {
-                    beginRecon();
-                    this.destination = null;
-                }
+            } else if (currentState == ControllerState.PATHING && !this.pathing.hasArrived()) {
+                // We're still on our way to a key. Get there first.
+                return;
+            } else if (healthLocations.size() > 0 && getHealth() < HealthAwarePlanner.FULL_HEALTH
+                    && (currentState == ControllerState.PATHING || (!Utilities.isLava(internalWorldMap,
+                    Utilities.getCoordinatePosition(getX(), getY())) && !canAffordToExploreAndHeal()))) {
+                // We know where a healing location is, and we just got done getting a key or can't afford to explore
+                // on without healing. If we're crossing lava, get off it first: turning around on it costs more than
+                // finishing the crossing.
+                beginHealing();
+            } else if (currentState != ControllerState.RECONNING) {
+                beginRecon();
+                this.destination = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the places we still have to go, in the order we have to go to them: the keys we know the locations of,
+     * in order up to the first one we don't, then the exit if we know where every key is.
+     * @return a list of coordinates of the remaining keys we know of and possibly the exit.
+     */
+    private ArrayList<Coordinate> getWaypoints() {
+        ArrayList<Coordinate> waypoints = new ArrayList<>();
+        for (int key = getKey() - 1; key > 0; key--) {
+            if (!keyLocations.containsKey(key)) {
+                return waypoints;
             }
+            waypoints.add(keyLocations.get(key));
+        }
+        waypoints.add(finishLocations.get(0));
+        return waypoints;
+    }
+
+    /**
+     * Returns the numbers of the keys we still have to pick up but don't know the locations of.
+     * @return a list of key numbers, highest first.
+     */
+    private ArrayList<Integer> getMissingKeys() {
+        ArrayList<Integer> missingKeys = new ArrayList<>();
+        for (int key = getKey() - 1; key > 0; key--) {
+            if (!keyLocations.containsKey(key)) {
+                missingKeys.add(key);
+            }
+        }
+        return missingKeys;
+    }
+
+    /**
+     * Determines whether exploring could still find something the mission needs (a key we haven't seen, or a healing
+     * location if we need one), and whether we can afford to. The tour is a lower bound on what the trip costs, so if
+     * there's no tour, going straight there already needs more health than we have; exploring only pays for itself if
+     * we have the health to get to where we'd explore.
+     * @param needHealthTrap is whether we need a healing location we haven't seen.
+     * @return whether to explore.
+     */
+    private boolean isExplorationWorthwhile(boolean needHealthTrap) {
+        if (this.recon.isFinished(getMissingKeys(), needHealthTrap)) {
+            return false;
+        }
+        return HealthAwarePlanner.getHealthNeeded(this.recon.getLavaTilesToExplore()) <= getHealth();
+    }
+
+    /**
+     * Determines whether we have the health to drive to the next place we'd explore, and from there on to a health
+     * trap, so that exploring never leaves us too far from one to heal.
+     * @return whether we can afford to explore before healing.
+     */
+    private boolean canAffordToExploreAndHeal() {
+        final Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
+        final Coordinate place = this.recon.getPlaceToExplore();
+        if (place == null) {
+            return false;
+        }
+        if (!currPosition.equals(exploredFrom) || !place.equals(placeToExplore)) {
+            final int lavaTiles = this.recon.getLavaTilesToExplore();
+            lavaTilesToExploreAndHeal = lavaTiles == Integer.MAX_VALUE ? Integer.MAX_VALUE
+                    : lavaTiles + healthAwarePlanner.getLavaTilesToSafety(internalWorldMap, place, healthLocations);
+            exploredFrom = currPosition;
+            placeToExplore = place;
         }
+        return lavaTilesToExploreAndHeal != Integer.MAX_VALUE
+                && HealthAwarePlanner.getHealthNeeded(lavaTilesToExploreAndHeal) <= getHealth();
     }
 
     /**
@@ -5,7 +5,8 @@
 package mycontroller.strategies.healing;
 
 import controller.CarController;
-import mycontroller.strategies.pathing.AStarController;
+import mycontroller.ControllerSettings;
+import mycontroller.strategies.pathing.CandidateEvaluator;
 import mycontroller.strategies.pathing.PathingStrategy;
 import mycontroller.utilities.Utilities;
 import tiles.MapTile;
@@ -24,11 +25,16 @@ public class HealStopController extends CarController implements HealingStrategy
     private static final float FULL_HEALTH = 100;
 
     private PathingStrategy pathing;
+    private final CandidateEvaluator candidateEvaluator = new CandidateEvaluator();
 
     private HashMap<Coordinate, MapTile> internalWorldMap;
     private ArrayList<Coordinate> healthLocations;
-    private HealthLocation destination;
+    private Coordinate destination;
     private boolean finished = true;
+    // The health to heal up to before we're done.
+    private float requiredHealth = FULL_HEALTH;
+    // The health location we've been told to heal at, if any.
+    private Coordinate healingLocation = null;
 
     /** The position of the car at the latest update */
     private Coordinate latestPosition;
@@ -37,7 +43,7 @@ public class HealStopController extends CarController implements HealingStrategy
         super(car);
 
         this.latestPosition = Utilities.getCoordinatePosition(getX(), getY());
-        this.pathing = new AStarController(car);
+        this.pathing = ControllerSettings.createPathingStrategy(car);
     }
 
     @Override
@@ -47,17 +53,26 @@ public class HealStopController extends CarController implements HealingStrategy
             setDestination();
         }
 
-        // Check if any health tiles around us we have just seen are better than our current destination.
+        // We're done as soon as we have the health we need, even if we haven't quite stopped on the tile yet.
+        if (getHealth() >= requiredHealth && Utilities.isHealth(internalWorldMap, Utilities.getCoordinatePosition(
+                getX(), getY()))) {
+            this.finished = true;
+            this.destination = null;
+            return;
+        }
+
+        // Check if any health tiles around us we have just seen are better than our current destination, unless we've
+        // been told where to go.
         if (!this.pathing.hasArrived()) {
             Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
-            if (!currPosition.equals(latestPosition)) {
+            if (!currPosition.equals(latestPosition) && healingLocation == null) {
                 latestPosition = currPosition;
                 setDestination(getBestHealthLocation());
             }
             this.pathing.update(delta);
         } else {
-            // When we arrive at the destination, wait on the tile until we are fully healed.
-            if (getHealth() == FULL_HEALTH) {
+            // When we arrive at the destination, wait on the tile until we have the health we need.
+            if (getHealth() >= requiredHealth) {
                 this.finished = true;
                 this.destination = null;
             } else {
@@ -78,8 +93,13 @@ public class HealStopController extends CarController implements HealingStrategy
     }
 
     @Override
-    public int getNumLavaTilesToBestHealingPos() {
-        return getBestHealthLocation().numLavaTilesOnPathTo;
+    public void setHealingLocation(Coordinate location) {
+        this.healingLocation = location;
+    }
+
+    @Override
+    public void setRequiredHealth(float health) {
+        this.requiredHealth = Math.min(health, FULL_HEALTH);
     }
 
     @Override
@@ -91,6 +111,8 @@ public class HealStopController extends CarController implements HealingStrategy
     public void reset() {
         this.destination = null;
         this.finished = true;
+        this.requiredHealth = FULL_HEALTH;
+        this.healingLocation = null;
     }
 
     /**
@@ -98,69 +120,36 @@ public class HealStopController extends CarController implements HealingStrategy
      */
     private void setDestination() {
         // If no health location is provided, get the best health location and set our destination to it.
-        HealthLocation bestHealthLocation = getBestHealthLocation();
-        setDestination(bestHealthLocation);
+        if (healingLocation != null) {
+            setDestination(healingLocation);
+        } else {
+            setDestination(getBestHealthLocation());
+        }
     }
 
     /**
      * This sets a destination for our vehicle to the given health location.
      * @param healthLocation The given location of the health tile.
      */
-    private void setDestination(HealthLocation healthLocation) {
+    private void setDestination(Coordinate healthLocation) {
         this.pathing.updateMap(internalWorldMap);
-        this.pathing.setDestination(healthLocation.location);
+        this.pathing.setDestination(healthLocation);
         this.finished = false;
         this.destination = healthLocation;
     }
 
     /**
-     * This finds the best health location calculating a score for all possible health tiles and retrieving the best
-     * one.
+     * This finds the best health location: the one with the fewest lava tiles on the way, then the shortest path.
      * @return The best health location.
      */
-    private HealthLocation getBestHealthLocation() {
-        // Get our current and behind position
+    private Coordinate getBestHealthLocation() {
         Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
-        Coordinate behindCoordinate = Utilities.getBehindCoordinate(currPosition, getOrientation());
-
-        // Get the first health location in our array and calculate the shortest path to it
-        // Then, calculate the number of lava tiles on this path
-        Coordinate bestHealthLocation = healthLocations.get(0);
-        ArrayList<Coordinate> bestShortestPath = this.pathing.getBestPathTo(internalWorldMap, behindCoordinate,
-                currPosition, bestHealthLocation);
-        int minNumLavaTiles = Utilities.getLavaCount(internalWorldMap, bestShortestPath);
-
-        // Continue calculations for health locations in the array (if there are any)
-        for (int i = 1; i < healthLocations.size(); i++) {
-            Coordinate healthLocation = healthLocations.get(i);
-            ArrayList<Coordinate> currShortestPath = this.pathing.getBestPathTo(internalWorldMap, behindCoordinate,
-                    currPosition, healthLocation);
-            int currNumLavaTiles = Utilities.getLavaCount(internalWorldMap, currShortestPath);
-
-            // If we find a new health location with a lower cost of lava tiles and a shorter path, return this health
-            // location.
-            if (currNumLavaTiles < minNumLavaTiles
-                    || (currNumLavaTiles == minNumLavaTiles && currShortestPath.size() < bestShortestPath.size())) {
-                bestHealthLocation = healthLocation;
-                bestShortestPath = currShortestPath;
-                minNumLavaTiles = currNumLavaTiles;
-            }
-        }
-
-        return new HealthLocation(bestHealthLocation, minNumLavaTiles);
-    }
-
-    /**
-     * This class represents a health location.
-     */
-    class HealthLocation {
-        // The position of the tile and number of lava tiles between the car and the tile
-        final Coordinate location;
-        final int numLavaTilesOnPathTo;
-
-        HealthLocation(Coordinate location, int numLavaTilesOnPathTo) {
-            this.location = location;
-            this.numLavaTilesOnPathTo = numLavaTilesOnPathTo;
+        CandidateEvaluator.Candidate best = candidateEvaluator.getBest(internalWorldMap, currPosition,
+                getOrientation(), healthLocations);
+        if (best == null) {
+            // None of them can be reached. Go for the first, and let pathing report it.
+            return healthLocations.get(0);
         }
+        return best.location;
     }
 }
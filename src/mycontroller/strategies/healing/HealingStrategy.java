@@ -29,10 +29,17 @@ public interface HealingStrategy {
     void updateMap(HashMap<Coordinate, MapTile> map, ArrayList<Coordinate> healthLocations);
 
     /**
-     * Gets the number of lava tiles in the path to the best healing tile.
-     * @return the number of lava tiles on the path to the best healing positions.
+     * Sets the health trap to heal at, rather than leaving it to the strategy to choose. Resetting the strategy lets it
+     * choose again.
+     * @param location is the location of the health trap.
      */
-    int getNumLavaTilesToBestHealingPos();
+    void setHealingLocation(Coordinate location);
+
+    /**
+     * Sets the health to heal up to before healing is finished. Resetting the strategy sets it back to full health.
+     * @param health is the health to heal up to.
+     */
+    void setRequiredHealth(float health);
 
     /**
      * Returns if the healing is finished.
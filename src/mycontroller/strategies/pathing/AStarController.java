@@ -5,41 +5,110 @@
 package mycontroller.strategies.pathing;
 
 import controller.CarController;
-import mycontroller.utilities.AStar;
+import mycontroller.utilities.BidirectionalPlanner;
+import mycontroller.utilities.CorridorGraph;
+import mycontroller.utilities.HierarchicalPlanner;
+import mycontroller.utilities.JumpPointSearch;
+import mycontroller.utilities.LatticePlanner;
+import mycontroller.utilities.ParallelPlanner;
+import mycontroller.utilities.SpeedProfile;
+import mycontroller.utilities.TurnAwarePlanner;
 import mycontroller.utilities.Utilities;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import swen30006.driving.SimulationMetrics;
 import tiles.MapTile;
 import utilities.Coordinate;
 import world.Car;
 import world.WorldSpatial.Direction;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-
-import static mycontroller.utilities.Utilities.getRelativeDirection;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 /** This class is responsible for navigating/controlling the car to a given destination from its current position. */
 public class AStarController extends CarController implements PathingStrategy {
 
+    /** The ways questions about paths can be answered. */
+    public enum PathQuery {
+        // Walk down a cached distance field per goal. Cheap for repeated questions about the same goal.
+        TURN_AWARE,
+        // Jump Point Search, which ignores turns but expands far fewer tiles across open road.
+        JUMP_POINT_SEARCH,
+        // Search from both ends at once, with turns. Cheaper for one-off questions about long routes.
+        BIDIRECTIONAL,
+        // Search only the junctions between corridors, with turns. The graph is built when the controller is made.
+        CORRIDOR,
+        // Split one search across a thread per core, with turns. Only worth it on maps too big for one thread to search
+        // quickly, on a machine with several cores; on one core the threads just take turns.
+        PARALLEL
+    }
+
     // Speed to go at when we're at our destination's coordinate, but are moving towards its center.
     private static final float BRAKE_SPEED = 0.7f;
     // Units to be within the center of a tile before it counts as having been reached.
     private static final float MOVEMENT_ACCURACY = 0.2f;
-    // The amount to scale up the speed from brakes in the path.
-    private static final float SPEED_PER_TILE = 0.8f;
-    private static final float BASE_SPEED_LAVA_MULTIPLIER = 1.8f;
+    // Units from the center of a tile to its edge.
+    private static final float HALF_TILE = 0.5f;
+    // Units past a tile's edge the car has to be before a new plan may take it straight back over that edge.
+    private static final float REPLAN_MARGIN = 0.25f;
     private static final float DEGREES_IN_FULL_ROTATION = 360.0f;
     // The minimum number of degrees to care about when checking if we're facing.
     private static final float DEGREES_FACING_THRESHOLD = 12.0f;
     private static final float MIN_TURNING_DEGREES = 5.0f;
     // Minimum speed to allow for turning on the spot.
     private static final float MIN_SPEED_FOR_TURNING = 0.1f;
-    // Maximum speed to go at any given point.
-    private static final float MAX_BASE_SPEED = 3f;
-    private static final float LAVA_MAX_SPEED = 4.4f;
     private static final float MIN_SPEED_BEFORE_LAVA_ACCELERATE = 2;
     private static final float MIN_KEY_NUM_BEFORE_LAVA_ACCELERATE = 2;
-
+    // Frames to back up for when the car's nose is stuck against a wall while turning on the spot.
+    private static final int BACK_UP_FRAMES = 15;
+    // Maps with at least this many tiles are planned hierarchically first, so that the lattice only plans nearby.
+    private static final int HIERARCHICAL_MIN_TILES = 10000;
+    // Tiles the lattice may stray from the hierarchical plan's refined route: about a cluster, so that the lattice
+    // can use all of the clusters the route was refined through.
+    private static final int LATTICE_MARGIN = 10;
+
+    private static Logger logger = LogManager.getFormatterLogger();
+
+    // Plans the route we drive, and the speeds to drive it at. 'planner' answers other strategies' questions about
+    // paths, since it caches them.
+    private final LatticePlanner lattice = new LatticePlanner();
+    private final TurnAwarePlanner planner = new TurnAwarePlanner();
+    private final HierarchicalPlanner hierarchy = new HierarchicalPlanner();
+    private final JumpPointSearch jumpPointSearch = new JumpPointSearch();
+    private final BidirectionalPlanner bidirectional = new BidirectionalPlanner();
+    private final CorridorGraph corridors = new CorridorGraph();
+    // Only made in PARALLEL mode, since it starts its threads straight away.
+    private final ParallelPlanner parallel;
+    private final PathQuery pathQuery;
+    // If set, replans after the first one for a destination run on this thread, with planners of their own, so that
+    // they don't hold up the simulation. The newest request waits in 'planRequest' and the newest plan in
+    // 'publishedPlan'; older ones are dropped.
+    private final ExecutorService backgroundPlanner;
+    private final LatticePlanner backgroundLattice;
+    private final HierarchicalPlanner backgroundHierarchy;
+    private final AtomicReference<PlanRequest> planRequest = new AtomicReference<>();
+    private final AtomicReference<Plan> publishedPlan = new AtomicReference<>();
+    // The background planner's work, oldest first, checked as it finishes so that a failure isn't lost. If one fails,
+    // we plan on this thread from then on.
+    private final ArrayDeque<Future<?>> planTasks = new ArrayDeque<>();
+    private boolean planInBackground;
+    // The background planner keeps its own copy of the map, made once. Only the tiles the car can see ever change, so
+    // after that it's only handed the tiles that have changed since its last request. 'sentMap' is the copy as it
+    // will be once it has every change, and 'mapChanges' the changes it hasn't been handed yet.
+    private HashMap<Coordinate, MapTile> backgroundMap = null;
+    private HashMap<Coordinate, MapTile> sentMap = null;
+    private HashMap<Coordinate, MapTile> mapChanges = new HashMap<>();
+    // Plans are numbered in the order they're asked for, so that one can't replace a newer one.
+    private int plansRequested = 0;
+    private int currentPlanNumber = 0;
     private HashMap<Coordinate, MapTile> internalWorldMap;
     private Coordinate currPosition = new Coordinate(Math.round(getX()), Math.round(getY()));
     private Coordinate prevPosition = currPosition;
@@ -48,9 +117,45 @@ public class AStarController extends CarController implements PathingStrategy {
     private int pathStep;
     private Coordinate destination = null;
     private boolean pathComplete = true;
+    // Whether 'currentPath' only goes part of the way to the destination.
+    private boolean partialPath = false;
+    // Where the car was when it last tried to creep forward to turn on the spot, to tell if a wall stopped it.
+    private boolean creeping = false;
+    private float creepX;
+    private float creepY;
+    private int backUpFramesLeft = 0;
 
     public AStarController(Car car) {
+        this(car, PathQuery.TURN_AWARE);
+    }
+
+    public AStarController(Car car, PathQuery pathQuery) {
+        this(car, pathQuery, false);
+    }
+
+    public AStarController(Car car, PathQuery pathQuery, boolean backgroundPlanning) {
         super(car);
+
+        this.pathQuery = pathQuery;
+        if (pathQuery == PathQuery.CORRIDOR) {
+            corridors.update(getMap());
+        }
+        this.parallel = pathQuery == PathQuery.PARALLEL
+                ? new ParallelPlanner(Runtime.getRuntime().availableProcessors()) : null;
+        if (backgroundPlanning) {
+            this.backgroundPlanner = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "background-planner");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.backgroundLattice = new LatticePlanner();
+            this.backgroundHierarchy = new HierarchicalPlanner();
+            this.planInBackground = true;
+        } else {
+            this.backgroundPlanner = null;
+            this.backgroundLattice = null;
+            this.backgroundHierarchy = null;
+        }
     }
 
     @Override
@@ -63,9 +168,24 @@ public class AStarController extends CarController implements PathingStrategy {
 
         currPosition = Utilities.getCoordinatePosition(getX(), getY());
         if (!currPosition.equals(prevPosition)) {
-            // We've moved to a new position. Recalculate the path.
-            calculatePathToDestination();
+            // We've moved to a new position. Recalculate the path, in the background if we can, and keep following
+            // the one we have until then. We can't if we've come off it (e.g. skidded), or it's no longer safe.
+            final Coordinate leftPosition = prevPosition;
             prevPosition = currPosition;
+            if (planInBackground && currPosition.equals(currentPath.get(pathStep).target)
+                    && !isPathChanged()) {
+                requestPlan();
+            } else {
+                calculatePathToDestination(leftPosition);
+            }
+        }
+        if (planInBackground) {
+            if (hasBackgroundPlanningFailed()) {
+                planInBackground = false;
+                calculatePathToDestination();
+            } else {
+                adoptPublishedPlan();
+            }
         }
 
         PathUnit nextPathUnit = currentPath.get(pathStep);
@@ -83,8 +203,12 @@ public class AStarController extends CarController implements PathingStrategy {
         // Determine turning speed.
         float maxTurningSpeed;
         if (pathStep == 0 || (!currentPath.get(pathStep - 1).brakeHere && isFacing(angleToLook, 2 * DEGREES_FACING_THRESHOLD))
-                || isFacing(angleToLook, DEGREES_FACING_THRESHOLD) || ((!currentPath.get(pathStep - 1).brakeHere || getSpeed() > 1.1 * BRAKE_SPEED) && currentPath.get(pathStep - 1).isLava)) {
+                || isFacing(angleToLook, DEGREES_FACING_THRESHOLD)) {
             maxTurningSpeed = Float.MAX_VALUE;
+        } else if (!currentPath.get(pathStep - 1).brakeHere
+                || (getSpeed() > 1.1 * BRAKE_SPEED && currentPath.get(pathStep - 1).isLava)) {
+            // Turn on the move where the plan does, but slow down enough to make the turn without hitting a wall.
+            maxTurningSpeed = SpeedProfile.CORNER_SPEED;
         } else {
             maxTurningSpeed = 2 * MIN_SPEED_FOR_TURNING;
         }
@@ -99,7 +223,10 @@ public class AStarController extends CarController implements PathingStrategy {
             if (distanceFromTarget < MOVEMENT_ACCURACY || (!nextPathUnit.brakeHere)) {
                 // We've reached our next tile. Get ready to proceed to the next one.
                 pathStep++;
-                if (pathStep == currentPath.size()) {
+                if (pathStep == currentPath.size() && partialPath) {
+                    // We've reached the end of the part we planned. Plan the next part.
+                    calculatePathToDestination();
+                } else if (pathStep == currentPath.size()) {
                     // We've isFinished our path.
                     pathComplete = true;
                     currentPath = null;
@@ -108,9 +235,10 @@ public class AStarController extends CarController implements PathingStrategy {
         } else if (isFacing(angleToLook, DEGREES_FACING_THRESHOLD)) {
             // Only change speed if we're looking at the center of the target tile.
             final float currSpeed = getSpeed();
-            if (currSpeed < nextPathUnit.speed) {
+            final float targetSpeed = getTargetSpeed(nextPathUnit);
+            if (currSpeed < targetSpeed) {
                 applyForwardAcceleration();
-            } else if (currSpeed > nextPathUnit.speed) {
+            } else if (currSpeed > targetSpeed) {
                 applyBrake();
             }
         }
@@ -132,13 +260,38 @@ public class AStarController extends CarController implements PathingStrategy {
      * @param map is the current map.
      */
     public void updateMap(HashMap<Coordinate, MapTile> map) {
+        if (map != internalWorldMap) {
+            // A different map. The background planner needs a new copy.
+            backgroundMap = null;
+        }
         this.internalWorldMap = map;
+
+        if (backgroundMap != null) {
+            for (Coordinate coordinate : getView().keySet()) {
+                final MapTile tile = map.get(coordinate);
+                if (tile != null && sentMap.get(coordinate) != tile) {
+                    sentMap.put(coordinate, tile);
+                    mapChanges.put(coordinate, tile);
+                }
+            }
+        }
     }
 
     @Override
-    public ArrayList<Coordinate> getBestPathTo(HashMap<Coordinate, MapTile> map, Coordinate behindPos,
-        Coordinate currPos, Coordinate goal) {
-        return AStar.getShortestPath(map, behindPos, currPos, goal);
+    public ArrayList<Coordinate> getBestPathTo(HashMap<Coordinate, MapTile> map, Coordinate currPos,
+        Direction heading, Coordinate goal) {
+        switch (pathQuery) {
+            case JUMP_POINT_SEARCH:
+                return jumpPointSearch.getShortestPath(map, currPos, goal);
+            case BIDIRECTIONAL:
+                return bidirectional.getShortestPath(map, currPos, heading, goal);
+            case CORRIDOR:
+                return corridors.getShortestPath(map, currPos, heading, goal);
+            case PARALLEL:
+                return parallel.getShortestPath(map, currPos, heading, goal);
+            default:
+                return planner.getShortestPath(map, currPos, heading, goal);
+        }
     }
 
     /**
@@ -152,36 +305,203 @@ public class AStarController extends CarController implements PathingStrategy {
     /**
      * Updates the path to the destination. Useful for taking into account what the car is seeing e.g. if it discovers
      * lava in front of it, it may recalculate a path that goes around it.
+     * @throws IllegalArgumentException if there's no path to the destination.
      */
     private void calculatePathToDestination() {
-        ArrayList<Coordinate> path = AStar.getShortestPath(this.internalWorldMap,
-                Utilities.getBehindCoordinate(currPosition, getOrientation()), this.currPosition, destination);
+        calculatePathToDestination(null);
+    }
 
-        if (path == null) {
+    /**
+     * Updates the path to the destination after the car has moved off a tile. Plans start from the center of the car's
+     * tile, so just over an edge, a new plan that goes straight back over it (e.g. for a run up) can't be driven as
+     * planned, and the plan from the other side may well do the same: the car would creep back and forth over the
+     * edge. Such a plan is dropped until the car is REPLAN_MARGIN past the edge, as long as the current path is safe.
+     * @param leftPosition is the tile the car has just left, or null if it hasn't.
+     * @throws IllegalArgumentException if there's no path to the destination.
+     */
+    private void calculatePathToDestination(Coordinate leftPosition) {
+        SimulationMetrics.recordReplan();
+        final Plan plan = getPlan(lattice, hierarchy, getPlanRequest(internalWorldMap,
+                Collections.<Coordinate, MapTile>emptyMap()));
+        if (plan == null) {
             throw new IllegalArgumentException("No path to the given destination.");
         }
+        if (leftPosition != null && plan.path.size() > 1 && plan.path.get(1).target.equals(leftPosition)
+                && !isPastEdge(leftPosition) && currentPath != null && !isPathChanged()) {
+            return;
+        }
+        followPlan(plan, 0);
+    }
+
+    /**
+     * Asks the background planner for a new path from where the car is now, replacing any request it hasn't started.
+     * It plans on its own copy of the map, so that the map can keep changing while it works, and brings the copy up
+     * to date with the changes in the request first. A replaced request's changes are carried over into this one.
+     */
+    private void requestPlan() {
+        SimulationMetrics.recordReplan();
+        if (backgroundMap == null) {
+            backgroundMap = new HashMap<>(internalWorldMap);
+            sentMap = new HashMap<>(internalWorldMap);
+            mapChanges = new HashMap<>();
+        }
+        final HashMap<Coordinate, MapTile> newChanges = mapChanges;
+        mapChanges = new HashMap<>();
+
+        PlanRequest previous;
+        PlanRequest request;
+        do {
+            previous = planRequest.get();
+            final HashMap<Coordinate, MapTile> changes = new HashMap<>();
+            if (previous != null && previous.map == backgroundMap) {
+                changes.putAll(previous.changes);
+            }
+            changes.putAll(newChanges);
+            request = getPlanRequest(backgroundMap, changes);
+        } while (!planRequest.compareAndSet(previous, request));
+
+        if (previous == null) {
+            planTasks.add(backgroundPlanner.submit(() -> {
+                final PlanRequest next = planRequest.getAndSet(null);
+                next.map.putAll(next.changes);
+                final Plan plan = getPlan(backgroundLattice, backgroundHierarchy, next);
+                if (plan != null) {
+                    publishedPlan.set(plan);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Checks on the work the background planner has finished, and logs the first failure, if any.
+     * @return whether the background planner has failed.
+     */
+    private boolean hasBackgroundPlanningFailed() {
+        while (!planTasks.isEmpty() && planTasks.peek().isDone()) {
+            try {
+                planTasks.poll().get();
+            } catch (InterruptedException | ExecutionException e) {
+                logger.error("Background planning failed, planning on the simulation thread instead", e.getCause());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether a tile on the rest of the path has changed since it was planned, e.g. it has turned out to be
+     * lava. Then the path can't be followed while waiting for a new one.
+     */
+    private boolean isPathChanged() {
+        for (int step = pathStep; step < currentPath.size(); step++) {
+            final PathUnit pathUnit = currentPath.get(step);
+            if (pathUnit.isLava != Utilities.isLava(internalWorldMap, pathUnit.target)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        this.currentPath = getPathUnits(path);
+    /**
+     * Switches to the newest plan from the background planner, if there is one, it's for the current destination,
+     * and the car is still on it. Otherwise keeps following the path we have.
+     */
+    private void adoptPublishedPlan() {
+        final Plan plan = publishedPlan.getAndSet(null);
+        if (plan == null || plan.number <= currentPlanNumber || !plan.destination.equals(destination)) {
+            return;
+        }
+        for (int step = 0; step < plan.path.size(); step++) {
+            if (plan.path.get(step).target.equals(currPosition)) {
+                followPlan(plan, step);
+                return;
+            }
+        }
+    }
 
-        if (currentPath.size() == 1) {
-            // The path is to the current tile.
-            PathUnit pathUnit = currentPath.get(0);
+    /**
+     * Starts following a plan from the given step, which is the car's tile.
+     */
+    private void followPlan(Plan plan, int step) {
+        this.currentPath = plan.path;
+        this.partialPath = plan.partial;
+        this.currentPlanNumber = plan.number;
+
+        if (step == currentPath.size() - 1) {
+            // The rest of the path is the current tile.
+            PathUnit pathUnit = currentPath.get(step);
             final float distanceFromTarget = Utilities.getEuclideanDistance(getX(), getY(), pathUnit.target.x,
                     pathUnit.target.y);
-            if (distanceFromTarget < MOVEMENT_ACCURACY) {
+            if (distanceFromTarget < MOVEMENT_ACCURACY && !partialPath) {
                 // We are at the target.
                 pathComplete = true;
             } else {
                 // We're not close enough to the center.
-                pathStep = 0;
+                pathStep = step;
                 pathComplete = false;
             }
         } else {
-            pathStep = 1;
+            pathStep = step + 1;
             pathComplete = false;
         }
     }
 
+    private PlanRequest getPlanRequest(HashMap<Coordinate, MapTile> map, Map<Coordinate, MapTile> changes) {
+        return new PlanRequest(++plansRequested, map, changes, currPosition, Utilities.getNearestDirection(getAngle()),
+                getSpeed(), destination);
+    }
+
+    /**
+     * Plans a path for a request. Only uses what's in the request and the planners it's given, so that it can run on
+     * the background planner's thread.
+     * @return the plan, or null if there's no path to the destination.
+     */
+    private Plan getPlan(LatticePlanner lattice, HierarchicalPlanner hierarchy, PlanRequest request) {
+        // On a large map, only plan the lattice as far as the first few clusters of the hierarchical plan go. We
+        // replan on every new tile, long before we'd get there. The lattice then only keeps state for the tiles near
+        // that route.
+        Coordinate goal = request.destination;
+        ArrayList<Coordinate> route = null;
+        if (request.map.size() >= HIERARCHICAL_MIN_TILES) {
+            route = hierarchy.getPath(request.map, request.start, request.destination);
+            if (route != null) {
+                goal = route.get(route.size() - 1);
+            }
+        }
+        final boolean partial = !goal.equals(request.destination);
+
+        // Never plan to go faster than we can stop from before driving past what we can see, in case a trap comes
+        // into view.
+        final boolean stopAtGoal = !partial && !Utilities.isLava(request.map, request.destination);
+        LatticePlanner.Plan plan = lattice.getPlan(request.map, request.start, request.heading, request.speed,
+                SpeedProfile.SIGHT_SPEED, goal, stopAtGoal, route, LATTICE_MARGIN);
+        if (plan == null && route != null) {
+            // There's no way to drive the route without straying further from it.
+            plan = lattice.getPlan(request.map, request.start, request.heading, request.speed,
+                    SpeedProfile.SIGHT_SPEED, goal, stopAtGoal);
+        }
+        if (plan == null) {
+            return null;
+        }
+        return new Plan(request.number, request.destination, getPathUnits(plan, request, partial), partial);
+    }
+
+    /**
+     * Returns the speed to go at while heading to the given path unit: as fast as the previous unit allows, as long as
+     * we can still brake down to the unit's speed by the time we reach it. This puts the braking point exactly where
+     * the speed profile needs it, rather than a whole tile early.
+     * @param pathUnit is the path unit we're heading to.
+     * @return the speed to go at.
+     */
+    private float getTargetSpeed(PathUnit pathUnit) {
+        // Speed is only controlled until we're on the unit's tile, so that's when we need to be at the unit's speed.
+        final float distance = Math.max(0, Utilities.getEuclideanDistance(getX(), getY(), pathUnit.target.x,
+                pathUnit.target.y) - HALF_TILE);
+        final float maxSpeed = pathStep == 0 ? pathUnit.speed
+                : Math.max(pathUnit.speed, currentPath.get(pathStep - 1).speed);
+        return Math.min(maxSpeed, SpeedProfile.getSpeedAfter(pathUnit.speed, SpeedProfile.DECELERATION, distance));
+    }
+
     /**
      * Given a target, returns the shortest signed angle to it from the car's current angle.
      * @param target is the coordinate to get the angle to.
@@ -194,89 +514,43 @@ public class AStarController extends CarController implements PathingStrategy {
     }
 
     /**
-     * Given a list of sequential coordinates (as provided by AStar), converts it into an array of PathUnits, allowing
-     * for speed control.
-     * @param path is a list of sequential coordinates (as provided by AStar).
+     * Given a plan (as provided by LatticePlanner), converts it into an array of PathUnits, allowing for speed control.
+     * The plan already says how fast to go on each tile, and where to stop: it turns corners on the move where the car
+     * can, and stops to turn on the spot where it can't. We only add a stop at the destination, and smooth the speeds
+     * into a SpeedProfile from the car's actual speed, since the plan only knows speeds to the nearest speed level.
+     * @param plan is the plan (as provided by LatticePlanner).
+     * @param request is the request the plan is for.
+     * @param partialPath is whether the plan only goes part of the way to the destination.
      * @return an array of PathUnits, representing the path.
      */
-    private ArrayList<PathUnit> getPathUnits(ArrayList<Coordinate> path) {
+    private ArrayList<PathUnit> getPathUnits(LatticePlanner.Plan plan, PlanRequest request, boolean partialPath) {
         ArrayList<PathUnit> pathUnits = new ArrayList<>();
-
-        // Determine whether this path leads to a lava tile or not.
-        boolean destinationIsLava = Utilities.isLava(internalWorldMap, path.get(path.size() - 1));
-
-        boolean brakeHere;
-        boolean currTileIsLava;
-        float speed;
-        float maxSpeed;
-        // Represents the distance until the next brake.
-        int distFromBrake = 1;
-        // We'll iterate over the path from end to start.
-        for (int i = path.size() -  1; i >= 1; i--) {
-            currTileIsLava = Utilities.isLava(internalWorldMap, path.get(i));
-
-            if (currTileIsLava && !destinationIsLava) {
-                maxSpeed = LAVA_MAX_SPEED;
-            } else {
-                maxSpeed = MAX_BASE_SPEED;
-            }
-
-            if (i == path.size() - 1) {
-                // This coordinate is the last one.
-                speed = SPEED_PER_TILE * distFromBrake;
-                if (currTileIsLava && !destinationIsLava) {
-                    speed *= BASE_SPEED_LAVA_MULTIPLIER;
-                }
-
-                pathUnits.add(new PathUnit(path.get(i), Math.min(speed, maxSpeed), true, currTileIsLava));
-                distFromBrake++;
-                continue;
-            }
-
-            // We're at least two units from the end.
-            Direction firstRelativeDirection = getRelativeDirection(path.get(i - 1), path.get(i));
-            Direction secondRelativeDirection = getRelativeDirection(path.get(i), path.get(i + 1));
-            if (firstRelativeDirection != secondRelativeDirection) {
-                // Going from i to i + 1 requires a turn, so we'll need to brake.
-                if (Utilities.getManhattanDistance(currPosition, destination) > 1 && currTileIsLava
-                        && destinationIsLava) {
-                    brakeHere = false;
-                } else {
-                    distFromBrake = 1;
-                    brakeHere = true;
-                }
-
+        final ArrayList<Coordinate> path = plan.path;
+
+        // Determine the speed limit at each coordinate.
+        final int last = path.size() - 1;
+        float[] speedLimits = new float[path.size()];
+        boolean[] brakeHere = new boolean[path.size()];
+        for (int i = 0; i <= last; i++) {
+            if (i == last && !partialPath) {
+                // Slow enough to stop on the center of the destination.
+                speedLimits[i] = BRAKE_SPEED;
+                brakeHere[i] = true;
+            } else if (i > 0 && plan.speeds[i] == 0) {
+                // The plan stops here, e.g. to turn where there's no room to turn on the move.
+                speedLimits[i] = BRAKE_SPEED;
+                brakeHere[i] = true;
             } else {
-                // We're going in a straight line here, so we don't need to brake.
-                brakeHere = false;
-            }
-
-            speed = SPEED_PER_TILE * distFromBrake;
-            if (currTileIsLava && !destinationIsLava) {
-                speed *= BASE_SPEED_LAVA_MULTIPLIER;
+                speedLimits[i] = plan.speeds[i];
             }
-
-            pathUnits.add(new PathUnit(path.get(i), Math.min(speed, maxSpeed),
-                    brakeHere && (!currTileIsLava || destinationIsLava), currTileIsLava));
-            distFromBrake++;
-        }
-
-        // Add the starting coordinate.
-        currTileIsLava = Utilities.isLava(internalWorldMap, path.get(0));
-        speed = SPEED_PER_TILE * distFromBrake;
-        if (currTileIsLava && !destinationIsLava) {
-            speed *= BASE_SPEED_LAVA_MULTIPLIER;
         }
 
-        if (currTileIsLava && !destinationIsLava) {
-            maxSpeed = LAVA_MAX_SPEED;
-        } else {
-            maxSpeed = MAX_BASE_SPEED;
+        float[] speeds = SpeedProfile.getSpeeds(speedLimits, request.speed);
+        for (int i = 0; i <= last; i++) {
+            pathUnits.add(new PathUnit(path.get(i), speeds[i], brakeHere[i],
+                    Utilities.isLava(request.map, path.get(i))));
         }
-        pathUnits.add(new PathUnit(path.get(0), Math.min(speed, maxSpeed), currTileIsLava || path.size() == 1,
-               currTileIsLava));
 
-        Collections.reverse(pathUnits);
         return pathUnits;
     }
 
@@ -294,11 +568,34 @@ public class AStarController extends CarController implements PathingStrategy {
             return;
         }
 
-        // Ensure that we're moving forward at least a little bit, so that turning is possible.
+        if (backUpFramesLeft > 0) {
+            // Back away from the wall. Reversing inverts the steering, so steer the other way to keep turning the
+            // nose towards the target.
+            backUpFramesLeft--;
+            applyReverseAcceleration();
+            if (angleDelta > 0) {
+                turnRight(delta);
+            } else {
+                turnLeft(delta);
+            }
+            return;
+        }
+
+        // Ensure that we're moving forward at least a little bit, so that turning is possible. A stationary car can't
+        // turn, so if it didn't move the last time we tried, its nose is against a wall and it has to back up first.
         if (getSpeed() < MIN_SPEED_FOR_TURNING) {
+            if (creeping && getX() == creepX && getY() == creepY) {
+                backUpFramesLeft = BACK_UP_FRAMES;
+            }
+            creeping = true;
+            creepX = getX();
+            creepY = getY();
             applyForwardAcceleration();
         } else if (getSpeed() > maxSpeed) {
+            creeping = false;
             applyBrake();
+        } else {
+            creeping = false;
         }
 
         if (angleDelta > 0) {
@@ -308,6 +605,16 @@ public class AStarController extends CarController implements PathingStrategy {
         }
     }
 
+    /**
+     * Determines whether the car is at least REPLAN_MARGIN past each edge between the given tile and the car's.
+     * @param leftPosition is a tile next to the car's.
+     * @return whether the car is well past the edges.
+     */
+    private boolean isPastEdge(Coordinate leftPosition) {
+        return (leftPosition.x == currPosition.x || Math.abs(getX() - currPosition.x) <= HALF_TILE - REPLAN_MARGIN)
+                && (leftPosition.y == currPosition.y || Math.abs(getY() - currPosition.y) <= HALF_TILE - REPLAN_MARGIN);
+    }
+
     /**
      * Given an angle, determines whether the car is currently (roughly) facing that angle.
      * @param angle is the angle we want to check if we're facing.
@@ -350,4 +657,49 @@ public class AStarController extends CarController implements PathingStrategy {
             this.isLava = isLava;
         }
     }
+
+    /**
+     * What a plan is worked out from: a map that won't change while it's planned on, once the changes are made to it,
+     * and where the car was then.
+     */
+    private static class PlanRequest {
+
+        final int number;
+        final HashMap<Coordinate, MapTile> map;
+        final Map<Coordinate, MapTile> changes;
+        final Coordinate start;
+        final Direction heading;
+        final float speed;
+        final Coordinate destination;
+
+        PlanRequest(int number, HashMap<Coordinate, MapTile> map, Map<Coordinate, MapTile> changes, Coordinate start,
+                Direction heading, float speed, Coordinate destination) {
+            this.number = number;
+            this.map = map;
+            this.changes = changes;
+            this.start = start;
+            this.heading = heading;
+            this.speed = speed;
+            this.destination = destination;
+        }
+    }
+
+    /**
+     * A path to follow, and what it's for. Never changed once made, so it can be handed between threads.
+     */
+    private static class Plan {
+
+        final int number;
+        final Coordinate destination;
+        final ArrayList<PathUnit> path;
+        // Whether the path only goes part of the way to the destination.
+        final boolean partial;
+
+        Plan(int number, Coordinate destination, ArrayList<PathUnit> path, boolean partial) {
+            this.number = number;
+            this.destination = destination;
+            this.path = path;
+            this.partial = partial;
+        }
+    }
 }
@@ -0,0 +1,72 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.strategies.pathing;
+
+import mycontroller.utilities.TurnAwarePlanner;
+import mycontroller.utilities.Utilities;
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class picks the best of a number of candidate destinations (e.g. health locations): the one whose path from
+ * the car crosses the fewest lava tiles, then the one with the shortest path. The paths to every candidate come from
+ * one search outwards from the car, so the memory it takes doesn't grow with the number of candidates. Ties go to the
+ * candidate that comes first.
+ */
+public class CandidateEvaluator {
+
+    private final TurnAwarePlanner planner = new TurnAwarePlanner();
+
+    /**
+     * Returns the best of the given candidates to drive to.
+     * @param map is the current map.
+     * @param currPos is the current position.
+     * @param heading is the direction the car is facing at the current position.
+     * @param candidates is the candidate destinations.
+     * @return the best candidate, or null if none can be reached.
+     */
+    public Candidate getBest(HashMap<Coordinate, MapTile> map, Coordinate currPos, Direction heading,
+            List<Coordinate> candidates) {
+        final ArrayList<ArrayList<Coordinate>> paths = planner.getShortestPaths(map, currPos, heading, candidates);
+
+        Candidate best = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (paths.get(i) == null) {
+                continue;
+            }
+            final Candidate candidate = new Candidate(candidates.get(i), paths.get(i),
+                    Utilities.getLavaCount(map, paths.get(i)));
+            if (best == null || candidate.isBetterThan(best)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * This class represents a candidate destination, and the best path to it.
+     */
+    public static class Candidate {
+        public final Coordinate location;
+        public final ArrayList<Coordinate> path;
+        public final int numLavaTiles;
+
+        Candidate(Coordinate location, ArrayList<Coordinate> path, int numLavaTiles) {
+            this.location = location;
+            this.path = path;
+            this.numLavaTiles = numLavaTiles;
+        }
+
+        private boolean isBetterThan(Candidate other) {
+            return numLavaTiles < other.numLavaTiles
+                    || (numLavaTiles == other.numLavaTiles && path.size() < other.path.size());
+        }
+    }
+}
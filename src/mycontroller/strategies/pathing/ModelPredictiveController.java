@@ -0,0 +1,488 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.strategies.pathing;
+
+import controller.CarController;
+import mycontroller.utilities.AnytimePlanner;
+import mycontroller.utilities.SpeedProfile;
+import mycontroller.utilities.TurnAwarePlanner;
+import mycontroller.utilities.Utilities;
+import swen30006.driving.SimulationMetrics;
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.Car;
+import world.CarPhysics;
+import world.Rollouts;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * This class drives the car along the planned path with model-predictive control. Every frame it plays a fixed set of
+ * short control sequences on a forward model of the car (see CarPhysics), in parallel, scores where each sequence
+ * leaves the car relative to the path, and applies the first control of the best one. Unlike AStarController, it
+ * doesn't stop to turn on the spot at every corner: corners are taken at whatever speed the model shows is safe, as
+ * long as it's within the path's SpeedProfile.
+ *
+ * Paths are planned in full whenever the car reaches a new tile, unless it's given a planning budget. Then paths are
+ * planned with AnytimePlanner, a budget's worth each frame, and the car follows the best path found so far.
+ */
+public class ModelPredictiveController extends CarController implements PathingStrategy {
+
+    // Number of simulated frames in each control sequence. Long enough to turn 90 degrees.
+    private static final int HORIZON = 30;
+    // Number of frames to turn for before straightening up, for the sequences that don't turn all the way.
+    private static final int[] TURN_LENGTHS = {3, 8, 15, HORIZON};
+    // Throttle patterns: accelerate every frame, creep (accelerate one frame in CREEP_PERIOD), coast, brake, nudge
+    // (accelerate for a few frames then brake, for small adjustments when we're nearly stopped) and reverse.
+    private static final int FULL = 0;
+    private static final int CREEP = 1;
+    private static final int COAST = 2;
+    private static final int BRAKE = 3;
+    private static final int SHORT_NUDGE = 4;
+    private static final int LONG_NUDGE = 5;
+    private static final int REVERSE = 6;
+    private static final int REVERSE_NUDGE = 7;
+    private static final int[] THROTTLES = {FULL, CREEP, COAST, BRAKE, SHORT_NUDGE, LONG_NUDGE, REVERSE, REVERSE_NUDGE};
+    private static final int CREEP_PERIOD = 3;
+    private static final int SHORT_NUDGE_LENGTH = 6;
+    private static final int LONG_NUDGE_LENGTH = 15;
+    // Number of frames to back up for, turning, before driving forward and turning the other way. This is how the car
+    // gets its nose out of a wall or turns around in a tight space.
+    private static final int[] BACK_UP_LENGTHS = {10, 20};
+    // Sequences are simulated in chunks of this size, one chunk per fork-join task.
+    private static final int CHUNK_SIZE = 8;
+
+    // How many path tiles ahead of the car to consider when projecting a simulated position onto the path.
+    private static final int PROJECTION_WINDOW = 8;
+
+    // Scoring weights. Progress along the path is worth 1 per tile.
+    private static final float WALL_PENALTY = 100f;
+    // Once the car has sat still for STALL_FRAMES without reaching the destination, every way forward must touch a
+    // wall within the horizon. A wall only costs a little health, so it's then penalised this much instead, until the
+    // car gets moving again.
+    private static final float STALLED_WALL_PENALTY = 1f;
+    private static final int STALL_FRAMES = 60;
+    private static final float STALL_SPEED = 0.05f;
+    private static final float LATERAL_ERROR_WEIGHT = 2f;
+    private static final float OVERSPEED_WEIGHT = 3f;
+    // Health loss is weighted more heavily the less health we have left.
+    private static final float HEALTH_LOSS_WEIGHT = 2f;
+    private static final float HEADING_ERROR_WEIGHT = 1f;
+
+    // Units to be within the center of the destination, below ARRIVAL_SPEED, before it counts as having been reached.
+    private static final float MOVEMENT_ACCURACY = 0.2f;
+    private static final float ARRIVAL_SPEED = 0.7f;
+
+    private final TurnAwarePlanner planner = new TurnAwarePlanner();
+    // If set, plans paths a little each frame, spending at most 'planningBudget' nanoseconds on it.
+    private final AnytimePlanner anytimePlanner;
+    private final long planningBudget;
+    private int anytimePathVersion = -1;
+    private final Rollouts rollouts;
+    private final float[] scores;
+    // The number of sequences generated from the templates; the last sequence is the previous best, shifted by one.
+    private final int numTemplates;
+    private final int numChunks;
+
+    private HashMap<Coordinate, MapTile> internalWorldMap;
+    private Coordinate destination = null;
+    private Coordinate prevPosition = null;
+    private ArrayList<Coordinate> path = null;
+    // The fastest the car should be going at each tile of 'path' (see SpeedProfile).
+    private float[] pathSpeeds;
+    // The index of the path tile nearest to the car.
+    private int pathIndex;
+    private boolean pathComplete = true;
+    // Whether the destination is lava, in which case we only need to touch it rather than stop on it.
+    private boolean passThroughDestination = false;
+    // The number of frames in a row the car has been below STALL_SPEED while following a path.
+    private int stalledFrames = 0;
+
+    public ModelPredictiveController(Car car) {
+        this(car, 0);
+    }
+
+    /**
+     * @param car is the car to control.
+     * @param planningBudget is the most time to spend planning paths each frame, in seconds, or 0 to plan each path
+     * in full when it's needed.
+     */
+    public ModelPredictiveController(Car car, float planningBudget) {
+        super(car);
+
+        if (planningBudget < 0) {
+            throw new IllegalArgumentException("The planning budget can't be negative.");
+        }
+        this.anytimePlanner = planningBudget > 0 ? new AnytimePlanner() : null;
+        this.planningBudget = (long) (planningBudget * 1e9);
+
+        this.numTemplates = THROTTLES.length * (1 + 2 * TURN_LENGTHS.length) + 2 * BACK_UP_LENGTHS.length;
+        this.rollouts = new Rollouts(numTemplates + 1, HORIZON);
+        this.scores = new float[rollouts.sequences];
+        this.numChunks = (rollouts.sequences + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        generateTemplates();
+    }
+
+    @Override
+    public void update(float delta) {
+        if (pathComplete) {
+            // We're at our current destination, don't do anything; just brake.
+            applyBrake();
+            return;
+        }
+
+        Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
+        // The destination may have turned out to be lava since it was set.
+        final boolean wasPassThrough = passThroughDestination;
+        passThroughDestination = Utilities.isLava(internalWorldMap, destination);
+        if (anytimePlanner != null) {
+            if (!improvePath(currPosition)) {
+                // We don't have a path to follow yet.
+                applyBrake();
+                return;
+            }
+        } else if (!currPosition.equals(prevPosition)) {
+            // We've moved to a new tile. Recalculate the path, as we may have seen new traps.
+            calculatePath(currPosition);
+        }
+
+        if (passThroughDestination ? currPosition.equals(destination) : (getSpeed() < ARRIVAL_SPEED
+                && Utilities.getEuclideanDistance(getX(), getY(), destination.x, destination.y) < MOVEMENT_ACCURACY)) {
+            pathComplete = true;
+            path = null;
+            applyBrake();
+            return;
+        }
+
+        if (passThroughDestination != wasPassThrough) {
+            profileSpeeds();
+        }
+        updatePathIndex();
+        stalledFrames = Math.abs(getSpeed()) < STALL_SPEED ? stalledFrames + 1 : 0;
+        final float wallPenalty = stalledFrames > STALL_FRAMES ? STALLED_WALL_PENALTY : WALL_PENALTY;
+
+        // Play every sequence on the model of the car, spread across cores.
+        final CarPhysics model = getPhysicsSnapshot();
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            final int first = chunk * CHUNK_SIZE;
+            final int last = Math.min(first + CHUNK_SIZE, rollouts.sequences);
+            model.simulate(rollouts, delta, first, last);
+            for (int sequence = first; sequence < last; sequence++) {
+                scores[sequence] = score(sequence, model.getHealth(), wallPenalty);
+            }
+        });
+
+        // Pick the best sequence. Ties go to the lowest index so the choice doesn't depend on thread timing.
+        int best = 0;
+        for (int sequence = 1; sequence < rollouts.sequences; sequence++) {
+            if (scores[sequence] > scores[best]) {
+                best = sequence;
+            }
+        }
+
+        applyControls(rollouts.getControls(best, 0), delta);
+        keepAsWarmStart(best);
+    }
+
+    @Override
+    public void updateMap(HashMap<Coordinate, MapTile> map) {
+        this.internalWorldMap = map;
+    }
+
+    @Override
+    public void setDestination(Coordinate destination) {
+        this.destination = destination;
+        this.pathComplete = false;
+        this.stalledFrames = 0;
+        this.passThroughDestination = Utilities.isLava(internalWorldMap, destination);
+        if (anytimePlanner != null) {
+            // Planning starts on the next frame, within its budget.
+            this.path = null;
+            startSearch(Utilities.getCoordinatePosition(getX(), getY()));
+        } else {
+            calculatePath(Utilities.getCoordinatePosition(getX(), getY()));
+        }
+    }
+
+    @Override
+    public ArrayList<Coordinate> getBestPathTo(HashMap<Coordinate, MapTile> map, Coordinate currPos,
+        Direction heading, Coordinate goal) {
+        return planner.getShortestPath(map, currPos, heading, goal);
+    }
+
+    @Override
+    public boolean hasArrived() {
+        return pathComplete;
+    }
+
+    /**
+     * Recalculates the path from the given position to the destination.
+     * @param currPosition is the car's current tile.
+     * @throws IllegalArgumentException if there's no path to the destination.
+     */
+    private void calculatePath(Coordinate currPosition) {
+        ArrayList<Coordinate> newPath = planner.getShortestPath(internalWorldMap, currPosition, getOrientation(),
+                destination);
+        SimulationMetrics.recordReplan();
+
+        if (newPath == null) {
+            throw new IllegalArgumentException("No path to the given destination.");
+        }
+
+        this.prevPosition = currPosition;
+        setPath(newPath);
+    }
+
+    /**
+     * Spends this frame's planning budget improving the path, restarting the search from the car's tile if traps
+     * have come into view or the car has come off the path, and switches to a better path if one has been found.
+     * @param currPosition is the car's current tile.
+     * @return whether there's a path to follow.
+     * @throws IllegalArgumentException if there's no path to the destination.
+     */
+    private boolean improvePath(Coordinate currPosition) {
+        if (!currPosition.equals(prevPosition)) {
+            prevPosition = currPosition;
+            if (!anytimePlanner.isCurrent(internalWorldMap)) {
+                // The path may go over traps we hadn't seen.
+                path = null;
+                startSearch(currPosition);
+            } else if (path != null && !path.contains(currPosition)) {
+                startSearch(currPosition);
+            }
+        }
+
+        anytimePlanner.improve(planningBudget);
+        if (anytimePlanner.isUnreachable()) {
+            throw new IllegalArgumentException("No path to the given destination.");
+        }
+        if (anytimePlanner.getPathVersion() != anytimePathVersion && anytimePlanner.getPath() != null) {
+            anytimePathVersion = anytimePlanner.getPathVersion();
+            final ArrayList<Coordinate> newPath = anytimePlanner.getPath();
+            final int index = newPath.indexOf(currPosition);
+            if (index >= 0) {
+                setPath(new ArrayList<>(newPath.subList(index, newPath.size())));
+            } else {
+                // We've come off it since the search started.
+                startSearch(currPosition);
+            }
+        }
+        return path != null;
+    }
+
+    /**
+     * Starts a new anytime search from the given tile. The path we have is kept until it finds one.
+     */
+    private void startSearch(Coordinate currPosition) {
+        anytimePlanner.startSearch(internalWorldMap, currPosition, getOrientation(), destination);
+        SimulationMetrics.recordReplan();
+        this.prevPosition = currPosition;
+    }
+
+    /**
+     * Starts following the given path, which starts at the car's tile.
+     */
+    private void setPath(ArrayList<Coordinate> newPath) {
+        this.path = newPath;
+        this.pathIndex = 0;
+        profileSpeeds();
+    }
+
+    /**
+     * Works out the speed profile of the path from the car's speed. Corners are limited to the speed the car can turn
+     * them at, the destination to a stop unless we only need to touch it, and everywhere else to the speed the car can
+     * still stop from before driving past what it can see, in case the path gets replanned around a trap that's just
+     * come into view.
+     */
+    private void profileSpeeds() {
+        final int last = path.size() - 1;
+        final float[] speedLimits = new float[path.size()];
+        for (int i = 0; i <= last; i++) {
+            if (i == last) {
+                speedLimits[i] = passThroughDestination ? SpeedProfile.SIGHT_SPEED : 0;
+            } else if (i > 0 && Utilities.getRelativeDirection(path.get(i - 1), path.get(i))
+                    != Utilities.getRelativeDirection(path.get(i), path.get(i + 1))) {
+                speedLimits[i] = SpeedProfile.CORNER_SPEED;
+            } else {
+                speedLimits[i] = SpeedProfile.SIGHT_SPEED;
+            }
+        }
+        pathSpeeds = SpeedProfile.getSpeeds(speedLimits, getSpeed());
+    }
+
+    /**
+     * Moves 'pathIndex' to the path tile nearest to the car, looking only a short way ahead.
+     */
+    private void updatePathIndex() {
+        final float x = getX();
+        final float y = getY();
+        float bestDistance = Float.MAX_VALUE;
+        final int last = Math.min(path.size() - 1, pathIndex + PROJECTION_WINDOW);
+        int bestIndex = pathIndex;
+        for (int i = pathIndex; i <= last; i++) {
+            final float distance = Utilities.getEuclideanDistance(x, y, path.get(i).x, path.get(i).y);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestIndex = i;
+            }
+        }
+        pathIndex = bestIndex;
+    }
+
+    /**
+     * Scores where a simulated sequence left the car. Higher is better.
+     * @param sequence is the index of the sequence in 'rollouts'.
+     * @param startHealth is the car's health at the start of the sequence.
+     * @param wallPenalty is what hitting a wall costs, doubled if it's hit straight away.
+     * @return the score of the sequence.
+     */
+    private float score(int sequence, float startHealth, float wallPenalty) {
+        final float x = rollouts.x[sequence];
+        final float y = rollouts.y[sequence];
+
+        // Project the final position onto the path, near where the car currently is.
+        float bestDistance = Float.MAX_VALUE;
+        float progress = pathIndex;
+        final int firstSegment = Math.max(0, pathIndex - 1);
+        final int lastSegment = Math.min(path.size() - 2, pathIndex + PROJECTION_WINDOW);
+        for (int i = firstSegment; i <= lastSegment; i++) {
+            final Coordinate from = path.get(i);
+            final Coordinate to = path.get(i + 1);
+            // Path segments are one tile long and axis aligned.
+            float t = (x - from.x) * (to.x - from.x) + (y - from.y) * (to.y - from.y);
+            t = Math.max(0, Math.min(1, t));
+            final float distance = Utilities.getEuclideanDistance(x, y, from.x + t * (to.x - from.x),
+                    from.y + t * (to.y - from.y));
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                progress = i + t;
+            }
+        }
+        if (path.size() == 1) {
+            bestDistance = Utilities.getEuclideanDistance(x, y, path.get(0).x, path.get(0).y);
+        }
+
+        // The fastest we can be going here: no faster than the profile allows either side of us, and slow enough to
+        // still brake down to the next tile's speed by the time we get there.
+        final int index = Math.min((int) progress, path.size() - 1);
+        float allowedSpeed = pathSpeeds[index];
+        if (index < path.size() - 1) {
+            allowedSpeed = Math.min(Math.max(pathSpeeds[index], pathSpeeds[index + 1]), SpeedProfile.getSpeedAfter(
+                    pathSpeeds[index + 1], SpeedProfile.DECELERATION, index + 1 - progress));
+        }
+
+        // How far the car ends up from facing along the path, from 0 (facing along it) to 1 (facing backwards).
+        final int segment = Math.min(index, path.size() - 2);
+        float headingError = 0;
+        if (segment >= 0) {
+            final double pathAngle = Math.atan2(path.get(segment + 1).y - path.get(segment).y,
+                    path.get(segment + 1).x - path.get(segment).x);
+            headingError = (float) (1 - Math.cos(Math.toRadians(rollouts.angle[sequence]) - pathAngle)) / 2;
+        }
+
+        float score = progress - LATERAL_ERROR_WEIGHT * bestDistance
+                - HEADING_ERROR_WEIGHT * headingError
+                - OVERSPEED_WEIGHT * Math.max(0, rollouts.speed[sequence] - allowedSpeed)
+                - HEALTH_LOSS_WEIGHT * Math.max(0, startHealth - rollouts.health[sequence]) / Math.max(1, startHealth);
+        if (rollouts.wallHitStep[sequence] >= 0) {
+            // Hitting a wall sooner is worse than hitting it later.
+            score -= wallPenalty * (2 - (float) rollouts.wallHitStep[sequence] / HORIZON);
+        }
+        return score;
+    }
+
+    /**
+     * Fills 'rollouts' with every combination of throttle (see THROTTLES) and steering (straight, or left or right for
+     * a number of frames), plus backing up while turning one way then driving forward while turning the other.
+     */
+    private void generateTemplates() {
+        int sequence = 0;
+        for (int throttle : THROTTLES) {
+            fillSequence(sequence++, throttle, 0, 0);
+            for (int turnLength : TURN_LENGTHS) {
+                fillSequence(sequence++, throttle, CarPhysics.TURN_LEFT, turnLength);
+                fillSequence(sequence++, throttle, CarPhysics.TURN_RIGHT, turnLength);
+            }
+        }
+        for (int backUpLength : BACK_UP_LENGTHS) {
+            fillBackUpSequence(sequence++, CarPhysics.TURN_LEFT, CarPhysics.TURN_RIGHT, backUpLength);
+            fillBackUpSequence(sequence++, CarPhysics.TURN_RIGHT, CarPhysics.TURN_LEFT, backUpLength);
+        }
+
+        // Until there's a previous best, the warm start slot just repeats the first template.
+        for (int step = 0; step < HORIZON; step++) {
+            rollouts.setControls(numTemplates, step, rollouts.getControls(0, step));
+        }
+    }
+
+    private void fillSequence(int sequence, int throttle, int turn, int turnLength) {
+        for (int step = 0; step < HORIZON; step++) {
+            rollouts.setControls(sequence, step, getThrottleControls(throttle, step) | (step < turnLength ? turn : 0));
+        }
+    }
+
+    private void fillBackUpSequence(int sequence, int backUpTurn, int forwardTurn, int backUpLength) {
+        for (int step = 0; step < HORIZON; step++) {
+            rollouts.setControls(sequence, step, step < backUpLength ? CarPhysics.REVERSE | backUpTurn
+                    : CarPhysics.ACCELERATE | forwardTurn);
+        }
+    }
+
+    private static int getThrottleControls(int throttle, int step) {
+        switch (throttle) {
+            case FULL:
+                return CarPhysics.ACCELERATE;
+            case CREEP:
+                return step % CREEP_PERIOD == 0 ? CarPhysics.ACCELERATE : 0;
+            case BRAKE:
+                return CarPhysics.BRAKE;
+            case SHORT_NUDGE:
+                return step < SHORT_NUDGE_LENGTH ? CarPhysics.ACCELERATE : CarPhysics.BRAKE;
+            case LONG_NUDGE:
+                return step < LONG_NUDGE_LENGTH ? CarPhysics.ACCELERATE : CarPhysics.BRAKE;
+            case REVERSE:
+                return CarPhysics.REVERSE;
+            case REVERSE_NUDGE:
+                return step < SHORT_NUDGE_LENGTH ? CarPhysics.REVERSE : CarPhysics.BRAKE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Stores the given sequence, shifted one frame earlier, in the warm start slot so the plan carries over to the
+     * next frame.
+     * @param best is the index of the sequence to carry over.
+     */
+    private void keepAsWarmStart(int best) {
+        for (int step = 0; step < HORIZON - 1; step++) {
+            rollouts.setControls(numTemplates, step, rollouts.getControls(best, step + 1));
+        }
+        rollouts.setControls(numTemplates, HORIZON - 1, rollouts.getControls(best, HORIZON - 1));
+    }
+
+    /**
+     * Applies a set of CarPhysics control bits to the car, in the same order as CarPhysics.step does.
+     */
+    private void applyControls(int controls, float delta) {
+        if ((controls & CarPhysics.ACCELERATE) != 0) {
+            applyForwardAcceleration();
+        }
+        if ((controls & CarPhysics.REVERSE) != 0) {
+            applyReverseAcceleration();
+        }
+        if ((controls & CarPhysics.BRAKE) != 0) {
+            applyBrake();
+        }
+        if ((controls & CarPhysics.TURN_LEFT) != 0) {
+            turnLeft(delta);
+        } else if ((controls & CarPhysics.TURN_RIGHT) != 0) {
+            turnRight(delta);
+        }
+    }
+}
@@ -6,6 +6,7 @@ package mycontroller.strategies.pathing;
 
 import tiles.MapTile;
 import utilities.Coordinate;
+import world.WorldSpatial.Direction;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -37,12 +38,12 @@ public interface PathingStrategy {
     /**
      * Returns the best path to the given destination using the pathing algorithm used by the strategy.
      * @param map is the current map.
-     * @param behindPos is the position behind the current position.
      * @param currPos is the current position.
+     * @param heading is the direction the car is facing at the current position.
      * @param goal is the destination.
      * @return a list of sequential coordinates representing the path from currPos to goal.
      */
-    ArrayList<Coordinate> getBestPathTo(HashMap<Coordinate, MapTile> map, Coordinate behindPos, Coordinate currPos,
+    ArrayList<Coordinate> getBestPathTo(HashMap<Coordinate, MapTile> map, Coordinate currPos, Direction heading,
         Coordinate goal);
 
     /**
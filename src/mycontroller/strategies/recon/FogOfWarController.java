@@ -5,8 +5,10 @@
 package mycontroller.strategies.recon;
 
 import controller.CarController;
-import mycontroller.strategies.pathing.AStarController;
+import mycontroller.ControllerSettings;
 import mycontroller.strategies.pathing.PathingStrategy;
+import mycontroller.utilities.Bitboard;
+import mycontroller.utilities.GridMap;
 import mycontroller.utilities.Utilities;
 import tiles.MapTile;
 import utilities.Coordinate;
@@ -30,7 +32,7 @@ public class FogOfWarController extends CarController implements ReconStrategy {
     public FogOfWarController(Car car) {
         super(car);
 
-        this.pathing = new AStarController(car);
+        this.pathing = ControllerSettings.createPathingStrategy(car);
         this.randomExploration = true;
         this.beOnTarget = false;
     }
@@ -38,7 +40,7 @@ public class FogOfWarController extends CarController implements ReconStrategy {
     public FogOfWarController(Car car, boolean random, boolean beOnTarget) {
         super(car);
 
-        this.pathing = new AStarController(car);
+        this.pathing = ControllerSettings.createPathingStrategy(car);
         this.randomExploration = random;
         this.beOnTarget = beOnTarget;
     }
@@ -47,21 +49,18 @@ public class FogOfWarController extends CarController implements ReconStrategy {
     public void update(float delta) {
         Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
 
-        if (beOnTarget && currTarget != null
-                && (pathing.hasArrived() || Utilities.isLava(map, currTarget))) {
+        if (currTarget != null
+                && (pathing.hasArrived() || (beOnTarget && Utilities.isLava(map, currTarget)))) {
             // We've reached our target or we can see our target and it's lava (don't go in it!).
             currTarget = null;
         }
 
         // Ensure we have a target.
+        pickTarget();
         if (currTarget == null) {
-            if (unexploredCoordinates.size() > 0) {
-                currTarget = unexploredCoordinates.get(0);
-                pathing.setDestination(currTarget);
-            } else {
-                // We don't have a target and there are no more unexplored coordinates. Abort.
-                throw new IllegalStateException("We've already fully explored everything.");
-            }
+            // We don't have a target and there are no more unexplored coordinates. Stay put.
+            applyBrake();
+            return;
         }
 
         // Let the pathing component route to 'currTarget'.
@@ -95,13 +94,53 @@ public class FogOfWarController extends CarController implements ReconStrategy {
         Collections.shuffle(unexploredCoordinates);
     }
 
+    @Override
+    public boolean isFinished() {
+        return currTarget == null && unexploredCoordinates.isEmpty();
+    }
+
+    @Override
+    public Coordinate getPlaceToExplore() {
+        if (currTarget != null || unexploredCoordinates.isEmpty()) {
+            return currTarget;
+        }
+        return unexploredCoordinates.get(0);
+    }
+
+    @Override
+    public int getLavaTilesToExplore() {
+        Coordinate target = getPlaceToExplore();
+        if (target == null) {
+            return Integer.MAX_VALUE;
+        }
+        Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
+        ArrayList<Coordinate> path = pathing.getBestPathTo(map, currPosition, getOrientation(), target);
+        if (path == null) {
+            return Integer.MAX_VALUE;
+        }
+        return Utilities.getLavaCount(map, path) - (Utilities.isLava(map, currPosition) ? 1 : 0);
+    }
+
+    /**
+     * Picks the next unexplored coordinate as the target if there isn't one.
+     */
+    private void pickTarget() {
+        if (currTarget == null && unexploredCoordinates.size() > 0) {
+            currTarget = getPlaceToExplore();
+            pathing.setDestination(currTarget);
+        }
+    }
+
     private void updateUnexploredCoordinates(HashMap<Coordinate, MapTile> view) {
+        // A new target could be behind us, and turning around on lava costs more than finishing the crossing, so keep
+        // going for the one we've seen until we're off it.
+        boolean onLava = Utilities.isLava(map, Utilities.getCoordinatePosition(getX(), getY()));
         for (Coordinate coordinate : view.keySet()) {
             if (unexploredCoordinates.contains(coordinate)) {
                 unexploredCoordinates.remove(coordinate);
             }
 
-            if (!beOnTarget && coordinate.equals(currTarget)) {
+            if (!beOnTarget && !onLava && coordinate.equals(currTarget)) {
                 // We can see the target and we're configured not to have to be on it to count as complete.
                 currTarget = null;
             }
@@ -113,18 +152,18 @@ public class FogOfWarController extends CarController implements ReconStrategy {
      * @param map The internal map.
      */
     private void populateUnexploredCoordinates(HashMap<Coordinate, MapTile> map) {
+        // Everything we can get to, in one flood fill from where we are.
+        GridMap grid = new GridMap();
+        grid.refresh(map);
+        int currTile = grid.getIndex(Utilities.getCoordinatePosition(getX(), getY()));
+        Bitboard reachable = currTile < 0 ? null : Bitboard.getTraversable(grid).getReachable(currTile);
+
         for (Coordinate coordinate : map.keySet()) {
             MapTile mapTile = map.get(coordinate);
-            if (mapTile.isType(MapTile.Type.ROAD) || mapTile.isType(MapTile.Type.TRAP)) {
-                // This is a valid tile we may want to explore.
-
-                // Test that it's possible to get to.
-                Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
-                if (this.pathing.getBestPathTo(map, Utilities.getBehindCoordinate(currPosition, getOrientation()),
-                        currPosition, coordinate) != null) {
-                    // This coordinate is possible to get to, add it to the list of unexplored tiles.
-                    this.unexploredCoordinates.add(coordinate);
-                }
+            if ((mapTile.isType(MapTile.Type.ROAD) || mapTile.isType(MapTile.Type.TRAP))
+                    && reachable != null && reachable.get(grid.getIndex(coordinate))) {
+                // This is a valid tile we may want to explore, and it's possible to get to.
+                this.unexploredCoordinates.add(coordinate);
             }
         }
 
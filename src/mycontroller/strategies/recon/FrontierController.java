@@ -0,0 +1,292 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.strategies.recon;
+
+import controller.CarController;
+import mycontroller.ControllerSettings;
+import mycontroller.strategies.pathing.PathingStrategy;
+import mycontroller.utilities.GridMap;
+import mycontroller.utilities.MinHeap;
+import mycontroller.utilities.TurnAwarePlanner;
+import mycontroller.utilities.Utilities;
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.Car;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A recon strategy that explores the frontier of what the car has seen. Each time it needs a target, it runs one
+ * Dijkstra search from the car, and picks the tile where the car would see the most unexplored tiles for the distance
+ * it has to drive to get there. Unlike FogOfWarController, nearby unexplored tiles are picked up on the way rather
+ * than driven past, and a target is given up as soon as there's nothing left to see from it.
+ */
+public class FrontierController extends CarController implements ReconStrategy {
+
+    // Added to the cost of driving to every target, so that a target next to the car isn't infinitely good. About
+    // the cost of a turn and a step, which is the least it takes to get the car going somewhere new.
+    private static final float COST_OFFSET = 3;
+
+    private final PathingStrategy pathing;
+
+    private HashMap<Coordinate, MapTile> map = null;
+    private final GridMap grid = new GridMap();
+    private final MinHeap open = new MinHeap();
+    // Whether each tile can be driven on and hasn't been seen yet.
+    private boolean[] unexplored = new boolean[0];
+    // The cost of driving to each tile from the car, and the number of unexplored tiles in each rectangle from the
+    // bottom left corner of the grid, so that the unexplored tiles in view of any tile can be counted at once.
+    private float[] costs = new float[0];
+    private int[] unexploredSums = new int[0];
+    private Coordinate currTarget = null;
+    // Whether the last search found nothing left to see, and whether a tile has changed since the last search. Seen
+    // tiles never become unexplored again, so once finished, searching again can only help if the map has changed.
+    private boolean finished = false;
+    private boolean mapChanged = false;
+
+    public FrontierController(Car car) {
+        super(car);
+
+        this.pathing = ControllerSettings.createPathingStrategy(car);
+    }
+
+    @Override
+    public void update(float delta) {
+        if (currTarget != null && (pathing.hasArrived() || Utilities.isLava(map, currTarget)
+                || countUnexploredInView(grid.getIndex(currTarget)) == 0)) {
+            // We've reached our target, there's nothing left to see from it, or it's lava (don't go in it!).
+            currTarget = null;
+        }
+
+        // Ensure we have a target.
+        pickTarget();
+        if (currTarget == null) {
+            // There's nothing left that we can see by driving somewhere. Stay put.
+            applyBrake();
+            return;
+        }
+
+        // Let the pathing component route to 'currTarget'.
+        pathing.update(delta);
+    }
+
+    /**
+     * Updates the controller's internal map, and marks the tiles the car can see as explored.
+     * @param map is the new map.
+     */
+    @Override
+    public void updateMap(HashMap<Coordinate, MapTile> map) {
+        if (this.map == null) {
+            // First time being updated. Every tile we could drive on is unexplored.
+            grid.refresh(map);
+            unexplored = new boolean[grid.size()];
+            for (int tile = 0; tile < grid.size(); tile++) {
+                unexplored[tile] = grid.isTraversable(tile) && (grid.getTile(tile).isType(MapTile.Type.ROAD)
+                        || grid.getTile(tile).isType(MapTile.Type.TRAP));
+            }
+            unexploredSums = new int[(grid.getWidth() + 1) * (grid.getHeight() + 1)];
+            costs = new float[grid.size()];
+        }
+
+        this.map = map;
+        this.pathing.updateMap(map);
+
+        for (Coordinate coordinate : getView().keySet()) {
+            final int tile = grid.getIndex(coordinate);
+            if (tile >= 0) {
+                unexplored[tile] = false;
+                // The map only changes where the car can see, so this is the only place the grid can be out of date.
+                mapChanged |= grid.getTile(tile) != map.get(coordinate);
+            }
+        }
+    }
+
+    /**
+     * Resets the current target.
+     */
+    @Override
+    public void reset() {
+        currTarget = null;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public Coordinate getPlaceToExplore() {
+        return currTarget != null ? currTarget : findNextTarget();
+    }
+
+    @Override
+    public int getLavaTilesToExplore() {
+        final Coordinate target = getPlaceToExplore();
+        if (target == null) {
+            return Integer.MAX_VALUE;
+        }
+        final Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
+        final ArrayList<Coordinate> path = pathing.getBestPathTo(map, currPosition, getOrientation(), target);
+        if (path == null) {
+            return Integer.MAX_VALUE;
+        }
+        return Utilities.getLavaCount(map, path) - (Utilities.isLava(map, currPosition) ? 1 : 0);
+    }
+
+    /**
+     * Picks a new target if there isn't one.
+     */
+    private void pickTarget() {
+        if (currTarget != null) {
+            return;
+        }
+        currTarget = findNextTarget();
+        if (currTarget != null) {
+            pathing.setDestination(currTarget);
+        }
+    }
+
+    /**
+     * Finds the target we'd pick next, without picking it. If the last search found nothing left to see, it isn't run
+     * again until the map changes.
+     * @return the target, or null if there's nothing left to see.
+     */
+    private Coordinate findNextTarget() {
+        if (finished && !mapChanged) {
+            return null;
+        }
+        final Coordinate target = findTarget();
+        finished = target == null;
+        return target;
+    }
+
+    /**
+     * Finds the tile from which the car would see the most unexplored tiles per unit of cost to drive there.
+     * @return the best tile to drive to, or null if there are no unexplored tiles left that the car can see.
+     */
+    private Coordinate findTarget() {
+        grid.refresh(map);
+        mapChanged = false;
+        updateUnexploredSums();
+        searchFromCar();
+
+        int bestTile = -1;
+        float bestScore = 0;
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (costs[tile] == Float.POSITIVE_INFINITY || Utilities.isLava(grid.getTile(tile))) {
+                continue;
+            }
+            final float score = getNumUnexploredInView(tile) / (costs[tile] + COST_OFFSET);
+            if (score > bestScore) {
+                bestTile = tile;
+                bestScore = score;
+            }
+        }
+        return bestTile < 0 ? null : grid.getCoordinate(bestTile);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from the car's tile, with the same costs as TurnAwarePlanner uses for driving onto
+     * tiles, so that the car explores around lava rather than through it.
+     */
+    private void searchFromCar() {
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        final int start = grid.getIndex(Utilities.getCoordinatePosition(getX(), getY()));
+        if (start < 0) {
+            return;
+        }
+
+        open.clear();
+        costs[start] = 0;
+        open.push(0, start);
+        while (!open.isEmpty()) {
+            final float cost = open.peekKey();
+            final int tile = open.pop();
+            if (cost > costs[tile]) {
+                // A cheaper way to this tile has already been expanded.
+                continue;
+            }
+
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                final int next = grid.getNeighbor(tile, direction);
+                if (next < 0 || !grid.isTraversable(next)) {
+                    continue;
+                }
+                final float nextCost = cost + (Utilities.isLava(grid.getTile(next)) ? TurnAwarePlanner.LAVA_COST
+                        : TurnAwarePlanner.MOVE_COST);
+                if (nextCost < costs[next]) {
+                    costs[next] = nextCost;
+                    open.push(nextCost, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the number of unexplored tiles in each rectangle from the bottom left corner of the grid.
+     */
+    private void updateUnexploredSums() {
+        final int width = grid.getWidth();
+        for (int row = 0; row < grid.getHeight(); row++) {
+            for (int column = 0; column < width; column++) {
+                unexploredSums[(row + 1) * (width + 1) + column + 1] = (unexplored[row * width + column] ? 1 : 0)
+                        + unexploredSums[row * (width + 1) + column + 1]
+                        + unexploredSums[(row + 1) * (width + 1) + column]
+                        - unexploredSums[row * (width + 1) + column];
+            }
+        }
+    }
+
+    /**
+     * Counts the unexplored tiles the car would see from the given tile.
+     * @param tile is the index of the tile.
+     * @return the number of unexplored tiles in view.
+     */
+    private int countUnexploredInView(int tile) {
+        final int width = grid.getWidth();
+        int count = 0;
+        for (int row = getViewBottom(tile); row < getViewTop(tile); row++) {
+            for (int column = getViewLeft(tile); column < getViewRight(tile); column++) {
+                count += unexplored[row * width + column] ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the unexplored tiles the car would see from the given tile, as of the last call to updateUnexploredSums.
+     * @param tile is the index of the tile.
+     * @return the number of unexplored tiles in view.
+     */
+    private int getNumUnexploredInView(int tile) {
+        final int stride = grid.getWidth() + 1;
+        final int left = getViewLeft(tile);
+        final int right = getViewRight(tile);
+        final int bottom = getViewBottom(tile);
+        final int top = getViewTop(tile);
+        return unexploredSums[top * stride + right] - unexploredSums[bottom * stride + right]
+                - unexploredSums[top * stride + left] + unexploredSums[bottom * stride + left];
+    }
+
+    // The columns and rows of the grid the car can see from a tile, as half-open ranges.
+
+    private int getViewLeft(int tile) {
+        return Math.max(0, tile % grid.getWidth() - Car.VIEW_SQUARE);
+    }
+
+    private int getViewRight(int tile) {
+        return Math.min(grid.getWidth(), tile % grid.getWidth() + Car.VIEW_SQUARE + 1);
+    }
+
+    private int getViewBottom(int tile) {
+        return Math.max(0, tile / grid.getWidth() - Car.VIEW_SQUARE);
+    }
+
+    private int getViewTop(int tile) {
+        return Math.min(grid.getHeight(), tile / grid.getWidth() + Car.VIEW_SQUARE + 1);
+    }
+}
@@ -8,6 +8,7 @@ import tiles.MapTile;
 import utilities.Coordinate;
 
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * This interface facilitates recon-related controls. An implementing class provides way for the caller to explore the
@@ -30,4 +31,36 @@ public interface ReconStrategy {
      * This resets our internal state and pathing algorithm.
      */
     void reset();
+
+    /**
+     * This returns whether there's nothing left that we can see by driving somewhere. Once that's the case, the strategy
+     * just keeps the car still.
+     * @return A boolean of whether we've explored everything we can.
+     */
+    boolean isFinished();
+
+    /**
+     * This returns whether there's nothing left worth exploring for: every key we need has been seen and we don't need
+     * a health trap, or there's nothing left to see at all.
+     * @param missingKeys The keys we still need but haven't seen.
+     * @param needHealthTrap Whether we need a health trap we haven't seen.
+     * @return A boolean of whether to stop exploring.
+     */
+    default boolean isFinished(List<Integer> missingKeys, boolean needHealthTrap) {
+        return (missingKeys.isEmpty() && !needHealthTrap) || isFinished();
+    }
+
+    /**
+     * This returns the number of lava tiles the car would drive onto to get to the next place this strategy would
+     * explore. Like getPlaceToExplore, it doesn't pick that place.
+     * @return The number of lava tiles, or Integer.MAX_VALUE if there's nowhere left to explore.
+     */
+    int getLavaTilesToExplore();
+
+    /**
+     * This returns the next place this strategy would explore: where it's going, or if it isn't going anywhere, where it
+     * would go next. Only update picks a place and sets off for it, so asking has no effect on where the car goes.
+     * @return The place, or null if there's nowhere left to explore.
+     */
+    Coordinate getPlaceToExplore();
 }
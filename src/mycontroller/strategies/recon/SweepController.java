@@ -0,0 +1,211 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.strategies.recon;
+
+import controller.CarController;
+import mycontroller.ControllerSettings;
+import mycontroller.strategies.pathing.PathingStrategy;
+import mycontroller.utilities.CoveragePlanner;
+import mycontroller.utilities.Utilities;
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.Car;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * A recon strategy that drives a sweep planned once at the start. The roads are known from the start and only traps
+ * are hidden, so CoveragePlanner can work out up front a few viewpoints that between them see every road, and a short
+ * tour through them. Viewpoints that turn out to be lava, or from which everything has already been seen, are skipped.
+ * The next viewpoint is the first one in the sweep the car can get to without driving onto lava, or if there's none,
+ * the one it can get to over the fewest lava tiles. If the sweep runs out with tiles still unseen (e.g. its viewpoints
+ * were lava), a new one is planned for what's left.
+ *
+ * This only decides where to look. MyAIController stops reconning as soon as it knows where the keys it needs are (and
+ * a health trap, if it needs one), so the rest of the sweep is skipped then.
+ */
+public class SweepController extends CarController implements ReconStrategy {
+
+    private final PathingStrategy pathing;
+    private final CoveragePlanner coveragePlanner = new CoveragePlanner();
+
+    private HashMap<Coordinate, MapTile> map = null;
+    // Coordinates that can be driven on and haven't been seen yet.
+    private final HashSet<Coordinate> unexploredCoordinates = new HashSet<>();
+    // The viewpoints still to visit, in order.
+    private ArrayList<Coordinate> sweep = new ArrayList<>();
+    private Coordinate currTarget = null;
+    // Whether a fresh sweep found nothing left to see.
+    private boolean finished = false;
+    // Whether the car has seen something new since the target was picked, which may have been lava on the way.
+    private boolean seenSinceTargetPicked = false;
+
+    public SweepController(Car car) {
+        super(car);
+
+        this.pathing = ControllerSettings.createPathingStrategy(car);
+    }
+
+    @Override
+    public void update(float delta) {
+        if (currTarget != null && pathing.hasArrived()) {
+            // We've reached our target.
+            sweep.remove(currTarget);
+            currTarget = null;
+        } else if (currTarget != null && (!isWorthVisiting(currTarget)
+                || (seenSinceTargetPicked && getLavaTilesTo(currTarget) > 0))) {
+            // There's nothing left to see from our target, it's lava (don't go in it!), or we've found lava on the way.
+            // See if there's a better one.
+            currTarget = null;
+        }
+
+        // Ensure we have a target.
+        pickTarget();
+        if (currTarget == null) {
+            // There's nothing left that we can see by driving somewhere. Stay put.
+            applyBrake();
+            return;
+        }
+        seenSinceTargetPicked = false;
+
+        // Let the pathing component route to 'currTarget'.
+        pathing.update(delta);
+    }
+
+    /**
+     * Updates the controller's internal map, and removes the coordinates the car can see from the unexplored ones. The
+     * first time, plans the sweep.
+     * @param map is the new map.
+     */
+    @Override
+    public void updateMap(HashMap<Coordinate, MapTile> map) {
+        final boolean firstUpdate = this.map == null;
+        if (firstUpdate) {
+            // Every tile we could drive on is unexplored.
+            for (Coordinate coordinate : map.keySet()) {
+                if (map.get(coordinate).isType(MapTile.Type.ROAD) || map.get(coordinate).isType(MapTile.Type.TRAP)) {
+                    unexploredCoordinates.add(coordinate);
+                }
+            }
+        }
+
+        this.map = map;
+        this.pathing.updateMap(map);
+        if (unexploredCoordinates.removeAll(getView().keySet())) {
+            seenSinceTargetPicked = true;
+        }
+
+        if (firstUpdate) {
+            planSweep();
+        }
+    }
+
+    /**
+     * Resets the current target. It stays in the sweep until the car gets there, so the sweep carries on from it,
+     * unless it's no longer worth visiting by then.
+     */
+    @Override
+    public void reset() {
+        currTarget = null;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public Coordinate getPlaceToExplore() {
+        return currTarget != null ? currTarget : findNextViewpoint();
+    }
+
+    @Override
+    public int getLavaTilesToExplore() {
+        final Coordinate target = getPlaceToExplore();
+        return target == null ? Integer.MAX_VALUE : getLavaTilesTo(target);
+    }
+
+    /**
+     * Picks the next viewpoint if there isn't a target.
+     */
+    private void pickTarget() {
+        if (currTarget != null) {
+            return;
+        }
+        currTarget = findNextViewpoint();
+        if (currTarget != null) {
+            pathing.setDestination(currTarget);
+        }
+    }
+
+    /**
+     * Finds the viewpoint we'd pick next, without picking it, planning a new sweep if this one has run out.
+     * @return the viewpoint, or null if there's nothing left to see.
+     */
+    private Coordinate findNextViewpoint() {
+        Coordinate viewpoint = pickViewpoint();
+        if (viewpoint == null) {
+            planSweep();
+            viewpoint = pickViewpoint();
+        }
+        finished = viewpoint == null;
+        return viewpoint;
+    }
+
+    /**
+     * Plans a sweep from where the car is that sees every unexplored coordinate it can.
+     */
+    private void planSweep() {
+        sweep = coveragePlanner.getSweep(map, Utilities.getCoordinatePosition(getX(), getY()),
+                unexploredCoordinates);
+    }
+
+    /**
+     * Drops the viewpoints that are no longer worth visiting, then picks the next one: the first the car can get to
+     * without driving onto lava, or failing that, the one it can get to over the fewest lava tiles. This is one search
+     * from the car, not one per viewpoint.
+     * @return the next viewpoint, or null if there's none left that the car can get to.
+     */
+    private Coordinate pickViewpoint() {
+        sweep.removeIf(viewpoint -> !isWorthVisiting(viewpoint));
+        return coveragePlanner.getFewestLavaTarget(map, Utilities.getCoordinatePosition(getX(), getY()), sweep);
+    }
+
+    /**
+     * Counts the lava tiles on the best path to a viewpoint, not counting lava the car is already on.
+     * @param viewpoint is the coordinate of the viewpoint.
+     * @return the number of lava tiles on the way there, or Integer.MAX_VALUE if there's no way there.
+     */
+    private int getLavaTilesTo(Coordinate viewpoint) {
+        final Coordinate currPosition = Utilities.getCoordinatePosition(getX(), getY());
+        final ArrayList<Coordinate> path = pathing.getBestPathTo(map, currPosition, getOrientation(), viewpoint);
+        if (path == null) {
+            return Integer.MAX_VALUE;
+        }
+        return Utilities.getLavaCount(map, path) - (Utilities.isLava(map, currPosition) ? 1 : 0);
+    }
+
+    /**
+     * Determines whether a viewpoint is still worth driving to: it isn't lava, and there's something unexplored in
+     * view of it.
+     * @param viewpoint is the coordinate of the viewpoint.
+     * @return whether to drive there.
+     */
+    private boolean isWorthVisiting(Coordinate viewpoint) {
+        if (Utilities.isLava(map, viewpoint)) {
+            return false;
+        }
+        for (int dy = -Car.VIEW_SQUARE; dy <= Car.VIEW_SQUARE; dy++) {
+            for (int dx = -Car.VIEW_SQUARE; dx <= Car.VIEW_SQUARE; dx++) {
+                if (unexploredCoordinates.contains(new Coordinate(viewpoint.x + dx, viewpoint.y + dy))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
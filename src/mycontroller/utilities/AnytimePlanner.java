@@ -0,0 +1,356 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * A shortest path planner that can be run a little at a time (ARA*). A search is started, then improved for as long as
+ * the caller can spare each frame; it finds a path quickly with an inflated heuristic, and then keeps finding better
+ * ones with less inflation, until it's found the cheapest one. In between, the best path so far can be followed. Each
+ * path found costs at most epsilon times the cheapest, where epsilon is the inflation it was found with.
+ *
+ * Later searches reuse the earlier ones' work: states whose cost went down after they were expanded are kept aside,
+ * and put back on the open list for the next search, rather than starting again from scratch. States and costs are
+ * the same as TurnAwarePlanner's, and the heuristic is the landmark bound, so with no inflation the path is as cheap as
+ * TurnAwarePlanner's. Starting a search doesn't clear anything; each state's cost is stamped with the search it belongs
+ * to. The first search on a map works out the landmarks, which isn't spread across frames.
+ */
+public class AnytimePlanner {
+
+    // The first search's heuristic inflation, and how much less each search after it has.
+    private static final float INITIAL_EPSILON = 3f;
+    private static final float EPSILON_STEP = 0.5f;
+    // Number of states to expand between checks of the clock.
+    private static final int EXPANSIONS_PER_CHECK = 64;
+
+    private final GridMap grid = new GridMap();
+    private final LandmarkHeuristic landmarks = new LandmarkHeuristic();
+    private final MinHeap open = new MinHeap();
+    // The cost of driving onto each tile, or infinity if it can't be driven on.
+    private float[] entryCosts = new float[0];
+    private int costsVersion = -1;
+
+    // For each state, the cost from the start and the state before it on the way. A cost is only valid if its stamp
+    // is from the current search (one stamp per inflation, counting up across queries).
+    private float[] costs = new float[0];
+    private int[] parents = new int[0];
+    private int[] costStamps = new int[0];
+    // Stamps saying which search each state was last put on the open list, expanded, or kept aside in.
+    private int[] openStamps = new int[0];
+    private int[] closedStamps = new int[0];
+    private int[] inconsistentStamps = new int[0];
+    // States whose cost went down after they were expanded in this search.
+    private int[] inconsistent = new int[0];
+    private int numInconsistent;
+    // States from the last search still to be put on the open list for this one, a step at a time.
+    private int[] reopening = new int[0];
+    private int numReopening;
+    private int reopened;
+    private int stamp = 0;
+    private int firstStamp = 0;
+
+    private int goalTile = -1;
+    private int goalState = -1;
+    private float goalCost;
+    private float epsilon;
+    private boolean finished = true;
+
+    // The best path found so far for this query, and the inflation it was found with.
+    private ArrayList<Coordinate> path = null;
+    private float pathEpsilon;
+    private int pathVersion = 0;
+    private boolean unreachable = false;
+
+    /**
+     * Starts a new query, dropping the path found for the last one.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param goal is the target coordinate.
+     */
+    public void startSearch(HashMap<Coordinate, MapTile> map, Coordinate start, Direction heading, Coordinate goal) {
+        grid.refresh(map);
+        landmarks.update(grid);
+        if (costsVersion != grid.getVersion()) {
+            updateEntryCosts();
+        }
+
+        path = null;
+        pathVersion++;
+        unreachable = false;
+        finished = false;
+        epsilon = INITIAL_EPSILON;
+        goalState = -1;
+        goalCost = Float.POSITIVE_INFINITY;
+        open.clear();
+        numInconsistent = 0;
+        numReopening = 0;
+        reopened = 0;
+        firstStamp = ++stamp;
+
+        final int startTile = grid.getIndex(start);
+        goalTile = grid.getIndex(goal);
+        if (startTile < 0 || goalTile < 0 || !grid.isTraversable(goalTile)) {
+            finished = true;
+            unreachable = true;
+            return;
+        }
+        final int startState = getState(startTile, heading.ordinal());
+        setCost(startState, 0, -1);
+        pushOpen(startState);
+    }
+
+    /**
+     * Determines whether the map is still the one the current query was started on, i.e. no tile has changed since.
+     * @param map is the map.
+     * @return whether the query is still current.
+     */
+    public boolean isCurrent(HashMap<Coordinate, MapTile> map) {
+        grid.refresh(map);
+        return costsVersion == grid.getVersion();
+    }
+
+    /**
+     * Works on the current query until it's found the cheapest path, or the time is up.
+     * @param budget is the most time to spend, in nanoseconds.
+     */
+    public void improve(long budget) {
+        final long deadline = System.nanoTime() + budget;
+        while (!finished) {
+            for (int expansion = 0; expansion < EXPANSIONS_PER_CHECK && !finished; expansion++) {
+                step();
+            }
+            if (System.nanoTime() >= deadline) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the best path found so far, from start to goal, or null if none has been found yet.
+     */
+    public ArrayList<Coordinate> getPath() {
+        return path;
+    }
+
+    /**
+     * @return a number that changes every time the path does (including when a query is started).
+     */
+    public int getPathVersion() {
+        return pathVersion;
+    }
+
+    /**
+     * @return how many times the cheapest path's cost the path found so far may cost.
+     */
+    public float getSuboptimality() {
+        return pathEpsilon;
+    }
+
+    /**
+     * @return whether the query has found the cheapest path.
+     */
+    public boolean isOptimal() {
+        return finished && path != null;
+    }
+
+    /**
+     * @return whether the query has finished without finding any path.
+     */
+    public boolean isUnreachable() {
+        return unreachable;
+    }
+
+    /**
+     * Expands the best state on the open list, or if nothing on it could lead to a cheaper path, finishes this
+     * search: publishes its path, and starts the next one with less inflation.
+     */
+    private void step() {
+        if (reopened < numReopening) {
+            reopen(reopening[reopened++]);
+            return;
+        }
+
+        // Skip entries that have been expanded, or pushed again at a lower cost, since they were pushed.
+        while (!open.isEmpty() && (openStamps[open.peek()] != stamp || closedStamps[open.peek()] == stamp
+                || open.peekKey() > getKey(open.peek()))) {
+            open.pop();
+        }
+        if (open.isEmpty() || open.peekKey() >= goalCost) {
+            finishSearch();
+            return;
+        }
+
+        final int state = open.pop();
+        closedStamps[state] = stamp;
+        final int tile = state / GridMap.NUM_DIRECTIONS;
+        final float cost = costs[state];
+
+        // Drive forward onto the next tile.
+        final int direction = state % GridMap.NUM_DIRECTIONS;
+        final int next = grid.getNeighbor(tile, direction);
+        if (next >= 0 && entryCosts[next] != Float.POSITIVE_INFINITY) {
+            relax(state, getState(next, direction), cost + entryCosts[next]);
+        }
+
+        // Or turn on the spot.
+        for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+            if (isTurn(direction, turn)) {
+                relax(state, getState(tile, turn), cost + TurnAwarePlanner.TURN_COST);
+            }
+        }
+    }
+
+    private void relax(int from, int state, float cost) {
+        if (cost >= getCost(state)) {
+            return;
+        }
+        setCost(state, cost, from);
+        if (state / GridMap.NUM_DIRECTIONS == goalTile && cost < goalCost) {
+            goalCost = cost;
+            goalState = state;
+        }
+        if (closedStamps[state] != stamp) {
+            pushOpen(state);
+        } else if (inconsistentStamps[state] != stamp) {
+            // Already expanded in this search; the next one will pick it up.
+            inconsistentStamps[state] = stamp;
+            inconsistent[numInconsistent++] = state;
+        }
+    }
+
+    /**
+     * Publishes the path the search found, and unless it found the cheapest path, starts the next search: the states
+     * left on the open list and those kept aside go on a new open list, ordered with the lower inflation. That can be
+     * most of the map, so they're put on it a step at a time.
+     */
+    private void finishSearch() {
+        if (goalState < 0) {
+            finished = true;
+            unreachable = true;
+            return;
+        }
+        path = reconstructPath();
+        pathVersion++;
+        if (open.isEmpty() && numInconsistent == 0) {
+            // Every state is as cheap as it can be, whatever the inflation was.
+            epsilon = 1;
+        }
+        pathEpsilon = epsilon;
+        if (epsilon <= 1) {
+            finished = true;
+            return;
+        }
+
+        epsilon = Math.max(1, epsilon - EPSILON_STEP);
+        stamp++;
+        if (reopening.length < open.size() + numInconsistent) {
+            reopening = new int[Math.max(2 * reopening.length, open.size() + numInconsistent)];
+        }
+        open.copyValues(reopening);
+        System.arraycopy(inconsistent, 0, reopening, open.size(), numInconsistent);
+        numReopening = open.size() + numInconsistent;
+        reopened = 0;
+        open.clear();
+        numInconsistent = 0;
+    }
+
+    /**
+     * Puts a state from the last search on the open list, if it was on the last one's (and not expanded since), or
+     * kept aside by it. The open list may have had it more than once.
+     */
+    private void reopen(int state) {
+        final int previousStamp = stamp - 1;
+        if (openStamps[state] == stamp) {
+            return;
+        }
+        if ((openStamps[state] == previousStamp && closedStamps[state] != previousStamp)
+                || inconsistentStamps[state] == previousStamp) {
+            pushOpen(state);
+        }
+    }
+
+    private void pushOpen(int state) {
+        openStamps[state] = stamp;
+        open.push(getKey(state), state);
+    }
+
+    private float getKey(int state) {
+        return costs[state] + epsilon * TurnAwarePlanner.MOVE_COST
+                * landmarks.getLowerBound(grid, state / GridMap.NUM_DIRECTIONS, goalTile);
+    }
+
+    private float getCost(int state) {
+        return costStamps[state] >= firstStamp ? costs[state] : Float.POSITIVE_INFINITY;
+    }
+
+    private void setCost(int state, float cost, int parent) {
+        costs[state] = cost;
+        parents[state] = parent;
+        costStamps[state] = stamp;
+    }
+
+    /**
+     * Recomputes the cost of driving onto each tile, and resizes the search arrays if the map has changed size.
+     */
+    private void updateEntryCosts() {
+        if (entryCosts.length != grid.size()) {
+            final int numStates = grid.size() * GridMap.NUM_DIRECTIONS;
+            entryCosts = new float[grid.size()];
+            costs = new float[numStates];
+            parents = new int[numStates];
+            costStamps = new int[numStates];
+            openStamps = new int[numStates];
+            closedStamps = new int[numStates];
+            inconsistentStamps = new int[numStates];
+            inconsistent = new int[numStates];
+        }
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (!grid.isTraversable(tile)) {
+                entryCosts[tile] = Float.POSITIVE_INFINITY;
+            } else if (Utilities.isLava(grid.getTile(tile))) {
+                entryCosts[tile] = TurnAwarePlanner.LAVA_COST;
+            } else {
+                entryCosts[tile] = TurnAwarePlanner.MOVE_COST;
+            }
+        }
+        costsVersion = grid.getVersion();
+    }
+
+    /**
+     * Walks back from the goal through the states, keeping one coordinate per tile.
+     */
+    private ArrayList<Coordinate> reconstructPath() {
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        int previousTile = -1;
+        for (int state = goalState; state >= 0; state = parents[state]) {
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            if (tile != previousTile) {
+                path.add(grid.getCoordinate(tile));
+                previousTile = tile;
+            }
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private static int getState(int tile, int direction) {
+        return tile * GridMap.NUM_DIRECTIONS + direction;
+    }
+
+    /**
+     * Determines whether the car can face 'to' from 'from' with a single 90 degree turn.
+     */
+    private static boolean isTurn(int from, int to) {
+        return GridMap.getDX(from) * GridMap.getDX(to) + GridMap.getDY(from) * GridMap.getDY(to) == 0;
+    }
+}
@@ -0,0 +1,292 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * A shortest path planner that searches forwards from the car and backwards from the goal at the same time, and stops
+ * once the two searches meet and nothing cheaper could still be found. Each search only has to go about half way, so
+ * on long routes (e.g. from a far key to the finish) it expands fewer states than one search going all the way, by
+ * most on open maps, where the bounds guide a single search least.
+ *
+ * States and costs are the same as TurnAwarePlanner's: (tile, heading) pairs, with turning on the spot an edge of its
+ * own, so the cost of a path depends on the heading the car starts in. The forwards search starts from the car's state;
+ * the backwards search starts from the goal facing every way, and follows edges in reverse. Both are A* searches with
+ * landmark bounds, the forwards one towards the goal and the backwards one towards the start, taking turns by whichever
+ * has the shorter open list (NBA*). A state either search takes off its open list is done with for both: if a path
+ * through it could beat the best found so far, it's expanded; otherwise it's dropped. Each search ends up pruned by
+ * what the other has found, so neither goes much past the middle.
+ *
+ * Unlike TurnAwarePlanner, nothing is cached between queries, so this suits one-off routes rather than replans.
+ */
+public class BidirectionalPlanner {
+
+    private final GridMap grid = new GridMap();
+    private final LandmarkHeuristic landmarks = new LandmarkHeuristic();
+    private final MinHeap forwardOpen = new MinHeap();
+    private final MinHeap backwardOpen = new MinHeap();
+    // The cost of driving onto each tile, or infinity if it can't be driven on.
+    private float[] entryCosts = new float[0];
+    private int costsVersion = -1;
+    // The cost from the start to each state, and the state before it on the way.
+    private float[] forwardCosts = new float[0];
+    private int[] forwardParents = new int[0];
+    // The cost from each state to the goal, and the state after it on the way.
+    private float[] backwardCosts = new float[0];
+    private int[] backwardParents = new int[0];
+    // Whether each state has been taken off either open list, after which neither search touches it again.
+    private boolean[] expanded = new boolean[0];
+    private int startTile;
+    private int goalTile;
+    // The cheapest path found so far goes through this state, at this cost.
+    private int meetingState;
+    private float bestCost;
+    // The number of states expanded by the last search, by both searches together.
+    private int expansions = 0;
+
+    /**
+     * Given a map, start, heading and goal, returns a list of coordinates that go from start to goal.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param goal is the target coordinate.
+     * @return a sequential list of coordinates that gets from start to goal, or null if there's no path.
+     */
+    public ArrayList<Coordinate> getShortestPath(HashMap<Coordinate, MapTile> map, Coordinate start,
+            Direction heading, Coordinate goal) {
+        grid.refresh(map);
+        landmarks.update(grid);
+        if (costsVersion != grid.getVersion()) {
+            updateEntryCosts();
+        }
+
+        startTile = grid.getIndex(start);
+        goalTile = grid.getIndex(goal);
+        expansions = 0;
+        if (startTile < 0 || goalTile < 0 || !grid.isTraversable(goalTile)) {
+            return null;
+        }
+        if (startTile == goalTile) {
+            final ArrayList<Coordinate> path = new ArrayList<>();
+            path.add(start);
+            return path;
+        }
+
+        Arrays.fill(forwardCosts, Float.POSITIVE_INFINITY);
+        Arrays.fill(backwardCosts, Float.POSITIVE_INFINITY);
+        forwardOpen.clear();
+        backwardOpen.clear();
+        meetingState = -1;
+        bestCost = Float.POSITIVE_INFINITY;
+
+        final int startState = getState(startTile, heading.ordinal());
+        forwardCosts[startState] = 0;
+        forwardParents[startState] = -1;
+        forwardOpen.push(getBoundToGoal(startTile), startState);
+        // Arriving at the goal facing any direction will do.
+        for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+            final int goalState = getState(goalTile, direction);
+            backwardCosts[goalState] = 0;
+            backwardParents[goalState] = -1;
+            backwardOpen.push(getBoundToStart(goalTile), goalState);
+        }
+
+        Arrays.fill(expanded, false);
+        while (!forwardOpen.isEmpty() && !backwardOpen.isEmpty()) {
+            if (forwardOpen.size() <= backwardOpen.size()) {
+                expandForwards();
+            } else {
+                expandBackwards();
+            }
+        }
+        return meetingState < 0 ? null : reconstructPath();
+    }
+
+    /**
+     * @return the number of states expanded by the last search.
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * Expands the best state on the forwards search's open list.
+     */
+    private void expandForwards() {
+        final int state = forwardOpen.pop();
+        if (expanded[state]) {
+            return;
+        }
+        expanded[state] = true;
+        final int tile = state / GridMap.NUM_DIRECTIONS;
+        final float cost = forwardCosts[state];
+        if (cost + getBoundToGoal(tile) >= bestCost
+                || cost + backwardOpen.peekKey() - getBoundToStart(tile) >= bestCost) {
+            // No path through here can beat the best one found.
+            return;
+        }
+        expansions++;
+
+        // Drive forward onto the next tile.
+        final int direction = state % GridMap.NUM_DIRECTIONS;
+        final int next = grid.getNeighbor(tile, direction);
+        if (next >= 0 && entryCosts[next] != Float.POSITIVE_INFINITY) {
+            relaxForwards(state, getState(next, direction), cost + entryCosts[next]);
+        }
+
+        // Or turn on the spot.
+        for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+            if (isTurn(direction, turn)) {
+                relaxForwards(state, getState(tile, turn), cost + TurnAwarePlanner.TURN_COST);
+            }
+        }
+    }
+
+    /**
+     * Expands the best state on the backwards search's open list, following edges into it in reverse.
+     */
+    private void expandBackwards() {
+        final int state = backwardOpen.pop();
+        if (expanded[state]) {
+            return;
+        }
+        expanded[state] = true;
+        final int tile = state / GridMap.NUM_DIRECTIONS;
+        final float cost = backwardCosts[state];
+        if (cost + getBoundToStart(tile) >= bestCost
+                || cost + forwardOpen.peekKey() - getBoundToGoal(tile) >= bestCost) {
+            // No path through here can beat the best one found.
+            return;
+        }
+        expansions++;
+
+        // We could have driven forward onto this tile from the one behind it. That one may be a wall, in case the car
+        // has been nudged onto one; nothing leads back onto it, so the search stops there.
+        final int direction = state % GridMap.NUM_DIRECTIONS;
+        final int previous = grid.getNeighbor(tile, GridMap.getOpposite(direction));
+        if (previous >= 0 && entryCosts[tile] != Float.POSITIVE_INFINITY) {
+            relaxBackwards(state, getState(previous, direction), cost + entryCosts[tile]);
+        }
+
+        // Or turned on the spot to face this way.
+        for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+            if (isTurn(direction, turn)) {
+                relaxBackwards(state, getState(tile, turn), cost + TurnAwarePlanner.TURN_COST);
+            }
+        }
+    }
+
+    private void relaxForwards(int from, int state, float cost) {
+        if (!expanded[state] && cost < forwardCosts[state]) {
+            forwardCosts[state] = cost;
+            forwardParents[state] = from;
+            forwardOpen.push(cost + getBoundToGoal(state / GridMap.NUM_DIRECTIONS), state);
+            updateBestPath(state);
+        }
+    }
+
+    private void relaxBackwards(int from, int state, float cost) {
+        if (!expanded[state] && cost < backwardCosts[state]) {
+            backwardCosts[state] = cost;
+            backwardParents[state] = from;
+            backwardOpen.push(cost + getBoundToStart(state / GridMap.NUM_DIRECTIONS), state);
+            updateBestPath(state);
+        }
+    }
+
+    /**
+     * Keeps the path through the given state if both searches have reached it and it's the cheapest so far.
+     */
+    private void updateBestPath(int state) {
+        final float cost = forwardCosts[state] + backwardCosts[state];
+        if (cost < bestCost) {
+            bestCost = cost;
+            meetingState = state;
+        }
+    }
+
+    /**
+     * Recomputes the cost of driving onto each tile, and resizes the search arrays if the map has changed size.
+     */
+    private void updateEntryCosts() {
+        if (entryCosts.length != grid.size()) {
+            entryCosts = new float[grid.size()];
+            forwardCosts = new float[grid.size() * GridMap.NUM_DIRECTIONS];
+            forwardParents = new int[grid.size() * GridMap.NUM_DIRECTIONS];
+            backwardCosts = new float[grid.size() * GridMap.NUM_DIRECTIONS];
+            backwardParents = new int[grid.size() * GridMap.NUM_DIRECTIONS];
+            expanded = new boolean[grid.size() * GridMap.NUM_DIRECTIONS];
+        }
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (!grid.isTraversable(tile)) {
+                entryCosts[tile] = Float.POSITIVE_INFINITY;
+            } else if (Utilities.isLava(grid.getTile(tile))) {
+                entryCosts[tile] = TurnAwarePlanner.LAVA_COST;
+            } else {
+                entryCosts[tile] = TurnAwarePlanner.MOVE_COST;
+            }
+        }
+        costsVersion = grid.getVersion();
+    }
+
+    /**
+     * Joins the forwards search's path to the meeting state with the backwards search's path from it, keeping one
+     * coordinate per tile.
+     */
+    private ArrayList<Coordinate> reconstructPath() {
+        final ArrayList<Integer> states = new ArrayList<>();
+        for (int state = meetingState; state >= 0; state = forwardParents[state]) {
+            states.add(state);
+        }
+        Collections.reverse(states);
+        for (int state = backwardParents[meetingState]; state >= 0; state = backwardParents[state]) {
+            states.add(state);
+        }
+
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        int previousTile = -1;
+        for (int state : states) {
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            if (tile != previousTile) {
+                path.add(grid.getCoordinate(tile));
+                previousTile = tile;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * A lower bound on the cost from a tile to the goal, for the forwards search.
+     */
+    private float getBoundToGoal(int tile) {
+        return TurnAwarePlanner.MOVE_COST * landmarks.getLowerBound(grid, tile, goalTile);
+    }
+
+    /**
+     * A lower bound on the cost from the start to a tile, for the backwards search.
+     */
+    private float getBoundToStart(int tile) {
+        return TurnAwarePlanner.MOVE_COST * landmarks.getLowerBound(grid, startTile, tile);
+    }
+
+    private static int getState(int tile, int direction) {
+        return tile * GridMap.NUM_DIRECTIONS + direction;
+    }
+
+    /**
+     * Determines whether the car can face 'to' from 'from' with a single 90 degree turn.
+     */
+    private static boolean isTurn(int from, int to) {
+        return GridMap.getDX(from) * GridMap.getDX(to) + GridMap.getDY(from) * GridMap.getDY(to) == 0;
+    }
+}
@@ -0,0 +1,196 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+/**
+ * A set of tiles on a grid, one bit per tile, packed 64 to a long along each row. Tiles are numbered the same way as
+ * GridMap's, so a tile index from a GridMap of the same size can be used directly.
+ *
+ * Questions that only care about walls and road work a row at a time instead of a tile at a time. A flood fill spreads
+ * along a row in one go: adding the seed bits to the row's road bits carries through each run of road from its seed
+ * to the end of the run, so a few word operations fill every run the seeds are in, however long. Counting the tiles
+ * in a square around a tile (e.g. what the car can see) takes a bit count per row rather than a look at every tile.
+ */
+public class Bitboard {
+
+    private static final int WORD_BITS = 64;
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    /**
+     * Makes an empty set.
+     * @param width is the number of columns in the grid.
+     * @param height is the number of rows in the grid.
+     */
+    public Bitboard(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + WORD_BITS - 1) / WORD_BITS;
+        this.words = new long[height * wordsPerRow];
+    }
+
+    /**
+     * Makes the set of tiles that can be driven on.
+     * @param grid is the grid.
+     * @return the set of the grid's traversable tiles.
+     */
+    public static Bitboard getTraversable(GridMap grid) {
+        final Bitboard traversable = new Bitboard(grid.getWidth(), grid.getHeight());
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (grid.isTraversable(tile)) {
+                traversable.set(tile);
+            }
+        }
+        return traversable;
+    }
+
+    public boolean get(int tile) {
+        final int column = tile % width;
+        return (words[getWord(tile / width, column)] & (1L << (column % WORD_BITS))) != 0;
+    }
+
+    public void set(int tile) {
+        final int column = tile % width;
+        words[getWord(tile / width, column)] |= 1L << (column % WORD_BITS);
+    }
+
+    /**
+     * Counts the tiles in the set within a rectangle, which may hang off the grid.
+     * @param tile is the index of the tile at the center of the rectangle.
+     * @param radius is the number of tiles the rectangle reaches out from the center, on every side.
+     * @return the number of tiles in both the rectangle and the set.
+     */
+    public int countAround(int tile, int radius) {
+        final int firstColumn = Math.max(0, tile % width - radius);
+        final int lastColumn = Math.min(width - 1, tile % width + radius);
+        int count = 0;
+        for (int row = Math.max(0, tile / width - radius); row <= Math.min(height - 1, tile / width + radius); row++) {
+            for (int word = firstColumn / WORD_BITS; word <= lastColumn / WORD_BITS; word++) {
+                count += Long.bitCount(words[row * wordsPerRow + word]
+                        & getColumnMask(word, firstColumn, lastColumn));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes every tile within a rectangle, which may hang off the grid, from the set.
+     * @param tile is the index of the tile at the center of the rectangle.
+     * @param radius is the number of tiles the rectangle reaches out from the center, on every side.
+     */
+    public void clearAround(int tile, int radius) {
+        final int firstColumn = Math.max(0, tile % width - radius);
+        final int lastColumn = Math.min(width - 1, tile % width + radius);
+        for (int row = Math.max(0, tile / width - radius); row <= Math.min(height - 1, tile / width + radius); row++) {
+            for (int word = firstColumn / WORD_BITS; word <= lastColumn / WORD_BITS; word++) {
+                words[row * wordsPerRow + word] &= ~getColumnMask(word, firstColumn, lastColumn);
+            }
+        }
+    }
+
+    /**
+     * Flood fills this set from a tile, treating the tiles in the set as road and the rest as walls.
+     * @param origin is the index of the tile to fill from, which should be in the set.
+     * @return the tiles that can be reached from the origin.
+     */
+    public Bitboard getReachable(int origin) {
+        final Bitboard reached = new Bitboard(width, height);
+        if (!get(origin)) {
+            return reached;
+        }
+        reached.set(origin);
+
+        // Rows whose neighbours have changed since they were last filled, each on the stack at most once.
+        final int[] stack = new int[height];
+        final boolean[] stacked = new boolean[height];
+        final long[] seeds = new long[wordsPerRow];
+        final long[] filled = new long[wordsPerRow];
+        int size = 0;
+        for (int row = origin / width - 1; row <= origin / width + 1; row++) {
+            if (row >= 0 && row < height) {
+                stacked[row] = true;
+                stack[size++] = row;
+            }
+        }
+        while (size > 0) {
+            final int row = stack[--size];
+            stacked[row] = false;
+
+            // Seed the row from itself and from the road it touches in the rows either side, then fill along it.
+            final int start = row * wordsPerRow;
+            for (int word = 0; word < wordsPerRow; word++) {
+                long seed = reached.words[start + word];
+                if (row > 0) {
+                    seed |= reached.words[start - wordsPerRow + word];
+                }
+                if (row < height - 1) {
+                    seed |= reached.words[start + wordsPerRow + word];
+                }
+                seeds[word] = seed & words[start + word];
+            }
+            if (!fillRow(start, seeds, filled, reached.words)) {
+                continue;
+            }
+            for (int next = row - 1; next <= row + 1; next += 2) {
+                if (next >= 0 && next < height && !stacked[next]) {
+                    stacked[next] = true;
+                    stack[size++] = next;
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Fills the runs of road in a row that the seeds are in, adding them to 'reached'.
+     * @param start is the index of the row's first word.
+     * @param seeds is the seed bits for each word of the row, all of which are road.
+     * @param filled is space for the row's words.
+     * @param reached is the words to add the filled runs to.
+     * @return whether any bit was added.
+     */
+    private boolean fillRow(int start, long[] seeds, long[] filled, long[] reached) {
+        boolean changed = false;
+        long carry = 0;
+        // Upwards: adding a seed to a run of road carries through the rest of the run, clearing it.
+        for (int word = 0; word < wordsPerRow; word++) {
+            final long road = words[start + word];
+            final long seed = seeds[word] | (carry & road & 1);
+            filled[word] = (road & ~(road + seed)) | seed;
+            carry = filled[word] >>> (WORD_BITS - 1);
+        }
+        // Downwards: the same, with the bits reversed.
+        carry = 0;
+        for (int word = wordsPerRow - 1; word >= 0; word--) {
+            final long road = Long.reverse(words[start + word]);
+            final long seed = Long.reverse(seeds[word]) | (carry & road & 1);
+            final long down = (road & ~(road + seed)) | seed;
+            carry = down >>> (WORD_BITS - 1);
+            final long all = filled[word] | Long.reverse(down);
+            if ((all & ~reached[start + word]) != 0) {
+                reached[start + word] |= all;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private int getWord(int row, int column) {
+        return row * wordsPerRow + column / WORD_BITS;
+    }
+
+    /**
+     * Returns the bits of a word that are columns between the first and last, inclusive.
+     */
+    private static long getColumnMask(int word, int firstColumn, int lastColumn) {
+        final int first = Math.max(0, firstColumn - word * WORD_BITS);
+        final int last = Math.min(WORD_BITS - 1, lastColumn - word * WORD_BITS);
+        final long upToLast = last == WORD_BITS - 1 ? -1L : (1L << (last + 1)) - 1;
+        return upToLast & (-1L << first);
+    }
+}
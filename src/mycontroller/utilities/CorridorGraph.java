@@ -0,0 +1,298 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * A shortest path planner that searches a compressed graph of the map. Most of a map is corridors one tile wide, where
+ * every tile offers the same choice (keep going), so each straight run of plain road with walls either side becomes a
+ * single edge between the tiles at its ends (junctions), and the search only expands junctions. Every other tile that
+ * can be driven on is a junction: open areas, corners, dead ends, and traps.
+ *
+ * The graph is built once for the walls, which never change. When a trap is seen in a corridor, the tile becomes a
+ * junction, splitting the corridor's edge in two, and only the edges that ended or passed through it are redone.
+ * States and costs are the same as TurnAwarePlanner's: (tile, heading) pairs with turns on the spot, so the paths found
+ * cost the same; there's nothing to turn for in a corridor. The start and goal may be in a corridor, in which case
+ * the search runs along it from the start, and stops at the goal on the way along the edge through it. Edges are only
+ * expanded back into tiles once the path is found.
+ */
+public class CorridorGraph {
+
+    private final GridMap grid = new GridMap();
+    private final LandmarkHeuristic landmarks = new LandmarkHeuristic();
+    private final MinHeap open = new MinHeap();
+    // The cost of driving onto each tile, or infinity if it can't be driven on.
+    private float[] entryCosts = new float[0];
+    private int costsVersion = -1;
+    // Whether each tile is a junction, rather than inside a corridor or not drivable.
+    private boolean[] junctions = new boolean[0];
+    // For each junction and direction, the junction at the other end of the edge that way (or -1), and its cost.
+    private int[] edgeEnds = new int[0];
+    private float[] edgeCosts = new float[0];
+    // The cost from the start to each state, and the state before it on the way.
+    private float[] costs = new float[0];
+    private int[] parents = new int[0];
+    private int goalTile;
+    // If the goal is inside a corridor, the junction at the end of it in each direction from the goal, or -1.
+    private final int[] goalEnds = new int[GridMap.NUM_DIRECTIONS];
+    // The number of states expanded by the last search.
+    private int expansions = 0;
+
+    /**
+     * Brings the graph up to date with the map: builds it if the map is new, or splits it where tiles have changed.
+     * @param map is the map.
+     */
+    public void update(HashMap<Coordinate, MapTile> map) {
+        grid.refresh(map);
+        landmarks.update(grid);
+        if (costsVersion == grid.getVersion()) {
+            return;
+        }
+
+        if (entryCosts.length != grid.size()) {
+            entryCosts = new float[grid.size()];
+            junctions = new boolean[grid.size()];
+            edgeEnds = new int[grid.size() * GridMap.NUM_DIRECTIONS];
+            edgeCosts = new float[grid.size() * GridMap.NUM_DIRECTIONS];
+            costs = new float[grid.size() * GridMap.NUM_DIRECTIONS];
+            parents = new int[grid.size() * GridMap.NUM_DIRECTIONS];
+            for (int tile = 0; tile < grid.size(); tile++) {
+                entryCosts[tile] = getEntryCost(tile);
+            }
+            for (int tile = 0; tile < grid.size(); tile++) {
+                junctions[tile] = grid.isTraversable(tile) && !isCorridor(tile);
+            }
+            for (int tile = 0; tile < grid.size(); tile++) {
+                if (junctions[tile]) {
+                    updateEdges(tile);
+                }
+            }
+        } else {
+            for (int tile = 0; tile < grid.size(); tile++) {
+                final float entryCost = getEntryCost(tile);
+                if (entryCost != entryCosts[tile]) {
+                    entryCosts[tile] = entryCost;
+                    splitAt(tile);
+                }
+            }
+        }
+        costsVersion = grid.getVersion();
+    }
+
+    /**
+     * Given a map, start, heading and goal, returns a list of coordinates that go from start to goal.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param goal is the target coordinate.
+     * @return a sequential list of coordinates that gets from start to goal, or null if there's no path.
+     */
+    public ArrayList<Coordinate> getShortestPath(HashMap<Coordinate, MapTile> map, Coordinate start,
+            Direction heading, Coordinate goal) {
+        update(map);
+        final int startTile = grid.getIndex(start);
+        goalTile = grid.getIndex(goal);
+        expansions = 0;
+        if (startTile < 0 || goalTile < 0 || entryCosts[goalTile] == Float.POSITIVE_INFINITY) {
+            return null;
+        }
+        for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+            goalEnds[direction] = junctions[goalTile] ? -1 : getEdgeEnd(goalTile, direction, -1);
+        }
+
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        open.clear();
+        final int startState = getState(startTile, heading.ordinal());
+        costs[startState] = 0;
+        parents[startState] = -1;
+        open.push(getHeuristic(startTile), startState);
+        while (!open.isEmpty()) {
+            final float priority = open.peekKey();
+            final int state = open.pop();
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            if (tile == goalTile) {
+                return reconstructPath(state);
+            }
+            if (priority > costs[state] + getHeuristic(tile)) {
+                // A cheaper way to this state has already been expanded.
+                continue;
+            }
+            expansions++;
+
+            // Drive on to the next junction, or to the goal if it's on the way.
+            final int direction = state % GridMap.NUM_DIRECTIONS;
+            if (junctions[tile]) {
+                if (edgeEnds[state] >= 0) {
+                    relax(state, getState(edgeEnds[state], direction), costs[state] + edgeCosts[state]);
+                }
+                if (goalEnds[GridMap.getOpposite(direction)] == tile) {
+                    relax(state, getState(goalTile, direction), costs[state] + getRunCost(tile, goalTile));
+                }
+            } else {
+                // Off the graph (at the start): run along the corridor.
+                final int end = getEdgeEnd(tile, direction, goalTile);
+                if (end >= 0) {
+                    relax(state, getState(end, direction), costs[state] + getRunCost(tile, end));
+                }
+            }
+
+            // Or turn on the spot.
+            for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+                if (isTurn(direction, turn)) {
+                    relax(state, getState(tile, turn), costs[state] + TurnAwarePlanner.TURN_COST);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of states expanded by the last search.
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * Updates the graph after a tile's cost has changed: it's a junction now unless it's still a plain corridor tile,
+     * and the edges that end at it, pass through it, or leave it are redone.
+     */
+    private void splitAt(int tile) {
+        junctions[tile] = grid.isTraversable(tile) && !isCorridor(tile);
+        if (junctions[tile]) {
+            updateEdges(tile);
+        }
+        for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+            final int end = getEdgeEnd(tile, direction, -1);
+            if (end >= 0) {
+                updateEdges(end);
+            }
+        }
+    }
+
+    /**
+     * Works out the edges leaving a junction in each direction.
+     */
+    private void updateEdges(int junction) {
+        for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+            final int state = getState(junction, direction);
+            edgeEnds[state] = getEdgeEnd(junction, direction, -1);
+            edgeCosts[state] = edgeEnds[state] < 0 ? Float.POSITIVE_INFINITY : getRunCost(junction, edgeEnds[state]);
+        }
+    }
+
+    /**
+     * Runs in a straight line from a tile until reaching a junction, the goal, or a tile the run can't carry on from.
+     * @param from is the tile to run from.
+     * @param direction is the direction to run in.
+     * @param goal is the goal tile to stop at, or -1.
+     * @return the tile the run ends at, or -1 if it runs straight into a wall.
+     */
+    private int getEdgeEnd(int from, int direction, int goal) {
+        int tile = grid.getNeighbor(from, direction);
+        while (tile >= 0 && entryCosts[tile] != Float.POSITIVE_INFINITY) {
+            final int next = grid.getNeighbor(tile, direction);
+            if (junctions[tile] || tile == goal || next < 0 || entryCosts[next] == Float.POSITIVE_INFINITY) {
+                return tile;
+            }
+            tile = next;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the cost of a straight run between two tiles. Every tile passed over is plain corridor.
+     */
+    private float getRunCost(int from, int to) {
+        final int distance = Math.abs(grid.getX(to) - grid.getX(from)) + Math.abs(grid.getY(to) - grid.getY(from));
+        return (distance - 1) * TurnAwarePlanner.MOVE_COST + entryCosts[to];
+    }
+
+    /**
+     * Determines whether a tile is inside a corridor: plain road, with road ahead and behind and walls either side.
+     */
+    private boolean isCorridor(int tile) {
+        if (grid.getTile(tile).isType(MapTile.Type.TRAP) || entryCosts[tile] != TurnAwarePlanner.MOVE_COST) {
+            return false;
+        }
+        // Direction 0 and whichever direction is at right angles to it.
+        final int along = 0;
+        final int across = isTurn(along, 1) ? 1 : 2;
+        final boolean openAlong = isOpen(tile, along) && isOpen(tile, GridMap.getOpposite(along));
+        final boolean closedAlong = !isOpen(tile, along) && !isOpen(tile, GridMap.getOpposite(along));
+        final boolean openAcross = isOpen(tile, across) && isOpen(tile, GridMap.getOpposite(across));
+        final boolean closedAcross = !isOpen(tile, across) && !isOpen(tile, GridMap.getOpposite(across));
+        return (openAlong && closedAcross) || (openAcross && closedAlong);
+    }
+
+    /**
+     * Determines whether the tile next to the given one can be driven on.
+     */
+    private boolean isOpen(int tile, int direction) {
+        final int neighbour = grid.getNeighbor(tile, direction);
+        return neighbour >= 0 && grid.isTraversable(neighbour);
+    }
+
+    private float getEntryCost(int tile) {
+        if (!grid.isTraversable(tile)) {
+            return Float.POSITIVE_INFINITY;
+        } else if (Utilities.isLava(grid.getTile(tile))) {
+            return TurnAwarePlanner.LAVA_COST;
+        }
+        return TurnAwarePlanner.MOVE_COST;
+    }
+
+    private void relax(int from, int state, float cost) {
+        if (cost < costs[state]) {
+            costs[state] = cost;
+            parents[state] = from;
+            open.push(cost + getHeuristic(state / GridMap.NUM_DIRECTIONS), state);
+        }
+    }
+
+    /**
+     * Walks back from the goal through the states, filling in the corridors between them.
+     */
+    private ArrayList<Coordinate> reconstructPath(int end) {
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        int state = end;
+        while (parents[state] >= 0) {
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            final int parentTile = parents[state] / GridMap.NUM_DIRECTIONS;
+            // Turns stay on the tile. Runs go straight, in the direction of the state they end in.
+            final int direction = GridMap.getOpposite(state % GridMap.NUM_DIRECTIONS);
+            for (int step = tile; step != parentTile; step = grid.getNeighbor(step, direction)) {
+                path.add(grid.getCoordinate(step));
+            }
+            state = parents[state];
+        }
+        path.add(grid.getCoordinate(state / GridMap.NUM_DIRECTIONS));
+        Collections.reverse(path);
+        return path;
+    }
+
+    private float getHeuristic(int tile) {
+        return TurnAwarePlanner.MOVE_COST * landmarks.getLowerBound(grid, tile, goalTile);
+    }
+
+    private static int getState(int tile, int direction) {
+        return tile * GridMap.NUM_DIRECTIONS + direction;
+    }
+
+    /**
+     * Determines whether the car can face 'to' from 'from' with a single 90 degree turn.
+     */
+    private static boolean isTurn(int from, int to) {
+        return GridMap.getDX(from) * GridMap.getDX(to) + GridMap.getDY(from) * GridMap.getDY(to) == 0;
+    }
+}
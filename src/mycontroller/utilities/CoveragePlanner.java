@@ -0,0 +1,294 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.Car;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plans a sweep that sees every tile in a given set. The car sees a fixed square around itself, so the sweep is a set
+ * of viewpoints whose squares cover the tiles between them, picked greedily (each viewpoint being the one that sees the
+ * most tiles not yet covered, counted on a bitboard), then ordered into a short tour from the start by nearest
+ * neighbour and improved with 2-opt moves.
+ *
+ * A sweep has at most MAX_VIEWPOINTS viewpoints, the ones that see the most, so that planning never holds up the car
+ * for long on a big map: the tour needs the driving costs between every pair of stops, one search per stop. What the
+ * sweep leaves unseen is left to the next one.
+ */
+public class CoveragePlanner {
+
+    // The most viewpoints in one sweep.
+    private static final int MAX_VIEWPOINTS = 48;
+    // The most 2-opt moves to try while improving the tour.
+    private static final int MAX_TOUR_MOVES = 100000;
+
+    private final GridMap grid = new GridMap();
+    private final MinHeap open = new MinHeap();
+
+    /**
+     * Plans a sweep from the start that sees every tile in the given set that can be seen from somewhere reachable, or
+     * as many as MAX_VIEWPOINTS viewpoints can.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param toCover is the set of coordinates to see.
+     * @return the viewpoints to visit, in order, or an empty list if there's nothing left that can be seen.
+     */
+    public ArrayList<Coordinate> getSweep(HashMap<Coordinate, MapTile> map, Coordinate start,
+            Set<Coordinate> toCover) {
+        grid.refresh(map);
+        final ArrayList<Coordinate> sweep = new ArrayList<>();
+        final int startTile = grid.getIndex(start);
+        if (startTile < 0) {
+            return sweep;
+        }
+
+        // Pick the viewpoints, then order them into a tour that starts at the car.
+        final ArrayList<Integer> tour = new ArrayList<>();
+        tour.add(startTile);
+        tour.addAll(getViewpoints(Bitboard.getTraversable(grid).getReachable(startTile), toCover));
+        final float[][] costs = getCosts(tour);
+        final int[] order = getNearestNeighbourOrder(costs);
+        improveOrder(order, costs);
+
+        for (int stop = 1; stop < order.length; stop++) {
+            sweep.add(grid.getCoordinate(tour.get(order[stop])));
+        }
+        return sweep;
+    }
+
+    /**
+     * Picks the target that can be reached from the start over the fewest lava tiles, not counting lava at the start.
+     * Ties go to the target that comes first. This takes one search, however many targets there are.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param targets is the candidate targets.
+     * @return the target, or null if none can be reached.
+     */
+    public Coordinate getFewestLavaTarget(HashMap<Coordinate, MapTile> map, Coordinate start,
+            List<Coordinate> targets) {
+        grid.refresh(map);
+        final int startTile = grid.getIndex(start);
+        if (startTile < 0 || targets.isEmpty()) {
+            return null;
+        }
+        final HashMap<Integer, Integer> targetAt = new HashMap<>();
+        for (int target = targets.size() - 1; target >= 0; target--) {
+            final int tile = grid.getIndex(targets.get(target));
+            if (tile >= 0) {
+                targetAt.put(tile, target);
+            }
+        }
+
+        final float[] lavaTiles = new float[grid.size()];
+        Arrays.fill(lavaTiles, Float.POSITIVE_INFINITY);
+        int best = -1;
+        float bestLavaTiles = Float.POSITIVE_INFINITY;
+        open.clear();
+        lavaTiles[startTile] = 0;
+        open.push(0, startTile);
+        while (!open.isEmpty() && open.peekKey() <= bestLavaTiles) {
+            final float count = open.peekKey();
+            final int tile = open.pop();
+            if (count > lavaTiles[tile]) {
+                continue;
+            }
+            final Integer target = targetAt.get(tile);
+            if (target != null && (best < 0 || count < bestLavaTiles || target < best)) {
+                best = target;
+                bestLavaTiles = count;
+            }
+
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                final int next = grid.getNeighbor(tile, direction);
+                if (next < 0 || !grid.isTraversable(next)) {
+                    continue;
+                }
+                final float nextCount = count + (Utilities.isLava(grid.getTile(next)) ? 1 : 0);
+                if (nextCount < lavaTiles[next]) {
+                    lavaTiles[next] = nextCount;
+                    open.push(nextCount, next);
+                }
+            }
+        }
+        return best < 0 ? null : targets.get(best);
+    }
+
+    /**
+     * Greedily picks viewpoints until every tile that can be seen is covered. Every reachable tile that isn't lava is
+     * a candidate. Since a candidate only ever sees fewer uncovered tiles as others are picked, candidates are kept in
+     * a heap by how many they saw when last counted, and only the best is recounted each time (lazy greedy). Picking
+     * stops at MAX_VIEWPOINTS.
+     * @param reachable is the set of tiles that can be reached from the start.
+     * @param toCover is the set of coordinates to see.
+     * @return the indices of the picked viewpoints, in the order they were picked.
+     */
+    private ArrayList<Integer> getViewpoints(Bitboard reachable, Set<Coordinate> toCover) {
+        final Bitboard uncovered = new Bitboard(grid.getWidth(), grid.getHeight());
+        for (Coordinate coordinate : toCover) {
+            final int tile = grid.getIndex(coordinate);
+            if (tile >= 0) {
+                uncovered.set(tile);
+            }
+        }
+
+        open.clear();
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (reachable.get(tile) && !Utilities.isLava(grid.getTile(tile))) {
+                open.push(-uncovered.countAround(tile, Car.VIEW_SQUARE), tile);
+            }
+        }
+
+        final ArrayList<Integer> viewpoints = new ArrayList<>();
+        while (!open.isEmpty() && open.peekKey() < 0 && viewpoints.size() < MAX_VIEWPOINTS) {
+            final int tile = open.pop();
+            final int count = uncovered.countAround(tile, Car.VIEW_SQUARE);
+            if (!open.isEmpty() && -count > open.peekKey()) {
+                // Another candidate might see more now. Put this one back with its new count.
+                if (count > 0) {
+                    open.push(-count, tile);
+                }
+                continue;
+            }
+            if (count == 0) {
+                break;
+            }
+            viewpoints.add(tile);
+            uncovered.clearAround(tile, Car.VIEW_SQUARE);
+        }
+        return viewpoints;
+    }
+
+    /**
+     * Orders the stops by always driving to the nearest one not yet visited, starting at the first.
+     * @param costs is the cost of driving from each stop to each other.
+     * @return the order to visit the stops in.
+     */
+    private static int[] getNearestNeighbourOrder(float[][] costs) {
+        final int[] order = new int[costs.length];
+        final boolean[] visited = new boolean[costs.length];
+        visited[0] = true;
+        for (int position = 1; position < order.length; position++) {
+            int nearest = -1;
+            for (int stop = 1; stop < costs.length; stop++) {
+                if (!visited[stop] && (nearest < 0
+                        || costs[order[position - 1]][stop] < costs[order[position - 1]][nearest])) {
+                    nearest = stop;
+                }
+            }
+            order[position] = nearest;
+            visited[nearest] = true;
+        }
+        return order;
+    }
+
+    /**
+     * Improves the order with 2-opt moves (reversing a stretch of the tour) until none helps or the budget runs out.
+     * The tour is open, so the first stop stays put and the last stop has nothing after it. Costs are treated as the
+     * same both ways, which they are except around lava.
+     * @param order is the order to improve, in place.
+     * @param costs is the cost of driving from each stop to each other.
+     */
+    private static void improveOrder(int[] order, float[][] costs) {
+        int movesLeft = MAX_TOUR_MOVES;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int first = 1; first < order.length - 1; first++) {
+                for (int last = first + 1; last < order.length; last++) {
+                    if (--movesLeft < 0) {
+                        return;
+                    }
+                    final int before = order[first - 1];
+                    final int after = last + 1 < order.length ? order[last + 1] : -1;
+                    final float oldCost = costs[before][order[first]] + (after < 0 ? 0 : costs[order[last]][after]);
+                    final float newCost = costs[before][order[last]] + (after < 0 ? 0 : costs[order[first]][after]);
+                    if (newCost < oldCost) {
+                        reverse(order, first, last);
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void reverse(int[] order, int first, int last) {
+        while (first < last) {
+            final int swap = order[first];
+            order[first++] = order[last];
+            order[last--] = swap;
+        }
+    }
+
+    /**
+     * Works out the cost of driving between every pair of stops, with the same costs as TurnAwarePlanner uses for
+     * driving onto tiles. Each stop gets one run of Dijkstra's algorithm, which ends as soon as every stop is settled.
+     * @param stops is the list of stop tile indices.
+     * @return the cost of driving from each stop to each other, by index into 'stops'.
+     */
+    private float[][] getCosts(ArrayList<Integer> stops) {
+        final int[] stopAt = new int[grid.size()];
+        Arrays.fill(stopAt, -1);
+        for (int stop = 0; stop < stops.size(); stop++) {
+            stopAt[stops.get(stop)] = stop;
+        }
+
+        final float[][] stopCosts = new float[stops.size()][stops.size()];
+        final float[] costs = new float[grid.size()];
+        for (int stop = 0; stop < stops.size(); stop++) {
+            Arrays.fill(stopCosts[stop], Float.POSITIVE_INFINITY);
+            Arrays.fill(costs, Float.POSITIVE_INFINITY);
+            searchFrom(stops.get(stop), costs, stopAt, stopCosts[stop]);
+        }
+        return stopCosts;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from a tile until every stop has been settled.
+     * @param origin is the tile to search from.
+     * @param costs is the cost of driving to each tile, all infinite to begin with.
+     * @param stopAt is the index of the stop at each tile, or -1.
+     * @param stopCosts is filled with the cost of driving to each stop.
+     */
+    private void searchFrom(int origin, float[] costs, int[] stopAt, float[] stopCosts) {
+        int stopsLeft = stopCosts.length;
+        open.clear();
+        costs[origin] = 0;
+        open.push(0, origin);
+        while (!open.isEmpty()) {
+            final float cost = open.peekKey();
+            final int tile = open.pop();
+            if (cost > costs[tile]) {
+                // A cheaper way to this tile has already been expanded.
+                continue;
+            }
+            if (stopAt[tile] >= 0) {
+                stopCosts[stopAt[tile]] = cost;
+                if (--stopsLeft == 0) {
+                    return;
+                }
+            }
+
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                final int next = grid.getNeighbor(tile, direction);
+                if (next < 0 || !grid.isTraversable(next)) {
+                    continue;
+                }
+                final float nextCost = cost + (Utilities.isLava(grid.getTile(next)) ? TurnAwarePlanner.LAVA_COST
+                        : TurnAwarePlanner.MOVE_COST);
+                if (nextCost < costs[next]) {
+                    costs[next] = nextCost;
+                    open.push(nextCost, next);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An array-backed copy of a map, so that searches can index tiles by number instead of hashing coordinates. Tiles are
+ * numbered row by row from the bottom left corner of the map. The copy is kept in step with the original by calling
+ * 'refresh', which bumps the version whenever a tile has changed (e.g. a trap has been seen).
+ */
+public class GridMap {
+
+    // Unit steps for each direction, indexed by Direction.ordinal().
+    private static final int[] DX = new int[Direction.values().length];
+    private static final int[] DY = new int[Direction.values().length];
+
+    static {
+        DX[Direction.EAST.ordinal()] = 1;
+        DX[Direction.WEST.ordinal()] = -1;
+        DY[Direction.NORTH.ordinal()] = 1;
+        DY[Direction.SOUTH.ordinal()] = -1;
+    }
+
+    public static final int NUM_DIRECTIONS = DX.length;
+
+    private HashMap<Coordinate, MapTile> source = null;
+    private int minX;
+    private int minY;
+    private int width = 0;
+    private int height = 0;
+    private MapTile[] tiles = new MapTile[0];
+    private int tileCount = 0;
+    private int version = 0;
+
+    /**
+     * Brings this grid up to date with the given map.
+     * @param map is the map to copy.
+     * @return whether any tile has changed since the last refresh.
+     */
+    public boolean refresh(HashMap<Coordinate, MapTile> map) {
+        if (map != source || map.size() != tileCount) {
+            rebuild(map);
+            return true;
+        }
+
+        boolean changed = false;
+        for (Map.Entry<Coordinate, MapTile> entry : map.entrySet()) {
+            final int index = getIndex(entry.getKey().x, entry.getKey().y);
+            if (tiles[index] != entry.getValue()) {
+                tiles[index] = entry.getValue();
+                changed = true;
+            }
+        }
+        if (changed) {
+            version++;
+        }
+        return changed;
+    }
+
+    /**
+     * Returns a number that changes every time a tile changes, so that users can tell when to drop cached results.
+     * @return the version of the grid.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int size() {
+        return tiles.length;
+    }
+
+    /**
+     * Returns the index of the tile at the given position.
+     * @param x is the x position.
+     * @param y is the y position.
+     * @return the index of the tile, or -1 if the position is off the grid.
+     */
+    public int getIndex(int x, int y) {
+        final int column = x - minX;
+        final int row = y - minY;
+        if (column < 0 || row < 0 || column >= width || row >= height) {
+            return -1;
+        }
+        return row * width + column;
+    }
+
+    public int getIndex(Coordinate coordinate) {
+        return getIndex(coordinate.x, coordinate.y);
+    }
+
+    public int getX(int index) {
+        return minX + index % width;
+    }
+
+    public int getY(int index) {
+        return minY + index / width;
+    }
+
+    public Coordinate getCoordinate(int index) {
+        return new Coordinate(getX(index), getY(index));
+    }
+
+    /**
+     * Returns the index of the tile next to the given one.
+     * @param index is the index of the tile.
+     * @param direction is the ordinal of the direction to step in.
+     * @return the index of the neighbouring tile, or -1 if it's off the grid.
+     */
+    public int getNeighbor(int index, int direction) {
+        return getIndex(getX(index) + DX[direction], getY(index) + DY[direction]);
+    }
+
+    /**
+     * Returns the tile at the given index.
+     * @param index is the index of the tile.
+     * @return the tile, or null if the map has no tile there.
+     */
+    public MapTile getTile(int index) {
+        return tiles[index];
+    }
+
+    /**
+     * Determines whether the car can drive on the tile at the given index.
+     * @param index is the index of the tile.
+     * @return whether the tile is on the map and is neither a wall nor empty.
+     */
+    public boolean isTraversable(int index) {
+        final MapTile tile = tiles[index];
+        return tile != null && !tile.isType(MapTile.Type.WALL) && !tile.isType(MapTile.Type.EMPTY);
+    }
+
+    public static int getDX(int direction) {
+        return DX[direction];
+    }
+
+    public static int getDY(int direction) {
+        return DY[direction];
+    }
+
+    /**
+     * Returns the ordinal of the direction opposite the given one.
+     * @param direction is the ordinal of a direction.
+     * @return the ordinal of the opposite direction.
+     */
+    public static int getOpposite(int direction) {
+        for (int opposite = 0; opposite < NUM_DIRECTIONS; opposite++) {
+            if (DX[opposite] == -DX[direction] && DY[opposite] == -DY[direction]) {
+                return opposite;
+            }
+        }
+        return direction;
+    }
+
+    private void rebuild(HashMap<Coordinate, MapTile> map) {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (Coordinate coordinate : map.keySet()) {
+            minX = Math.min(minX, coordinate.x);
+            minY = Math.min(minY, coordinate.y);
+            maxX = Math.max(maxX, coordinate.x);
+            maxY = Math.max(maxY, coordinate.y);
+        }
+        width = map.isEmpty() ? 0 : maxX - minX + 1;
+        height = map.isEmpty() ? 0 : maxY - minY + 1;
+
+        tiles = new MapTile[width * height];
+        for (Map.Entry<Coordinate, MapTile> entry : map.entrySet()) {
+            tiles[getIndex(entry.getKey().x, entry.getKey().y)] = entry.getValue();
+        }
+        tileCount = map.size();
+        source = map;
+        version++;
+    }
+}
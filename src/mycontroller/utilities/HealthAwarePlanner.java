@@ -0,0 +1,196 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.LavaTrap;
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.CarPhysics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Prices routes with health as a resource. Every tile takes time to cross, and every lava tile also takes health, so
+ * the quickest way to a goal may be too dangerous to drive with the health the car has left.
+ *
+ * Health is tracked as the number of lava tiles driven onto, which is what it's spent on. A search over (tile, lava
+ * tiles so far) states gives, for every tile and lava budget, the quickest time from a tile (or, searching backwards,
+ * to it), so a route can be priced for any health it's started with. TourPlanner prices every leg of the trip this
+ * way. MyAIController asks how much lava lies between the next place to explore and a health trap, so that exploring
+ * never strands the car.
+ */
+public class HealthAwarePlanner {
+
+    public static final float FULL_HEALTH = 100;
+
+    // Seconds to cross a tile. Assumes the car crosses lava no faster than it takes a corner, which is true of lava
+    // it has to turn on and errs on the safe side elsewhere.
+    private static final float TILE_TIME = 1 / SpeedProfile.CORNER_SPEED;
+    // Health lost by driving onto a lava tile.
+    static final float LAVA_DAMAGE = LavaTrap.HealthDelta * TILE_TIME;
+    // Health kept in reserve on every route, for scraping walls along the way.
+    private static final float WALL_CONTACT_TIME = 1;
+    private static final float HEALTH_MARGIN = CarPhysics.WALL_DAMAGE * WALL_CONTACT_TIME;
+    // The most lava tiles any route can afford, even from full health.
+    static final int MAX_LAVA_TILES = (int) Math.floor((FULL_HEALTH - HEALTH_MARGIN) / LAVA_DAMAGE);
+    static final int NUM_BUDGETS = MAX_LAVA_TILES + 1;
+    // Slack allowed when checking health against what a route needs, so that healing up to exactly what a route
+    // needs is enough for it.
+    private static final float HEALTH_TOLERANCE = 0.01f;
+
+    private final GridMap grid = new GridMap();
+    private final MinHeap open = new MinHeap();
+
+    // The quickest time from a tile to each state, and what it was computed for, so it can be reused while the car
+    // asks about the same tile and the map hasn't changed. Health traps are traps, so finding one changes the version.
+    private float[] timesFrom = new float[0];
+    private int fromTile = -1;
+    private int fromVersion = -1;
+
+    /**
+     * Returns the fewest lava tiles the car has to drive onto to get from a coordinate to a health trap, or out of the
+     * lava if it doesn't know of any health traps.
+     * @param map is the map.
+     * @param from is the coordinate to start from.
+     * @param healthLocations is a list of the health traps the car knows about.
+     * @return the fewest lava tiles to safety, or MAX_LAVA_TILES if it can't be reached on fewer.
+     */
+    public int getLavaTilesToSafety(HashMap<Coordinate, MapTile> map, Coordinate from,
+            ArrayList<Coordinate> healthLocations) {
+        grid.refresh(map);
+        final int tile = grid.getIndex(from);
+        if (tile < 0) {
+            return MAX_LAVA_TILES;
+        }
+        if (timesFrom.length != grid.size() * NUM_BUDGETS) {
+            timesFrom = new float[grid.size() * NUM_BUDGETS];
+            fromTile = -1;
+        }
+        if (tile != fromTile || fromVersion != grid.getVersion()) {
+            search(grid, open, timesFrom, tile, true);
+            fromTile = tile;
+            fromVersion = grid.getVersion();
+        }
+        return getLavaTilesToSafety(grid, timesFrom, healthLocations);
+    }
+
+    /**
+     * Returns the health the car needs to drive onto the given number of lava tiles and still have health left.
+     * @param lavaTiles is the number of lava tiles.
+     * @return the health needed.
+     */
+    public static float getHealthNeeded(int lavaTiles) {
+        return lavaTiles * LAVA_DAMAGE + HEALTH_MARGIN;
+    }
+
+    /**
+     * Returns the most lava tiles the car can drive onto with the given health, or -1 if it can't afford to drive at
+     * all.
+     */
+    static int getAffordableLavaTiles(float health) {
+        if (health <= HEALTH_MARGIN) {
+            return -1;
+        }
+        return Math.min(MAX_LAVA_TILES,
+                (int) Math.floor((health - HEALTH_MARGIN + HEALTH_TOLERANCE) / LAVA_DAMAGE));
+    }
+
+    /**
+     * Returns the fewest lava tiles the car has to drive onto to get from a tile to a health trap, or out of the lava
+     * if it doesn't know of any health traps.
+     * @param grid is the grid the times were searched on.
+     * @param timesFromGoal is the result of searching forwards from the tile.
+     * @param healthLocations is a list of the health traps the car knows about.
+     * @return the fewest lava tiles to safety.
+     */
+    static int getLavaTilesToSafety(GridMap grid, float[] timesFromGoal, ArrayList<Coordinate> healthLocations) {
+        for (int lavaTiles = 0; lavaTiles <= MAX_LAVA_TILES; lavaTiles++) {
+            if (healthLocations.isEmpty()) {
+                for (int tile = 0; tile < grid.size(); tile++) {
+                    if (!isLava(grid, tile) && timesFromGoal[getState(tile, lavaTiles)] < Float.POSITIVE_INFINITY) {
+                        return lavaTiles;
+                    }
+                }
+            }
+            for (Coordinate healthLocation : healthLocations) {
+                final int tile = grid.getIndex(healthLocation);
+                if (tile >= 0 && timesFromGoal[getState(tile, lavaTiles)] < Float.POSITIVE_INFINITY) {
+                    return lavaTiles;
+                }
+            }
+        }
+        return MAX_LAVA_TILES;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm over (tile, lava tiles) states, then relaxes each tile's times over its budgets so
+     * that they hold the quickest time using at most that many lava tiles.
+     * @param grid is the grid to search.
+     * @param open is the heap to search with.
+     * @param times is the array to fill in, with a state for each tile and budget.
+     * @param origin is the tile to search from.
+     * @param forwards is whether to search forwards from the origin, or backwards from it as a goal.
+     */
+    static void search(GridMap grid, MinHeap open, float[] times, int origin, boolean forwards) {
+        search(grid, open, times, origin, forwards, null);
+    }
+
+    /**
+     * As above, but only over the tiles a mask says are relevant, so only the times to relevant tiles are right.
+     * @param mask is the mask of tiles to search, or null to search them all.
+     */
+    static void search(GridMap grid, MinHeap open, float[] times, int origin, boolean forwards, RouteMask mask) {
+        Arrays.fill(times, Float.POSITIVE_INFINITY);
+        open.clear();
+
+        times[getState(origin, 0)] = 0;
+        open.push(0, getState(origin, 0));
+
+        while (!open.isEmpty()) {
+            final float time = open.peekKey();
+            final int state = open.pop();
+            if (time > times[state]) {
+                // A quicker way to this state has already been expanded.
+                continue;
+            }
+
+            final int tile = state / NUM_BUDGETS;
+            final int lavaTiles = state % NUM_BUDGETS;
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                final int next = grid.getNeighbor(tile, direction);
+                if (next < 0 || !grid.isTraversable(next) || (mask != null && !mask.isRelevant(next))) {
+                    continue;
+                }
+                // Lava is paid for on the tile driven onto: 'next' going forwards, and 'tile' going backwards.
+                final int nextLava = lavaTiles + (isLava(grid, forwards ? next : tile) ? 1 : 0);
+                if (nextLava > MAX_LAVA_TILES) {
+                    continue;
+                }
+                final int nextState = getState(next, nextLava);
+                if (time + TILE_TIME < times[nextState]) {
+                    times[nextState] = time + TILE_TIME;
+                    open.push(times[nextState], nextState);
+                }
+            }
+        }
+
+        for (int tile = 0; tile < grid.size(); tile++) {
+            for (int lavaTiles = 1; lavaTiles < NUM_BUDGETS; lavaTiles++) {
+                times[getState(tile, lavaTiles)] = Math.min(times[getState(tile, lavaTiles)],
+                        times[getState(tile, lavaTiles - 1)]);
+            }
+        }
+    }
+
+    private static boolean isLava(GridMap grid, int tile) {
+        return Utilities.isLava(grid.getTile(tile));
+    }
+
+    static int getState(int tile, int lavaTiles) {
+        return tile * NUM_BUDGETS + lavaTiles;
+    }
+}
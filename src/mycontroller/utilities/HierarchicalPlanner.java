@@ -0,0 +1,417 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A hierarchical shortest path planner (HPA*) for large maps. The grid is cut into square clusters. Wherever two
+ * neighbouring clusters share a stretch of open border, the stretch gets an entrance: a pair of tiles facing each other
+ * across the border, each a node of an abstract graph. The cheapest cost between every two nodes of a cluster is worked
+ * out in advance, so planning is an A* search over a handful of nodes per cluster rather than over every tile. Only
+ * the first few clusters of the abstract path are refined into tiles, since the car replans long before it gets
+ * further than that.
+ *
+ * Walls never change, so neither do the entrances. Seeing a trap only changes the cost of driving onto its tile, so
+ * only the costs within its cluster need working out again. Edge costs are the same as TurnAwarePlanner's, without the
+ * turns.
+ */
+public class HierarchicalPlanner {
+
+    // Tiles along each side of a cluster.
+    private static final int CLUSTER_SIZE = 10;
+    // Open stretches of border longer than this get an entrance at each end rather than one in the middle.
+    private static final int MAX_SINGLE_ENTRANCE_WIDTH = 6;
+    // Number of clusters of the abstract path to refine into tiles.
+    private static final int REFINED_CLUSTERS = 2;
+
+    private final GridMap grid = new GridMap();
+    private final MinHeap open = new MinHeap();
+    private int gridVersion = -1;
+    private int clustersWide = 0;
+    private int clustersHigh = 0;
+    // The cost of driving onto each tile, or infinity if it can't be driven on.
+    private float[] entryCosts = new float[0];
+    // Last version's costs, kept to compare against and to reuse.
+    private float[] previousCosts = new float[0];
+
+    // The abstract graph. Each node is on a tile, in a cluster, and faces its partner node across the cluster's border.
+    private int[] nodeTiles = new int[0];
+    private int[] nodePartners = new int[0];
+    // The nodes in each cluster, and for each node, the cost to each node in its cluster, in the same order.
+    private int[][] clusterNodes = new int[0][];
+    private float[][] intraCosts = new float[0][];
+
+    // Scratch space for searching one cluster, indexed by position within the cluster.
+    private final float[] clusterCosts = new float[CLUSTER_SIZE * CLUSTER_SIZE];
+    private final int[] clusterParents = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    // Scratch space for searching the abstract graph, which has two extra nodes for the start and the goal.
+    private float[] nodeCosts = new float[0];
+    private int[] nodeParents = new int[0];
+
+    /**
+     * Given a map, start and goal, returns the start of the shortest path from start to goal. The path is refined into
+     * tiles for its first few clusters only, so it ends at the goal only if the goal is that close.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param goal is the target coordinate.
+     * @return a sequential list of coordinates from start towards goal, or null if there's no path.
+     */
+    public ArrayList<Coordinate> getPath(HashMap<Coordinate, MapTile> map, Coordinate start, Coordinate goal) {
+        grid.refresh(map);
+        if (gridVersion != grid.getVersion()) {
+            update();
+        }
+
+        final int startTile = grid.getIndex(start);
+        final int goalTile = grid.getIndex(goal);
+        if (startTile < 0 || goalTile < 0 || entryCosts[goalTile] == Float.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        final int[] abstractPath = searchAbstract(startTile, goalTile);
+        if (abstractPath == null) {
+            return null;
+        }
+        return refine(abstractPath, startTile, goalTile);
+    }
+
+    /**
+     * Brings the abstract graph up to date with the grid. If any tile has become drivable or stopped being drivable,
+     * the entrances may have changed, so the graph is rebuilt; otherwise only the clusters with changed costs are.
+     */
+    private void update() {
+        if (previousCosts.length != grid.size()) {
+            previousCosts = new float[grid.size()];
+        }
+        final float[] oldCosts = entryCosts;
+        final boolean resized = oldCosts.length != grid.size();
+        entryCosts = previousCosts;
+        previousCosts = oldCosts;
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (!grid.isTraversable(tile)) {
+                entryCosts[tile] = Float.POSITIVE_INFINITY;
+            } else if (Utilities.isLava(grid.getTile(tile))) {
+                entryCosts[tile] = TurnAwarePlanner.LAVA_COST;
+            } else {
+                entryCosts[tile] = TurnAwarePlanner.MOVE_COST;
+            }
+        }
+        gridVersion = grid.getVersion();
+
+        boolean rebuild = resized;
+        final boolean[] dirtyClusters = new boolean[resized ? 0 : clusterNodes.length];
+        for (int tile = 0; !rebuild && tile < grid.size(); tile++) {
+            if (entryCosts[tile] != oldCosts[tile]) {
+                rebuild = entryCosts[tile] == Float.POSITIVE_INFINITY || oldCosts[tile] == Float.POSITIVE_INFINITY;
+                dirtyClusters[getCluster(tile)] = true;
+            }
+        }
+
+        if (rebuild) {
+            buildGraph();
+        } else {
+            for (int cluster = 0; cluster < dirtyClusters.length; cluster++) {
+                if (dirtyClusters[cluster]) {
+                    updateIntraCosts(cluster);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the entrances between every pair of neighbouring clusters, then works out the costs within every cluster.
+     */
+    private void buildGraph() {
+        clustersWide = (grid.getWidth() + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        clustersHigh = (grid.getHeight() + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+
+        // Entrances come in pairs of tiles: one each side of a border between clusters.
+        final ArrayList<Integer> entranceTiles = new ArrayList<>();
+        for (int row = 0; row < grid.getHeight(); row += CLUSTER_SIZE) {
+            // The borders between each cluster and the one east of it.
+            for (int column = CLUSTER_SIZE - 1; column + 1 < grid.getWidth(); column += CLUSTER_SIZE) {
+                addEntrances(entranceTiles, row * grid.getWidth() + column, 1, grid.getWidth(),
+                        Math.min(CLUSTER_SIZE, grid.getHeight() - row));
+            }
+        }
+        for (int row = CLUSTER_SIZE - 1; row + 1 < grid.getHeight(); row += CLUSTER_SIZE) {
+            // The borders between each cluster and the one north of it.
+            for (int column = 0; column < grid.getWidth(); column += CLUSTER_SIZE) {
+                addEntrances(entranceTiles, row * grid.getWidth() + column, grid.getWidth(), 1,
+                        Math.min(CLUSTER_SIZE, grid.getWidth() - column));
+            }
+        }
+
+        final int numNodes = entranceTiles.size();
+        nodeTiles = new int[numNodes];
+        nodePartners = new int[numNodes];
+        final int[] clusterSizes = new int[clustersWide * clustersHigh];
+        for (int node = 0; node < numNodes; node++) {
+            nodeTiles[node] = entranceTiles.get(node);
+            nodePartners[node] = node ^ 1;
+            clusterSizes[getCluster(nodeTiles[node])]++;
+        }
+
+        clusterNodes = new int[clusterSizes.length][];
+        for (int cluster = 0; cluster < clusterSizes.length; cluster++) {
+            clusterNodes[cluster] = new int[clusterSizes[cluster]];
+            clusterSizes[cluster] = 0;
+        }
+        for (int node = 0; node < numNodes; node++) {
+            final int cluster = getCluster(nodeTiles[node]);
+            clusterNodes[cluster][clusterSizes[cluster]++] = node;
+        }
+
+        intraCosts = new float[numNodes][];
+        for (int cluster = 0; cluster < clusterNodes.length; cluster++) {
+            updateIntraCosts(cluster);
+        }
+        nodeCosts = new float[numNodes + 2];
+        nodeParents = new int[numNodes + 2];
+    }
+
+    /**
+     * Adds the entrances along one cluster border, as pairs of tiles: the tile on the near side, then the one facing it
+     * across the border.
+     * @param entranceTiles is the list to add to.
+     * @param first is the first tile on the near side of the border.
+     * @param across is the step from a tile to the one facing it across the border.
+     * @param along is the step from a tile to the next one along the border.
+     * @param length is the number of tiles along the border.
+     */
+    private void addEntrances(ArrayList<Integer> entranceTiles, int first, int across, int along, int length) {
+        int runStart = -1;
+        for (int step = 0; step <= length; step++) {
+            final int tile = first + step * along;
+            final boolean open = step < length && entryCosts[tile] != Float.POSITIVE_INFINITY
+                    && entryCosts[tile + across] != Float.POSITIVE_INFINITY;
+            if (open && runStart < 0) {
+                runStart = step;
+            } else if (!open && runStart >= 0) {
+                final int runLength = step - runStart;
+                if (runLength > MAX_SINGLE_ENTRANCE_WIDTH) {
+                    addEntrance(entranceTiles, first + runStart * along, across);
+                    addEntrance(entranceTiles, first + (step - 1) * along, across);
+                } else {
+                    addEntrance(entranceTiles, first + (runStart + runLength / 2) * along, across);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private static void addEntrance(ArrayList<Integer> entranceTiles, int tile, int across) {
+        entranceTiles.add(tile);
+        entranceTiles.add(tile + across);
+    }
+
+    /**
+     * Works out the cost from each node in a cluster to every other node in it, without leaving the cluster.
+     * @param cluster is the index of the cluster.
+     */
+    private void updateIntraCosts(int cluster) {
+        final int[] nodes = clusterNodes[cluster];
+        for (int node : nodes) {
+            searchCluster(nodeTiles[node], true);
+            intraCosts[node] = new float[nodes.length];
+            for (int other = 0; other < nodes.length; other++) {
+                intraCosts[node][other] = clusterCosts[getClusterPosition(nodeTiles[nodes[other]])];
+            }
+        }
+    }
+
+    /**
+     * Runs A* over the abstract graph, with the start and goal tiles joined to the nodes of their clusters.
+     * @param startTile is the index of the start tile.
+     * @param goalTile is the index of the goal tile.
+     * @return the nodes on the cheapest path, starting with the start node and ending with the goal node, or null if
+     * there's no path. The start node is numbered one past the last real node, and the goal node two past.
+     */
+    private int[] searchAbstract(int startTile, int goalTile) {
+        final int startNode = nodeTiles.length;
+        final int goalNode = startNode + 1;
+        final int startCluster = getCluster(startTile);
+        final int goalCluster = getCluster(goalTile);
+
+        // The costs from the start to the nodes of its cluster, and from the nodes of the goal's cluster to the goal.
+        searchCluster(startTile, true);
+        final float[] startCosts = getNodeCosts(startCluster);
+        final float directCost = startCluster == goalCluster ? clusterCosts[getClusterPosition(goalTile)]
+                : Float.POSITIVE_INFINITY;
+        searchCluster(goalTile, false);
+        final float[] goalCosts = getNodeCosts(goalCluster);
+
+        Arrays.fill(nodeCosts, Float.POSITIVE_INFINITY);
+        open.clear();
+        nodeCosts[startNode] = 0;
+        nodeParents[startNode] = -1;
+        open.push(getHeuristic(startTile, goalTile), startNode);
+        while (!open.isEmpty()) {
+            final float priority = open.peekKey();
+            final int node = open.pop();
+            if (node == goalNode) {
+                return reconstructAbstractPath(goalNode);
+            }
+            final float cost = nodeCosts[node];
+            if (priority > cost + getHeuristic(getNodeTile(node, startTile, goalTile), goalTile)) {
+                // A cheaper way to this node has already been expanded.
+                continue;
+            }
+
+            if (node == startNode) {
+                final int[] nodes = clusterNodes[startCluster];
+                for (int other = 0; other < nodes.length; other++) {
+                    relax(nodes[other], node, cost + startCosts[other], goalTile);
+                }
+                relax(goalNode, node, cost + directCost, goalTile);
+                continue;
+            }
+
+            // Cross the border, or move to another node of the cluster, or on to the goal if it's in this cluster.
+            relax(nodePartners[node], node, cost + entryCosts[nodeTiles[nodePartners[node]]], goalTile);
+            final int cluster = getCluster(nodeTiles[node]);
+            final int[] nodes = clusterNodes[cluster];
+            for (int other = 0; other < nodes.length; other++) {
+                relax(nodes[other], node, cost + intraCosts[node][other], goalTile);
+                if (cluster == goalCluster && nodes[other] == node) {
+                    // 'other' is this node's place in the cluster.
+                    relax(goalNode, node, cost + goalCosts[other], goalTile);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void relax(int node, int parent, float cost, int goalTile) {
+        if (cost < nodeCosts[node]) {
+            nodeCosts[node] = cost;
+            nodeParents[node] = parent;
+            final int tile = node < nodeTiles.length ? nodeTiles[node] : goalTile;
+            open.push(cost + getHeuristic(tile, goalTile), node);
+        }
+    }
+
+    private int[] reconstructAbstractPath(int goalNode) {
+        int length = 0;
+        for (int node = goalNode; node >= 0; node = nodeParents[node]) {
+            length++;
+        }
+        final int[] path = new int[length];
+        for (int node = goalNode; node >= 0; node = nodeParents[node]) {
+            path[--length] = node;
+        }
+        return path;
+    }
+
+    /**
+     * Turns the first few clusters of an abstract path into tiles. Between two nodes in the same cluster, this is the
+     * cheapest path within the cluster; across a border, it's just the step over it.
+     * @param abstractPath is the abstract path, from the start node to the goal node.
+     * @param startTile is the index of the start tile.
+     * @param goalTile is the index of the goal tile.
+     * @return the path as coordinates.
+     */
+    private ArrayList<Coordinate> refine(int[] abstractPath, int startTile, int goalTile) {
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        path.add(grid.getCoordinate(startTile));
+        int refinedClusters = 0;
+        for (int step = 1; step < abstractPath.length && refinedClusters < REFINED_CLUSTERS; step++) {
+            final int from = getNodeTile(abstractPath[step - 1], startTile, goalTile);
+            final int to = getNodeTile(abstractPath[step], startTile, goalTile);
+            if (getCluster(from) != getCluster(to)) {
+                path.add(grid.getCoordinate(to));
+                continue;
+            } else if (from == to) {
+                continue;
+            }
+
+            // Walk back from 'to' along the cheapest path within the cluster, then add the tiles in order.
+            searchCluster(from, true);
+            final int first = path.size();
+            for (int tile = to; tile != from; tile = clusterParents[getClusterPosition(tile)]) {
+                path.add(first, grid.getCoordinate(tile));
+            }
+            refinedClusters++;
+        }
+        return path;
+    }
+
+    private int getNodeTile(int node, int startTile, int goalTile) {
+        if (node < nodeTiles.length) {
+            return nodeTiles[node];
+        }
+        return node == nodeTiles.length ? startTile : goalTile;
+    }
+
+    /**
+     * Picks the costs of the nodes of a cluster out of the last cluster search.
+     * @param cluster is the index of the cluster.
+     * @return the cost of each node of the cluster, in the cluster's order.
+     */
+    private float[] getNodeCosts(int cluster) {
+        final int[] nodes = clusterNodes[cluster];
+        final float[] costs = new float[nodes.length];
+        for (int other = 0; other < nodes.length; other++) {
+            costs[other] = clusterCosts[getClusterPosition(nodeTiles[nodes[other]])];
+        }
+        return costs;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from a tile without leaving its cluster, filling in 'clusterCosts' and, going
+     * forwards, 'clusterParents'.
+     * @param origin is the tile to search from.
+     * @param forwards is whether to search forwards from the origin, or backwards from it as a goal.
+     */
+    private void searchCluster(int origin, boolean forwards) {
+        final int cluster = getCluster(origin);
+        Arrays.fill(clusterCosts, Float.POSITIVE_INFINITY);
+        open.clear();
+        clusterCosts[getClusterPosition(origin)] = 0;
+        clusterParents[getClusterPosition(origin)] = -1;
+        open.push(0, origin);
+        while (!open.isEmpty()) {
+            final float cost = open.peekKey();
+            final int tile = open.pop();
+            if (cost > clusterCosts[getClusterPosition(tile)]) {
+                // A cheaper way to this tile has already been expanded.
+                continue;
+            }
+
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                final int next = grid.getNeighbor(tile, direction);
+                if (next < 0 || getCluster(next) != cluster || entryCosts[next] == Float.POSITIVE_INFINITY) {
+                    continue;
+                }
+                // Driving onto a tile costs that tile's entry cost: 'next' going forwards, and 'tile' going backwards.
+                final float nextCost = cost + entryCosts[forwards ? next : tile];
+                if (nextCost < clusterCosts[getClusterPosition(next)]) {
+                    clusterCosts[getClusterPosition(next)] = nextCost;
+                    clusterParents[getClusterPosition(next)] = tile;
+                    open.push(nextCost, next);
+                }
+            }
+        }
+    }
+
+    private int getCluster(int tile) {
+        return (tile / grid.getWidth() / CLUSTER_SIZE) * clustersWide + tile % grid.getWidth() / CLUSTER_SIZE;
+    }
+
+    private int getClusterPosition(int tile) {
+        return (tile / grid.getWidth() % CLUSTER_SIZE) * CLUSTER_SIZE + tile % grid.getWidth() % CLUSTER_SIZE;
+    }
+
+    private float getHeuristic(int tile, int goalTile) {
+        return TurnAwarePlanner.MOVE_COST * (Math.abs(grid.getX(tile) - grid.getX(goalTile))
+                + Math.abs(grid.getY(tile) - grid.getY(goalTile)));
+    }
+}
@@ -0,0 +1,265 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * A shortest path planner that uses Jump Point Search on the 4-connected grid. Across open road, where every tile
+ * costs the same to drive onto, there are many equally short paths, and A* expands most of the tiles between them.
+ * JPS only considers one canonical path: it jumps straight along a row until something forces a turn (a wall ending
+ * beside it), and along a column only until a jump along a row from it finds something. Only the tiles jumps stop at
+ * are put on the open list.
+ *
+ * The jumps only hold where costs are uniform, so tiles that cost more to drive onto (lava) are treated as the edge of
+ * the open area: a jump stops on them, and beside them, and the tiles there are expanded in every direction. Costs are
+ * the same as TurnAwarePlanner's, without the turns, so paths cost the same as A*'s would.
+ */
+public class JumpPointSearch {
+
+    private final GridMap grid = new GridMap();
+    private final MinHeap open = new MinHeap();
+    private final LandmarkHeuristic landmarks = new LandmarkHeuristic();
+    // The cost of driving onto each tile, or infinity if it can't be driven on.
+    private float[] entryCosts = new float[0];
+    private int costsVersion = -1;
+    private float[] costs = new float[0];
+    private int[] parents = new int[0];
+    private int goalTile;
+    // The number of jump points expanded by the last search.
+    private int expansions = 0;
+
+    /**
+     * Given a map, start, and goal, returns a list of coordinates that go from start to goal.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param goal is the target coordinate.
+     * @return a sequential list of coordinates that gets from start to goal, or null if there's no path.
+     */
+    public ArrayList<Coordinate> getShortestPath(HashMap<Coordinate, MapTile> map, Coordinate start,
+            Coordinate goal) {
+        grid.refresh(map);
+        landmarks.update(grid);
+        if (costsVersion != grid.getVersion()) {
+            updateEntryCosts();
+        }
+
+        final int startTile = grid.getIndex(start);
+        goalTile = grid.getIndex(goal);
+        expansions = 0;
+        if (startTile < 0 || goalTile < 0 || entryCosts[goalTile] == Float.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        open.clear();
+        costs[startTile] = 0;
+        parents[startTile] = -1;
+        open.push(getHeuristic(startTile), startTile);
+        while (!open.isEmpty()) {
+            final float priority = open.peekKey();
+            final int tile = open.pop();
+            if (tile == goalTile) {
+                return reconstructPath(tile);
+            }
+            if (priority > costs[tile] + getHeuristic(tile)) {
+                // A cheaper way to this tile has already been expanded.
+                continue;
+            }
+            expansions++;
+
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                if (!isSuccessorDirection(tile, direction)) {
+                    continue;
+                }
+                final int jumpPoint = jump(tile, direction);
+                if (jumpPoint < 0) {
+                    continue;
+                }
+                // Every tile jumped over costs MOVE_COST; the one landed on may not.
+                final int distance = Math.abs(grid.getX(jumpPoint) - grid.getX(tile))
+                        + Math.abs(grid.getY(jumpPoint) - grid.getY(tile));
+                final float cost = costs[tile] + (distance - 1) * TurnAwarePlanner.MOVE_COST + entryCosts[jumpPoint];
+                if (cost < costs[jumpPoint]) {
+                    costs[jumpPoint] = cost;
+                    parents[jumpPoint] = tile;
+                    open.push(cost + getHeuristic(jumpPoint), jumpPoint);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of jump points expanded by the last search.
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * Determines whether a search should look in the given direction from a tile, given the direction it arrived in.
+     * Going along a row, only straight on, and turns forced by a wall ending beside the row. Going along a column,
+     * anything but back. Anywhere costs aren't uniform, and at the start, every direction.
+     */
+    private boolean isSuccessorDirection(int tile, int direction) {
+        final int parent = parents[tile];
+        if (parent < 0 || !isUniformArea(tile)) {
+            return true;
+        }
+        final int arrival = getDirection(parent, tile);
+        if (direction == GridMap.getOpposite(arrival)) {
+            return false;
+        }
+        if (!isHorizontal(arrival) || direction == arrival) {
+            return true;
+        }
+        return isForced(tile, arrival, direction);
+    }
+
+    /**
+     * Jumps from a tile in a direction until reaching a tile the search has to stop at.
+     * @param from is the tile to jump from.
+     * @param direction is the direction to jump in.
+     * @return the tile jumped to, or -1 if the jump ran into a wall without finding anything.
+     */
+    private int jump(int from, int direction) {
+        int tile = grid.getNeighbor(from, direction);
+        while (tile >= 0 && entryCosts[tile] != Float.POSITIVE_INFINITY) {
+            if (tile == goalTile || !isUniformArea(tile)) {
+                return tile;
+            }
+            if (isHorizontal(direction)) {
+                // Stop where a wall beside the row ends, since the way round it may be quickest from here.
+                if (isForced(tile, direction, getTurn(direction, true))
+                        || isForced(tile, direction, getTurn(direction, false))) {
+                    return tile;
+                }
+            } else if (jump(tile, getTurn(direction, true)) >= 0 || jump(tile, getTurn(direction, false)) >= 0) {
+                // Something can be found along this row.
+                return tile;
+            }
+            tile = grid.getNeighbor(tile, direction);
+        }
+        return -1;
+    }
+
+    /**
+     * Determines whether a tile reached going along a row has a forced neighbour to one side: the side is open, but
+     * the tile behind it isn't, so no shorter canonical path could have got there.
+     */
+    private boolean isForced(int tile, int arrival, int side) {
+        final int neighbour = grid.getNeighbor(tile, side);
+        final int behind = grid.getNeighbor(tile, GridMap.getOpposite(arrival));
+        final int behindNeighbour = behind < 0 ? -1 : grid.getNeighbor(behind, side);
+        return isOpen(neighbour) && !isOpen(behindNeighbour);
+    }
+
+    /**
+     * Determines whether a tile and its neighbours all cost the same to drive onto, so that jumps can pass over it.
+     */
+    private boolean isUniformArea(int tile) {
+        if (entryCosts[tile] != TurnAwarePlanner.MOVE_COST) {
+            return false;
+        }
+        for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+            final int neighbour = grid.getNeighbor(tile, direction);
+            if (neighbour >= 0 && entryCosts[neighbour] != TurnAwarePlanner.MOVE_COST
+                    && entryCosts[neighbour] != Float.POSITIVE_INFINITY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a tile is open road for the purposes of jumping: on the grid, and costs MOVE_COST.
+     */
+    private boolean isOpen(int tile) {
+        return tile >= 0 && entryCosts[tile] == TurnAwarePlanner.MOVE_COST;
+    }
+
+    /**
+     * Recomputes the cost of driving onto each tile, and resizes the search arrays if the map has changed size.
+     */
+    private void updateEntryCosts() {
+        if (entryCosts.length != grid.size()) {
+            entryCosts = new float[grid.size()];
+            costs = new float[grid.size()];
+            parents = new int[grid.size()];
+        }
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (!grid.isTraversable(tile)) {
+                entryCosts[tile] = Float.POSITIVE_INFINITY;
+            } else if (Utilities.isLava(grid.getTile(tile))) {
+                entryCosts[tile] = TurnAwarePlanner.LAVA_COST;
+            } else {
+                entryCosts[tile] = TurnAwarePlanner.MOVE_COST;
+            }
+        }
+        costsVersion = grid.getVersion();
+    }
+
+    /**
+     * Walks back from the goal through the jump points, filling in the straight runs between them.
+     */
+    private ArrayList<Coordinate> reconstructPath(int end) {
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        int tile = end;
+        while (parents[tile] >= 0) {
+            final int direction = getDirection(tile, parents[tile]);
+            for (int step = tile; step != parents[tile]; step = grid.getNeighbor(step, direction)) {
+                path.add(grid.getCoordinate(step));
+            }
+            tile = parents[tile];
+        }
+        path.add(grid.getCoordinate(tile));
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns the direction of a straight line from one tile to another.
+     */
+    private int getDirection(int from, int to) {
+        final int dx = Integer.signum(grid.getX(to) - grid.getX(from));
+        final int dy = Integer.signum(grid.getY(to) - grid.getY(from));
+        for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+            if (GridMap.getDX(direction) == dx && GridMap.getDY(direction) == dy) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the direction at right angles to the given one, to one side or the other.
+     */
+    private static int getTurn(int direction, boolean left) {
+        for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+            // Rotating (dx, dy) a quarter turn left gives (-dy, dx).
+            final int sign = left ? 1 : -1;
+            if (GridMap.getDX(turn) == -sign * GridMap.getDY(direction)
+                    && GridMap.getDY(turn) == sign * GridMap.getDX(direction)) {
+                return turn;
+            }
+        }
+        return direction;
+    }
+
+    private static boolean isHorizontal(int direction) {
+        return GridMap.getDX(direction) != 0;
+    }
+
+    private float getHeuristic(int tile) {
+        return TurnAwarePlanner.MOVE_COST * landmarks.getLowerBound(grid, tile, goalTile);
+    }
+}
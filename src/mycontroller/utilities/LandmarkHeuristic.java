@@ -0,0 +1,121 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import java.util.Arrays;
+
+/**
+ * A lower bound on the number of tiles between two tiles, from landmarks (ALT). The walls are known from the start and
+ * never change, so the number of tiles from a few landmarks to every tile can be worked out once. By the triangle
+ * inequality, two tiles are at least as far apart as the difference between their distances to any landmark, which
+ * is much closer to the truth than the Manhattan distance on maps that wind around walls.
+ *
+ * Distances count tiles, so they're a lower bound on the cost of a path under any cost model where each tile costs at
+ * least as much as the cheapest one to drive onto. Traps only ever make tiles dearer, so seeing one never makes the
+ * bound too high. Landmarks are picked to be far apart: each is the tile furthest from the ones already picked.
+ */
+public class LandmarkHeuristic {
+
+    private static final int NUM_LANDMARKS = 8;
+    private static final int UNREACHABLE = -1;
+
+    // The number of tiles from each landmark to every tile, or UNREACHABLE.
+    private int[][] distances = new int[0][];
+    private int width = 0;
+    private int height = 0;
+
+    /**
+     * Works out the landmarks for the grid's walls, unless they've already been worked out for a grid this size.
+     * @param grid is the grid to plan on.
+     */
+    public void update(GridMap grid) {
+        if (grid.getWidth() == width && grid.getHeight() == height) {
+            return;
+        }
+        width = grid.getWidth();
+        height = grid.getHeight();
+
+        // The distance from the nearest landmark to each tile, so the next landmark can be the one furthest away.
+        final int[] nearest = new int[grid.size()];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        final int[] queue = new int[grid.size()];
+        int landmark = -1;
+        for (int tile = 0; tile < grid.size() && landmark < 0; tile++) {
+            if (grid.isTraversable(tile)) {
+                landmark = getFurthestTile(grid, search(grid, tile, queue));
+            }
+        }
+
+        distances = new int[landmark < 0 ? 0 : NUM_LANDMARKS][];
+        for (int number = 0; number < distances.length; number++) {
+            distances[number] = search(grid, landmark, queue);
+            int furthest = landmark;
+            for (int tile = 0; tile < grid.size(); tile++) {
+                if (distances[number][tile] != UNREACHABLE) {
+                    nearest[tile] = Math.min(nearest[tile], distances[number][tile]);
+                    if (nearest[tile] > nearest[furthest]) {
+                        furthest = tile;
+                    }
+                }
+            }
+            landmark = furthest;
+        }
+    }
+
+    /**
+     * Returns a lower bound on the number of tiles on any path between two tiles.
+     * @param grid is the grid the tiles are on.
+     * @param from is the index of one tile.
+     * @param to is the index of the other tile.
+     * @return the lower bound, which is at least the Manhattan distance.
+     */
+    public int getLowerBound(GridMap grid, int from, int to) {
+        int bound = Math.abs(grid.getX(from) - grid.getX(to)) + Math.abs(grid.getY(from) - grid.getY(to));
+        for (int[] landmarkDistances : distances) {
+            // A tile the car has been nudged onto (e.g. a wall) isn't reachable, but it's still next to one that is.
+            if (landmarkDistances[from] != UNREACHABLE && landmarkDistances[to] != UNREACHABLE) {
+                bound = Math.max(bound, Math.abs(landmarkDistances[from] - landmarkDistances[to]));
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Runs a breadth first search over the drivable tiles from a tile.
+     * @param grid is the grid to search.
+     * @param origin is the tile to search from.
+     * @param queue is space for the search queue, as big as the grid.
+     * @return the number of tiles from the origin to every tile, or UNREACHABLE.
+     */
+    private static int[] search(GridMap grid, int origin, int[] queue) {
+        final int[] distances = new int[grid.size()];
+        Arrays.fill(distances, UNREACHABLE);
+        distances[origin] = 0;
+        queue[0] = origin;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            final int tile = queue[head++];
+            for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+                final int next = grid.getNeighbor(tile, direction);
+                if (next >= 0 && distances[next] == UNREACHABLE && grid.isTraversable(next)) {
+                    distances[next] = distances[tile] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static int getFurthestTile(GridMap grid, int[] distances) {
+        int furthest = 0;
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (distances[tile] > distances[furthest]) {
+                furthest = tile;
+            }
+        }
+        return furthest;
+    }
+}
@@ -0,0 +1,434 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.HealthTrap;
+import tiles.LavaTrap;
+import tiles.MapTile;
+import tiles.MudTrap;
+import tiles.TrapTile;
+import utilities.Coordinate;
+import world.CarPhysics;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A planner over (tile, heading, speed) states whose edges are motion primitives the car can actually drive: one tile
+ * forward, ending at any speed the car can accelerate or brake to over that tile, or a 90 degree turn, which is only
+ * allowed slow enough to stay inside a one tile wide road. The primitives are worked out once, from the same forces
+ * CarPhysics uses, and they respect traps: there's no turning on grass, and no accelerating in mud, so a car that
+ * would come to a stop in mud has no way out of it. Edges cost the time they take, plus the time it would take to
+ * heal back any health lost on lava, so the cheapest plan is the quickest one.
+ *
+ * A search only keeps state for the rectangle of the map it's allowed to use, and a cost only counts if it was set by
+ * the current search, so nothing has to be cleared between searches. A short plan on a large map costs no more than
+ * the same plan on a small one.
+ */
+public class LatticePlanner {
+
+    // Step used to integrate the car's motion over a tile; the simulation's time step.
+    private static final float INTEGRATION_STEP = 1 / 45f;
+    // Seconds it takes to turn 90 degrees, holding the steering at its full rate.
+    private static final float TURN_TIME = 90 / CarPhysics.ROTATING_FACTOR;
+    // What a point of health is worth: the time it takes to heal it back on a health trap, weighted up since getting
+    // to a health trap takes time too, and running out ends the game. Not so much that a run up to cross lava faster
+    // is worth driving a loop for, since the car can't follow loops that tight.
+    private static final float SECONDS_PER_HEALTH = 1f / HealthTrap.HealthDelta;
+    private static final float HEALTH_WEIGHT = 5f;
+    // Slack allowed when matching a reachable speed to a speed level.
+    private static final float SPEED_TOLERANCE = 0.01f;
+    // Seconds it takes to drive one tile from a stop to a stop: accelerating, then braking, as hard as possible.
+    private static final float STOP_TO_STOP_TIME;
+
+    // Surfaces that move the car differently.
+    private static final int NORMAL = 0;
+    private static final int MUD = 1;
+    private static final int NUM_SURFACES = 2;
+
+    /**
+     * The speeds the car is planned to be at as it crosses tile centers. Stopped, the fastest the car can turn a
+     * corner at, then speeds spaced by what a tile of full throttle adds, up to the top speed.
+     */
+    public static final float[] SPEEDS;
+    private static final int NUM_SPEEDS;
+    // The highest speed level that the car can turn at.
+    private static final int MAX_TURNING_SPEED;
+
+    // For each (speed level, surface the car leaves, surface it enters), the slowest and fastest speed the car can
+    // be at one tile on.
+    private static final float[][][] MIN_NEXT_SPEED;
+    private static final float[][][] MAX_NEXT_SPEED;
+
+    static {
+        final float speedSquaredPerTile = 2 * SpeedProfile.ACCELERATION;
+        final int numSteps = (int) Math.ceil(CarPhysics.MAX_SPEED * CarPhysics.MAX_SPEED / speedSquaredPerTile);
+        NUM_SPEEDS = numSteps + 2;
+        SPEEDS = new float[NUM_SPEEDS];
+        SPEEDS[1] = SpeedProfile.CORNER_SPEED;
+        for (int i = 1; i <= numSteps; i++) {
+            SPEEDS[i + 1] = Math.min(CarPhysics.MAX_SPEED, (float) Math.sqrt(i * speedSquaredPerTile));
+        }
+        MAX_TURNING_SPEED = 1;
+
+        final float peakSpeed = (float) Math.sqrt(2 / (1 / SpeedProfile.ACCELERATION + 1 / SpeedProfile.DECELERATION));
+        STOP_TO_STOP_TIME = peakSpeed / SpeedProfile.ACCELERATION + peakSpeed / SpeedProfile.DECELERATION;
+
+        MIN_NEXT_SPEED = new float[NUM_SPEEDS][NUM_SURFACES][NUM_SURFACES];
+        MAX_NEXT_SPEED = new float[NUM_SPEEDS][NUM_SURFACES][NUM_SURFACES];
+        for (int speed = 0; speed < NUM_SPEEDS; speed++) {
+            for (int from = 0; from < NUM_SURFACES; from++) {
+                for (int to = 0; to < NUM_SURFACES; to++) {
+                    MIN_NEXT_SPEED[speed][from][to] = driveOneTile(SPEEDS[speed], from, to, false);
+                    MAX_NEXT_SPEED[speed][from][to] = driveOneTile(SPEEDS[speed], from, to, true);
+                }
+            }
+        }
+    }
+
+    private final GridMap grid = new GridMap();
+    private final MinHeap open = new MinHeap();
+    private final LandmarkHeuristic landmarks = new LandmarkHeuristic();
+    private float[] costs = new float[0];
+    private int[] parents = new int[0];
+    // The search that set each cost. Costs from earlier searches are stale.
+    private int[] costSearches = new int[0];
+    private int search = 0;
+    // The number of states expanded by the last search.
+    private int expansions = 0;
+
+    // The search being run: where it's going, how fast it may go, and whether it has to stop there.
+    private int goalTile;
+    private float maxSpeed;
+    private boolean stopAtGoal;
+    // The rectangle of the grid the search may use, by column and row.
+    private int left;
+    private int bottom;
+    private int columns;
+    private int rows;
+
+    /**
+     * A plan: the tiles to drive through and the speed to be at on each of them.
+     */
+    public static class Plan {
+        public final ArrayList<Coordinate> path;
+        public final float[] speeds;
+
+        Plan(ArrayList<Coordinate> path, float[] speeds) {
+            this.path = path;
+            this.speeds = speeds;
+        }
+    }
+
+    /**
+     * Finds the quickest plan from the car's current state to the goal.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param speed is the car's current speed.
+     * @param maxSpeed is the fastest the plan may have the car go.
+     * @param goal is the target coordinate.
+     * @param stopAtGoal is whether the car has to come to a stop on the goal, rather than just drive over it.
+     * @return the quickest plan, or null if the goal can't be reached.
+     */
+    public Plan getPlan(HashMap<Coordinate, MapTile> map, Coordinate start, Direction heading, float speed,
+            float maxSpeed, Coordinate goal, boolean stopAtGoal) {
+        return getPlan(map, start, heading, speed, maxSpeed, goal, stopAtGoal, null, 0);
+    }
+
+    /**
+     * Finds the quickest plan from the car's current state to the goal that stays near a rough route there, e.g. the
+     * tiles HierarchicalPlanner has refined: within the given margin of the rectangle around the route.
+     * @param route is the route to stay near, or null to use the whole map.
+     * @param margin is the number of tiles the plan may go outside the rectangle around the route.
+     * @return the quickest plan, or null if the goal can't be reached without leaving that area.
+     * @see #getPlan(HashMap, Coordinate, Direction, float, float, Coordinate, boolean)
+     */
+    public Plan getPlan(HashMap<Coordinate, MapTile> map, Coordinate start, Direction heading, float speed,
+            float maxSpeed, Coordinate goal, boolean stopAtGoal, List<Coordinate> route, int margin) {
+        grid.refresh(map);
+        landmarks.update(grid);
+        final int startTile = grid.getIndex(start);
+        goalTile = grid.getIndex(goal);
+        this.maxSpeed = maxSpeed;
+        this.stopAtGoal = stopAtGoal;
+        expansions = 0;
+        if (startTile < 0 || goalTile < 0 || !grid.isTraversable(goalTile)) {
+            return null;
+        }
+
+        setBounds(startTile, goalTile, route, margin);
+        final int numStates = columns * rows * GridMap.NUM_DIRECTIONS * NUM_SPEEDS;
+        if (costs.length < numStates) {
+            costs = new float[numStates];
+            parents = new int[numStates];
+            costSearches = new int[numStates];
+        }
+        search++;
+
+        // Start at the car's speed, or at any slower speed it takes the time to brake down to. The car is somewhere
+        // between tile centers, so this lets it stop for a wall or a corner that's already too close to slow down for.
+        open.clear();
+        for (int speedLevel = getNearestSpeed(speed); speedLevel >= 0; speedLevel--) {
+            final int startState = getState(startTile, heading.ordinal(), speedLevel);
+            costs[startState] = Math.max(0, speed - SPEEDS[speedLevel]) / SpeedProfile.DECELERATION;
+            costSearches[startState] = search;
+            parents[startState] = -1;
+            open.push(costs[startState] + getHeuristic(startTile), startState);
+        }
+
+        while (!open.isEmpty()) {
+            final float priority = open.peekKey();
+            final int state = open.pop();
+            final int tile = getTile(state);
+            if (priority > costs[state] + getHeuristic(tile)) {
+                // A cheaper way to this state has already been expanded.
+                continue;
+            }
+            expansions++;
+
+            final int direction = getDirection(state);
+            final int speedLevel = getSpeedLevel(state);
+            if (tile == goalTile && (!stopAtGoal || speedLevel == 0)) {
+                return reconstructPlan(state);
+            }
+
+            final MapTile mapTile = grid.getTile(tile);
+            driveForward(state, tile, direction, speedLevel, costs[state]);
+
+            // Turn 90 degrees, if we're slow enough and the tile lets us. A stopped car turns on the spot; a moving
+            // one turns into the next tile, since there isn't room to turn again before it gets there.
+            if (speedLevel <= MAX_TURNING_SPEED && canTurn(mapTile)) {
+                final float cost = costs[state] + TURN_TIME
+                        + (Utilities.isLava(mapTile) ? getLavaCost(TURN_TIME) : 0);
+                for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+                    if (GridMap.getDX(direction) * GridMap.getDX(turn)
+                            + GridMap.getDY(direction) * GridMap.getDY(turn) != 0) {
+                        continue;
+                    }
+                    if (speedLevel == 0) {
+                        relax(getState(tile, turn, speedLevel), state, cost, tile);
+                    } else {
+                        driveForward(state, tile, turn, speedLevel, cost);
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Drives one tile forward from a tile, ending at any speed level the car can reach on the next one.
+     * @param parent is the state the move is made from.
+     * @param cost is the cost of the plan so far.
+     */
+    private void driveForward(int parent, int tile, int direction, int speedLevel, float cost) {
+        final int next = grid.getNeighbor(tile, direction);
+        if (next < 0 || !grid.isTraversable(next) || !isInBounds(next)) {
+            return;
+        }
+
+        final int from = getSurface(grid.getTile(tile));
+        final int to = getSurface(grid.getTile(next));
+        // Lava on a goal we only drive over isn't counted: the plan ends as soon as we're on it, and what comes after
+        // is up to the next plan. Counting it would have the car take a run up just to get onto the goal faster.
+        final int lavaTiles = (Utilities.isLava(grid.getTile(tile)) ? 1 : 0)
+                + (Utilities.isLava(grid.getTile(next)) && (stopAtGoal || next != goalTile) ? 1 : 0);
+        for (int nextSpeed = 0; nextSpeed < NUM_SPEEDS; nextSpeed++) {
+            if (SPEEDS[nextSpeed] < MIN_NEXT_SPEED[speedLevel][from][to] - SPEED_TOLERANCE
+                    || SPEEDS[nextSpeed] > MAX_NEXT_SPEED[speedLevel][from][to] + SPEED_TOLERANCE
+                    || SPEEDS[nextSpeed] > maxSpeed + SPEED_TOLERANCE) {
+                continue;
+            }
+            final float time;
+            if (SPEEDS[speedLevel] + SPEEDS[nextSpeed] > 0) {
+                // Assume a constant acceleration over the tile, half of it spent on each of the two tiles.
+                time = 2 / (SPEEDS[speedLevel] + SPEEDS[nextSpeed]);
+            } else if (from != MUD && to != MUD) {
+                time = STOP_TO_STOP_TIME;
+            } else {
+                // We'd be stuck in the mud.
+                continue;
+            }
+            relax(getState(next, direction, nextSpeed), parent, cost + time + getLavaCost(time / 2 * lavaTiles),
+                    next);
+        }
+    }
+
+    private void relax(int state, int parent, float cost, int tile) {
+        if (costSearches[state] != search || cost < costs[state]) {
+            costs[state] = cost;
+            costSearches[state] = search;
+            parents[state] = parent;
+            open.push(cost + getHeuristic(tile), state);
+        }
+    }
+
+    /**
+     * Sets the rectangle the search may use: around the route, or the start and goal if there's no route, grown by
+     * the margin. Without a route, the whole grid.
+     */
+    private void setBounds(int startTile, int goalTile, List<Coordinate> route, int margin) {
+        if (route == null) {
+            left = 0;
+            bottom = 0;
+            columns = grid.getWidth();
+            rows = grid.getHeight();
+            return;
+        }
+
+        int minColumn = Math.min(getColumn(startTile), getColumn(goalTile));
+        int maxColumn = Math.max(getColumn(startTile), getColumn(goalTile));
+        int minRow = Math.min(getRow(startTile), getRow(goalTile));
+        int maxRow = Math.max(getRow(startTile), getRow(goalTile));
+        for (Coordinate coordinate : route) {
+            final int tile = grid.getIndex(coordinate);
+            if (tile >= 0) {
+                minColumn = Math.min(minColumn, getColumn(tile));
+                maxColumn = Math.max(maxColumn, getColumn(tile));
+                minRow = Math.min(minRow, getRow(tile));
+                maxRow = Math.max(maxRow, getRow(tile));
+            }
+        }
+        left = Math.max(0, minColumn - margin);
+        bottom = Math.max(0, minRow - margin);
+        columns = Math.min(grid.getWidth() - 1, maxColumn + margin) - left + 1;
+        rows = Math.min(grid.getHeight() - 1, maxRow + margin) - bottom + 1;
+    }
+
+    private boolean isInBounds(int tile) {
+        final int column = getColumn(tile) - left;
+        final int row = getRow(tile) - bottom;
+        return column >= 0 && row >= 0 && column < columns && row < rows;
+    }
+
+    private int getColumn(int tile) {
+        return tile % grid.getWidth();
+    }
+
+    private int getRow(int tile) {
+        return tile / grid.getWidth();
+    }
+
+    /**
+     * Follows the parents back from the given state, listing each tile once, at the slowest speed it's crossed at.
+     */
+    private Plan reconstructPlan(int end) {
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        final ArrayList<Float> speeds = new ArrayList<>();
+        int lastTile = -1;
+        for (int state = end; state >= 0; state = parents[state]) {
+            final float speed = SPEEDS[getSpeedLevel(state)];
+            if (getTile(state) != lastTile) {
+                lastTile = getTile(state);
+                path.add(grid.getCoordinate(lastTile));
+                speeds.add(speed);
+            } else if (speed < speeds.get(speeds.size() - 1)) {
+                speeds.set(speeds.size() - 1, speed);
+            }
+        }
+        Collections.reverse(path);
+        Collections.reverse(speeds);
+
+        final float[] speedArray = new float[speeds.size()];
+        for (int i = 0; i < speedArray.length; i++) {
+            speedArray[i] = speeds.get(i);
+        }
+        return new Plan(path, speedArray);
+    }
+
+    /**
+     * @return the number of states expanded by the last search.
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * The quickest the car could possibly get from one tile to the other: at top speed, over the fewest tiles the
+     * landmarks allow.
+     */
+    private float getHeuristic(int tile) {
+        return landmarks.getLowerBound(grid, tile, goalTile) / CarPhysics.MAX_SPEED;
+    }
+
+    private static float getLavaCost(float time) {
+        return time * LavaTrap.HealthDelta * SECONDS_PER_HEALTH * HEALTH_WEIGHT;
+    }
+
+    private static int getSurface(MapTile tile) {
+        return tile != null && tile.isType(MapTile.Type.TRAP) && !((TrapTile) tile).canAccelerate() ? MUD : NORMAL;
+    }
+
+    private static boolean canTurn(MapTile tile) {
+        return tile == null || !tile.isType(MapTile.Type.TRAP) || ((TrapTile) tile).canTurn();
+    }
+
+    /**
+     * Returns the speed level closest to the given speed.
+     */
+    private static int getNearestSpeed(float speed) {
+        int nearest = 0;
+        for (int level = 1; level < NUM_SPEEDS; level++) {
+            if (Math.abs(SPEEDS[level] - speed) < Math.abs(SPEEDS[nearest] - speed)) {
+                nearest = level;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Plays the car driving straight from one tile center to the next, with the same forces CarPhysics applies.
+     * @param speed is the speed the car starts at.
+     * @param from is the surface of the tile the car starts on.
+     * @param to is the surface of the tile the car ends on.
+     * @param accelerate is whether to hold the accelerator (if the surface allows it) rather than the brake.
+     * @return the speed the car is at when it reaches the next tile center, or 0 if it stops before then.
+     */
+    private static float driveOneTile(float speed, int from, int to, boolean accelerate) {
+        float distance = 0;
+        while (distance < 1) {
+            final int surface = distance < 0.5f ? from : to;
+            if (surface == MUD) {
+                speed -= speed * MudTrap.SLOWDOWN_FACTOR * INTEGRATION_STEP;
+            }
+            if (accelerate && surface != MUD) {
+                speed += SpeedProfile.ACCELERATION * INTEGRATION_STEP;
+            } else {
+                speed -= (accelerate ? CarPhysics.FRICTION_FORCE : CarPhysics.BRAKING_FORCE) * INTEGRATION_STEP;
+            }
+            speed = Math.min(speed, CarPhysics.MAX_SPEED);
+            if (speed <= 0) {
+                return 0;
+            }
+            distance += speed * INTEGRATION_STEP;
+        }
+        return speed;
+    }
+
+    // States are numbered by tile within the search's rectangle, then heading, then speed level.
+
+    private int getState(int tile, int direction, int speedLevel) {
+        final int boundsTile = (getRow(tile) - bottom) * columns + getColumn(tile) - left;
+        return (boundsTile * GridMap.NUM_DIRECTIONS + direction) * NUM_SPEEDS + speedLevel;
+    }
+
+    private int getTile(int state) {
+        final int boundsTile = state / NUM_SPEEDS / GridMap.NUM_DIRECTIONS;
+        return (bottom + boundsTile / columns) * grid.getWidth() + left + boundsTile % columns;
+    }
+
+    private static int getDirection(int state) {
+        return state / NUM_SPEEDS % GridMap.NUM_DIRECTIONS;
+    }
+
+    private static int getSpeedLevel(int state) {
+        return state % NUM_SPEEDS;
+    }
+}
@@ -0,0 +1,113 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int values ordered by float keys, backed by arrays so that searches don't allocate a node per
+ * push. There's no decrease-key: push the value again with its new key and skip stale entries when they're popped.
+ */
+public class MinHeap {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private float[] keys = new float[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the values in the heap, in no particular order, into the given array.
+     * @param into is the array to copy into, which must have room for every value.
+     */
+    public void copyValues(int[] into) {
+        System.arraycopy(values, 0, into, 0, size);
+    }
+
+    /**
+     * Adds a value to the heap.
+     * @param key is the key the value is ordered by.
+     * @param value is the value.
+     */
+    public void push(float key, int value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        // Sift up.
+        int i = size++;
+        while (i > 0) {
+            final int parent = (i - 1) / 2;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Returns the smallest key in the heap, without removing it.
+     * @return the smallest key.
+     */
+    public float peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Returns the value with the smallest key in the heap, without removing it.
+     * @return the value with the smallest key.
+     */
+    public int peek() {
+        return values[0];
+    }
+
+    /**
+     * Removes the value with the smallest key from the heap and returns it.
+     * @return the value with the smallest key.
+     */
+    public int pop() {
+        final int top = values[0];
+        final float key = keys[--size];
+        final int value = values[size];
+
+        // Sift the last entry down from the root.
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[i] = keys[child];
+            values[i] = values[child];
+            i = child;
+        }
+        keys[i] = key;
+        values[i] = value;
+        return top;
+    }
+}
@@ -0,0 +1,514 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A shortest path planner that spreads one search across several threads, for maps too big for a single search to
+ * finish quickly (hash-distributed A*, HDA*). Each tile belongs to one worker, picked by hashing its index, and each
+ * worker runs A* over its own tiles' states with its own open list. When a worker finds a way to a state another
+ * worker owns, it sends it on, in batches, through the owner's lock-free queue. Only the owner ever reads or writes a
+ * state's cost and parent, so the searches share nothing else but the best path cost found so far and the lowest
+ * priority on each open list.
+ *
+ * A worker can expand a state before the cheapest way to it has arrived, so states may be expanded more than once.
+ * To keep that rare, a worker only expands states whose priority is within EXPANSION_WINDOW of the lowest on any open
+ * list, and otherwise sends what it has and sleeps until the others catch up. Workers with nothing to do sleep too,
+ * until a batch arrives.
+ * The search only ends once every worker has nothing left on its open list that could beat the best path, and no
+ * message is still on its way, so the path is as cheap as TurnAwarePlanner's: states and costs are the same, (tile,
+ * heading) pairs with turning on the spot an edge of its own, and the heuristic is the landmark bound. With one thread
+ * this is plain A*.
+ *
+ * AStarController uses it when Path_Query is PARALLEL. It isn't the default, since it has only been timed on one core,
+ * where it can't beat a single search.
+ */
+public class ParallelPlanner {
+
+    // Number of messages to a worker to collect before sending them, and number of states to expand between sends.
+    private static final int BATCH_SIZE = 64;
+    private static final int EXPANSIONS_PER_SEND = 16;
+    // How far past the lowest priority on any open list a worker may expand, in units of cost.
+    private static final float EXPANSION_WINDOW = TurnAwarePlanner.TURN_COST;
+
+    private final GridMap grid = new GridMap();
+    private final LandmarkHeuristic landmarks = new LandmarkHeuristic();
+    private final int numThreads;
+    private final ExecutorService threads;
+    private final Worker[] workers;
+    // The cost of driving onto each tile, or infinity if it can't be driven on.
+    private float[] entryCosts = new float[0];
+    private int costsVersion = -1;
+    // The cost from the start to each state, and the state before it on the way. Only the state's owner uses these
+    // while searching.
+    private float[] costs = new float[0];
+    private int[] parents = new int[0];
+    private int goalTile;
+
+    // The cheapest path found so far ends at this state, at this cost.
+    private volatile float bestCost;
+    private int bestState;
+    // Termination detection. Batches sent but not yet taken in, workers with nothing to do, and the number of times a
+    // worker has gone from having nothing to do to having something.
+    private final AtomicLong batchesInFlight = new AtomicLong();
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private final AtomicLong wakeUps = new AtomicLong();
+    private volatile boolean searchDone;
+
+    /**
+     * @param numThreads is the number of threads to search with.
+     */
+    public ParallelPlanner(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A search needs at least one thread.");
+        }
+        this.numThreads = numThreads;
+        // Every worker waits on the others for messages, so each needs a thread of its own.
+        this.threads = Executors.newFixedThreadPool(numThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "parallel-planner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    /**
+     * Given a map, start, heading and goal, returns a list of coordinates that go from start to goal.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param goal is the target coordinate.
+     * @return a sequential list of coordinates that gets from start to goal, or null if there's no path.
+     */
+    public ArrayList<Coordinate> getShortestPath(HashMap<Coordinate, MapTile> map, Coordinate start,
+            Direction heading, Coordinate goal) {
+        grid.refresh(map);
+        landmarks.update(grid);
+        if (costsVersion != grid.getVersion()) {
+            updateEntryCosts();
+        }
+
+        final int startTile = grid.getIndex(start);
+        goalTile = grid.getIndex(goal);
+        if (startTile < 0 || goalTile < 0 || entryCosts[goalTile] == Float.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        bestCost = Float.POSITIVE_INFINITY;
+        bestState = -1;
+        batchesInFlight.set(0);
+        idleWorkers.set(0);
+        wakeUps.set(0);
+        searchDone = false;
+        for (Worker worker : workers) {
+            worker.reset();
+        }
+        final int startState = getState(startTile, heading.ordinal());
+        workers[getOwner(startTile)].receive(startState, 0, -1);
+
+        // Submitting the workers publishes everything above to their threads, and waiting for them publishes what
+        // they found back to this one.
+        final ArrayList<Future<?>> running = new ArrayList<>();
+        for (Worker worker : workers) {
+            running.add(threads.submit(worker));
+        }
+        try {
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            searchDone = true;
+            throw new IllegalStateException("The parallel search failed.", e);
+        }
+        return bestState < 0 ? null : reconstructPath();
+    }
+
+    /**
+     * @return the number of states expanded by the last search, by every worker together.
+     */
+    public int getExpansions() {
+        int expansions = 0;
+        for (Worker worker : workers) {
+            expansions += worker.expansions;
+        }
+        return expansions;
+    }
+
+    /**
+     * Keeps the path ending at the given state if it's the cheapest so far.
+     */
+    private synchronized void offerPath(int state, float cost) {
+        if (cost < bestCost) {
+            bestCost = cost;
+            bestState = state;
+        }
+    }
+
+    /**
+     * @return the lowest priority on any worker's open list, as they last said.
+     */
+    private float getLowestPriority() {
+        float lowest = Float.POSITIVE_INFINITY;
+        for (Worker worker : workers) {
+            lowest = Math.min(lowest, worker.lowestPriority);
+        }
+        return lowest;
+    }
+
+    /**
+     * Stops every worker, waking any that are asleep.
+     */
+    private void endSearch() {
+        searchDone = true;
+        for (Worker worker : workers) {
+            worker.wake();
+        }
+    }
+
+    /**
+     * Wakes the workers sleeping until the others catch up, since the lowest priority may have gone up.
+     */
+    private void wakeWaitingWorkers() {
+        for (Worker worker : workers) {
+            if (worker.lowestPriority != Float.POSITIVE_INFINITY) {
+                worker.wake();
+            }
+        }
+    }
+
+    /**
+     * Determines whether the search is over: every worker has nothing to do, and no batch is on its way to any of
+     * them. A worker only gets something to do by taking in a batch, which counts as a wake up, so if the count of
+     * wake ups is the same after the checks as before, nothing changed in between.
+     */
+    private boolean isSearchOver() {
+        final long wakeUpsBefore = wakeUps.get();
+        return idleWorkers.get() == numThreads && batchesInFlight.get() == 0 && wakeUps.get() == wakeUpsBefore;
+    }
+
+    /**
+     * Returns the worker that owns a tile. Every heading of a tile has the same owner, so turns stay with it.
+     */
+    private int getOwner(int tile) {
+        return ((tile * 0x9E3779B1) >>> 1) % numThreads;
+    }
+
+    /**
+     * Recomputes the cost of driving onto each tile, and resizes the search arrays if the map has changed size.
+     */
+    private void updateEntryCosts() {
+        if (entryCosts.length != grid.size()) {
+            entryCosts = new float[grid.size()];
+            costs = new float[grid.size() * GridMap.NUM_DIRECTIONS];
+            parents = new int[grid.size() * GridMap.NUM_DIRECTIONS];
+        }
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (!grid.isTraversable(tile)) {
+                entryCosts[tile] = Float.POSITIVE_INFINITY;
+            } else if (Utilities.isLava(grid.getTile(tile))) {
+                entryCosts[tile] = TurnAwarePlanner.LAVA_COST;
+            } else {
+                entryCosts[tile] = TurnAwarePlanner.MOVE_COST;
+            }
+        }
+        costsVersion = grid.getVersion();
+    }
+
+    /**
+     * Walks back from the goal through the states, keeping one coordinate per tile.
+     */
+    private ArrayList<Coordinate> reconstructPath() {
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        int previousTile = -1;
+        for (int state = bestState; state >= 0; state = parents[state]) {
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            if (tile != previousTile) {
+                path.add(grid.getCoordinate(tile));
+                previousTile = tile;
+            }
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private float getHeuristic(int tile) {
+        return TurnAwarePlanner.MOVE_COST * landmarks.getLowerBound(grid, tile, goalTile);
+    }
+
+    private static int getState(int tile, int direction) {
+        return tile * GridMap.NUM_DIRECTIONS + direction;
+    }
+
+    /**
+     * Determines whether the car can face 'to' from 'from' with a single 90 degree turn.
+     */
+    private static boolean isTurn(int from, int to) {
+        return GridMap.getDX(from) * GridMap.getDX(to) + GridMap.getDY(from) * GridMap.getDY(to) == 0;
+    }
+
+    /**
+     * Ways to states, sent from one worker to another: each is a state, the cost to it, and the state before it.
+     */
+    private static class Batch {
+        final int[] states = new int[BATCH_SIZE];
+        final float[] costs = new float[BATCH_SIZE];
+        final int[] parents = new int[BATCH_SIZE];
+        int size = 0;
+    }
+
+    /**
+     * One thread's share of the search: A* over the states of the tiles it owns.
+     */
+    private class Worker implements Runnable {
+
+        private final int id;
+        private final MinHeap open = new MinHeap();
+        private final ConcurrentLinkedQueue<Batch> inbox = new ConcurrentLinkedQueue<>();
+        // The batch being filled for each other worker.
+        private final Batch[] outboxes = new Batch[numThreads];
+        private boolean idle;
+        private int expansions;
+        // The lowest priority on our open list, or infinity if we have nothing to do. Only we write it.
+        private volatile float lowestPriority;
+        // The thread we're running on this search, once we've started, and whether it's asleep or about to be.
+        private volatile Thread thread;
+        private volatile boolean sleeping;
+
+        Worker(int id) {
+            this.id = id;
+        }
+
+        void reset() {
+            open.clear();
+            inbox.clear();
+            Arrays.fill(outboxes, null);
+            idle = false;
+            expansions = 0;
+            lowestPriority = Float.POSITIVE_INFINITY;
+            thread = null;
+            sleeping = false;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                search();
+            } catch (RuntimeException e) {
+                // Don't leave the others asleep waiting for us.
+                endSearch();
+                throw e;
+            }
+        }
+
+        private void search() {
+            int expansionsSinceSend = 0;
+            while (!searchDone) {
+                takeInbox();
+                if (hasWork()) {
+                    lowestPriority = open.peekKey();
+                    if (isCaughtUp()) {
+                        expand(open.pop());
+                        if (++expansionsSinceSend >= EXPANSIONS_PER_SEND) {
+                            sendAll();
+                            expansionsSinceSend = 0;
+                            wakeWaitingWorkers();
+                        }
+                        continue;
+                    }
+
+                    // We're ahead of the others. Send what we have, and wait for them to catch up.
+                    sendAll();
+                    expansionsSinceSend = 0;
+                    wakeWaitingWorkers();
+                    sleep();
+                    continue;
+                }
+
+                // Nothing here can beat the best path. Send what we have, and wait for more.
+                lowestPriority = Float.POSITIVE_INFINITY;
+                sendAll();
+                expansionsSinceSend = 0;
+                if (!idle) {
+                    idle = true;
+                    idleWorkers.incrementAndGet();
+                }
+                if (isSearchOver()) {
+                    endSearch();
+                } else {
+                    wakeWaitingWorkers();
+                    sleep();
+                }
+            }
+        }
+
+        /**
+         * Determines whether the best state on our open list is close enough to the lowest priority anywhere to
+         * expand.
+         */
+        private boolean isCaughtUp() {
+            return lowestPriority <= getLowestPriority() + EXPANSION_WINDOW;
+        }
+
+        /**
+         * Sleeps until a batch arrives, the search ends, or, if we have work, the others catch up. Whoever changes
+         * any of those writes it before checking whether we're sleeping, and we say we're sleeping before checking
+         * them, so one of us always sees the other.
+         */
+        private void sleep() {
+            sleeping = true;
+            while (inbox.isEmpty() && !searchDone
+                    && (lowestPriority == Float.POSITIVE_INFINITY || !isCaughtUp())) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+
+        void wake() {
+            final Thread sleeper = thread;
+            if (sleeping && sleeper != null) {
+                LockSupport.unpark(sleeper);
+            }
+        }
+
+        /**
+         * Takes in every batch waiting in the inbox.
+         */
+        private void takeInbox() {
+            Batch batch;
+            while ((batch = inbox.poll()) != null) {
+                if (idle) {
+                    // Count the wake up before the batch stops being in flight, so the search can't look over.
+                    idle = false;
+                    wakeUps.incrementAndGet();
+                    idleWorkers.decrementAndGet();
+                }
+                for (int i = 0; i < batch.size; i++) {
+                    receive(batch.states[i], batch.costs[i], batch.parents[i]);
+                }
+                batchesInFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Determines whether the best state on the open list could lead to a path cheaper than the best so far,
+         * dropping entries for states that have been pushed again at a lower cost since.
+         */
+        private boolean hasWork() {
+            while (!open.isEmpty()) {
+                final int state = open.peek();
+                if (open.peekKey() > costs[state] + getHeuristic(state / GridMap.NUM_DIRECTIONS)) {
+                    open.pop();
+                } else {
+                    return open.peekKey() < bestCost;
+                }
+            }
+            return false;
+        }
+
+        private void expand(int state) {
+            expansions++;
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            final float cost = costs[state];
+
+            // Drive forward onto the next tile.
+            final int direction = state % GridMap.NUM_DIRECTIONS;
+            final int next = grid.getNeighbor(tile, direction);
+            if (next >= 0 && entryCosts[next] != Float.POSITIVE_INFINITY) {
+                relax(getState(next, direction), cost + entryCosts[next], state);
+            }
+
+            // Or turn on the spot.
+            for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+                if (isTurn(direction, turn)) {
+                    relax(getState(tile, turn), cost + TurnAwarePlanner.TURN_COST, state);
+                }
+            }
+        }
+
+        /**
+         * Passes a way to a state to its owner: straight in if it's ours, or in the next batch otherwise.
+         */
+        private void relax(int state, float cost, int parent) {
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            final int owner = getOwner(tile);
+            if (owner == id) {
+                receive(state, cost, parent);
+                return;
+            }
+            if (tile != goalTile && cost + getHeuristic(tile) >= bestCost) {
+                // It can't lead to a cheaper path, so don't bother the owner with it.
+                return;
+            }
+            if (outboxes[owner] == null) {
+                outboxes[owner] = new Batch();
+            }
+            final Batch batch = outboxes[owner];
+            batch.states[batch.size] = state;
+            batch.costs[batch.size] = cost;
+            batch.parents[batch.size] = parent;
+            if (++batch.size == BATCH_SIZE) {
+                send(owner);
+            }
+        }
+
+        /**
+         * Takes in a way to one of our states, keeping it if it's cheaper than the one we have.
+         */
+        void receive(int state, float cost, int parent) {
+            if (cost >= costs[state]) {
+                return;
+            }
+            costs[state] = cost;
+            parents[state] = parent;
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            if (tile == goalTile) {
+                // Arriving at the goal facing any direction will do.
+                offerPath(state, cost);
+                return;
+            }
+            final float priority = cost + getHeuristic(tile);
+            if (priority < bestCost) {
+                open.push(priority, state);
+            }
+        }
+
+        private void sendAll() {
+            for (int owner = 0; owner < numThreads; owner++) {
+                if (outboxes[owner] != null && outboxes[owner].size > 0) {
+                    send(owner);
+                }
+            }
+        }
+
+        private void send(int owner) {
+            // Count the batch before it can be taken in.
+            batchesInFlight.incrementAndGet();
+            workers[owner].inbox.offer(outboxes[owner]);
+            outboxes[owner] = null;
+            workers[owner].wake();
+        }
+    }
+}
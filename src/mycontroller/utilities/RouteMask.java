@@ -0,0 +1,255 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Marks the tiles that can lie on a route between a set of terminals (e.g. the keys, health traps and exit), so that
+ * searches between them can skip the rest. A dead end, or a pocket of road that only joins the rest of the map through
+ * one tile, can't be on the quickest route between two terminals outside it: a route in would have to come back out
+ * through the same tile, and would be quicker without the detour.
+ *
+ * The map is split into its biconnected components (blocks), which join at cut tiles into a tree. Blocks and cut
+ * tiles at the leaves of the tree are pruned over and over until every leaf holds a terminal. What's left is every
+ * tile on some route between terminals. Searches from a tile that was pruned (e.g. the car, in a dead end) still have
+ * to go through pruned tiles, so they shouldn't use the mask.
+ */
+public class RouteMask {
+
+    private boolean[] relevant = new boolean[0];
+    private int[] terminals = new int[0];
+    private int gridSize = -1;
+
+    // Depth first search state, per tile: discovery time, lowest discovery time reachable, parent, next direction.
+    private int[] discovered = new int[0];
+    private int[] low = new int[0];
+    private int[] parents = new int[0];
+    private int[] nextDirections = new int[0];
+    private int[] searchStack = new int[0];
+    private int[] tileStack = new int[0];
+    // The tiles in each block, block after block, and where each block's tiles start.
+    private int[] blockTiles = new int[0];
+    private int[] blockStarts = new int[0];
+    private int numBlocks;
+    private int numBlockTiles;
+
+    /**
+     * Works out the relevant tiles for the given terminals, unless they're the same as last time. The walls never
+     * change, so neither does anything else the mask depends on.
+     * @param grid is the grid to plan on.
+     * @param terminals is the indices of the terminal tiles.
+     * @return whether any tile is relevant now that wasn't before, in which case searches that used the old mask may
+     * be missing it.
+     */
+    public boolean update(GridMap grid, int[] terminals) {
+        final int[] sortedTerminals = terminals.clone();
+        Arrays.sort(sortedTerminals);
+        if (grid.size() == gridSize && Arrays.equals(sortedTerminals, this.terminals)) {
+            return false;
+        }
+        final boolean[] previous = grid.size() == gridSize ? relevant : null;
+        this.terminals = sortedTerminals;
+        gridSize = grid.size();
+
+        findBlocks(grid);
+        relevant = pruneLeaves(grid);
+
+        if (previous == null) {
+            return true;
+        }
+        for (int tile = 0; tile < gridSize; tile++) {
+            if (relevant[tile] && !previous[tile]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether a tile can lie on a route between terminals.
+     * @param tile is the index of the tile.
+     * @return whether the tile is relevant.
+     */
+    public boolean isRelevant(int tile) {
+        return relevant[tile];
+    }
+
+    /**
+     * Splits the drivable tiles into blocks with Tarjan's algorithm, run without recursion so that big maps don't
+     * overflow the stack. Each block lists its cut tiles too, so a cut tile is in more than one block.
+     */
+    private void findBlocks(GridMap grid) {
+        final int size = grid.size();
+        if (discovered.length != size) {
+            discovered = new int[size];
+            low = new int[size];
+            parents = new int[size];
+            nextDirections = new int[size];
+            searchStack = new int[size];
+            tileStack = new int[size];
+            // Every tile is in one block, plus one more for each block that closes at it.
+            blockTiles = new int[2 * size];
+            blockStarts = new int[size + 1];
+        }
+        Arrays.fill(discovered, -1);
+        numBlocks = 0;
+        numBlockTiles = 0;
+
+        int time = 0;
+        for (int root = 0; root < size; root++) {
+            if (discovered[root] >= 0 || !grid.isTraversable(root)) {
+                continue;
+            }
+            int searchDepth = 0;
+            int tileDepth = 0;
+            discovered[root] = low[root] = time++;
+            parents[root] = -1;
+            nextDirections[root] = 0;
+            searchStack[searchDepth++] = root;
+            tileStack[tileDepth++] = root;
+
+            while (searchDepth > 0) {
+                final int tile = searchStack[searchDepth - 1];
+                if (nextDirections[tile] < GridMap.NUM_DIRECTIONS) {
+                    final int next = grid.getNeighbor(tile, nextDirections[tile]++);
+                    if (next < 0 || !grid.isTraversable(next)) {
+                        continue;
+                    }
+                    if (discovered[next] < 0) {
+                        discovered[next] = low[next] = time++;
+                        parents[next] = tile;
+                        nextDirections[next] = 0;
+                        searchStack[searchDepth++] = next;
+                        tileStack[tileDepth++] = next;
+                    } else if (next != parents[tile]) {
+                        low[tile] = Math.min(low[tile], discovered[next]);
+                    }
+                    continue;
+                }
+
+                // Done with this tile. If nothing below it reaches above its parent, the parent closes a block.
+                searchDepth--;
+                final int parent = parents[tile];
+                if (parent < 0) {
+                    continue;
+                }
+                low[parent] = Math.min(low[parent], low[tile]);
+                if (low[tile] >= discovered[parent]) {
+                    blockStarts[numBlocks++] = numBlockTiles;
+                    int member;
+                    do {
+                        member = tileStack[--tileDepth];
+                        blockTiles[numBlockTiles++] = member;
+                    } while (member != tile);
+                    blockTiles[numBlockTiles++] = parent;
+                }
+            }
+        }
+        blockStarts[numBlocks] = numBlockTiles;
+    }
+
+    /**
+     * Prunes blocks and cut tiles at the leaves of the block-cut tree until every leaf holds a terminal.
+     * @return whether each tile is in a block that's left, or is a terminal.
+     */
+    private boolean[] pruneLeaves(GridMap grid) {
+        final int size = grid.size();
+        final boolean[] isTerminal = new boolean[size];
+        for (int terminal : terminals) {
+            if (terminal >= 0 && terminal < size) {
+                isTerminal[terminal] = true;
+            }
+        }
+
+        // The number of blocks each tile is in. A tile in more than one is a cut tile, and a node of the tree.
+        final int[] tileDegrees = new int[size];
+        for (int member = 0; member < numBlockTiles; member++) {
+            tileDegrees[blockTiles[member]]++;
+        }
+        // The number of cut tiles each block has, and whether it holds a terminal that isn't one.
+        final int[] blockDegrees = new int[numBlocks];
+        final boolean[] blockHasTerminal = new boolean[numBlocks];
+        for (int block = 0; block < numBlocks; block++) {
+            for (int member = blockStarts[block]; member < blockStarts[block + 1]; member++) {
+                final int tile = blockTiles[member];
+                if (tileDegrees[tile] > 1) {
+                    blockDegrees[block]++;
+                } else if (isTerminal[tile]) {
+                    blockHasTerminal[block] = true;
+                }
+            }
+        }
+
+        // The blocks each cut tile is in, so that pruning a cut tile can find them.
+        final int[] cutStarts = new int[size + 1];
+        for (int tile = 0; tile < size; tile++) {
+            cutStarts[tile + 1] = cutStarts[tile] + (tileDegrees[tile] > 1 ? tileDegrees[tile] : 0);
+        }
+        final int[] cutBlocks = new int[cutStarts[size]];
+        // Once filled in, the number of blocks each cut tile is still in.
+        final int[] blocksLeft = new int[size];
+        for (int block = 0; block < numBlocks; block++) {
+            for (int member = blockStarts[block]; member < blockStarts[block + 1]; member++) {
+                final int tile = blockTiles[member];
+                if (tileDegrees[tile] > 1) {
+                    cutBlocks[cutStarts[tile] + blocksLeft[tile]++] = block;
+                }
+            }
+        }
+
+        // Prune leaves. Blocks go on the queue as -1 - block, so they can share it with cut tiles.
+        final boolean[] blockPruned = new boolean[numBlocks];
+        final boolean[] cutPruned = new boolean[size];
+        final int[] queue = new int[numBlocks + size];
+        int head = 0;
+        int tail = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            if (blockDegrees[block] <= 1 && !blockHasTerminal[block]) {
+                blockPruned[block] = true;
+                queue[tail++] = -1 - block;
+            }
+        }
+        while (head < tail) {
+            final int node = queue[head++];
+            if (node < 0) {
+                // A block: its cut tiles have one block fewer.
+                final int block = -1 - node;
+                for (int member = blockStarts[block]; member < blockStarts[block + 1]; member++) {
+                    final int tile = blockTiles[member];
+                    if (tileDegrees[tile] > 1 && !cutPruned[tile] && --blocksLeft[tile] <= 1 && !isTerminal[tile]) {
+                        cutPruned[tile] = true;
+                        queue[tail++] = tile;
+                    }
+                }
+            } else {
+                // A cut tile: its blocks have one cut tile fewer.
+                for (int index = cutStarts[node]; index < cutStarts[node + 1]; index++) {
+                    final int block = cutBlocks[index];
+                    if (!blockPruned[block] && --blockDegrees[block] <= 1 && !blockHasTerminal[block]) {
+                        blockPruned[block] = true;
+                        queue[tail++] = -1 - block;
+                    }
+                }
+            }
+        }
+
+        final boolean[] relevant = new boolean[size];
+        for (int block = 0; block < numBlocks; block++) {
+            if (blockPruned[block]) {
+                continue;
+            }
+            for (int member = blockStarts[block]; member < blockStarts[block + 1]; member++) {
+                relevant[blockTiles[member]] = true;
+            }
+        }
+        for (int terminal : terminals) {
+            if (terminal >= 0 && terminal < size) {
+                relevant[terminal] = true;
+            }
+        }
+        return relevant;
+    }
+}
@@ -0,0 +1,74 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import world.Car;
+import world.CarPhysics;
+
+/**
+ * Calculates the fastest speed the car can be going at each tile of a path, given a speed limit at each tile. Tiles
+ * are one unit apart. A forward pass limits each speed to what the car can accelerate to from the previous tile, and a
+ * backward pass limits it to what the car can still brake down from in time for the next tile. Both use the car's
+ * real acceleration, braking and friction (see CarPhysics).
+ */
+public class SpeedProfile {
+
+    // Net acceleration when the engine is on, since friction always opposes it.
+    public static final float ACCELERATION = CarPhysics.ACCELERATION - CarPhysics.FRICTION_FORCE;
+    // Braking replaces friction rather than adding to it.
+    public static final float DECELERATION = CarPhysics.BRAKING_FORCE;
+
+    /**
+     * The fastest the car can take a 90 degree corner while staying in a one tile wide road, turning at its full
+     * steering rate from the center of the corner tile.
+     */
+    public static final float CORNER_SPEED = 0.5f * CarPhysics.ROTATING_FACTOR * (float) Math.PI / 180;
+
+    /**
+     * The fastest the car can go and still stop before driving past what it can see, so that it can react to a trap
+     * that has just come into view.
+     */
+    public static final float SIGHT_SPEED = getSpeedAfter(0, DECELERATION, Car.VIEW_SQUARE - 1);
+
+    /**
+     * Calculates the speed profile of a path.
+     * @param speedLimits is the highest speed allowed at each tile of the path.
+     * @param startSpeed is the speed the car is going at the first tile.
+     * @return the fastest feasible speed at each tile.
+     */
+    public static float[] getSpeeds(float[] speedLimits, float startSpeed) {
+        final int length = speedLimits.length;
+        float[] speeds = new float[length];
+        if (length == 0) {
+            return speeds;
+        }
+
+        // Forward pass: we can't go faster than we can accelerate to.
+        speeds[0] = Math.min(speedLimits[0], startSpeed);
+        for (int i = 1; i < length; i++) {
+            speeds[i] = Math.min(Math.min(speedLimits[i], CarPhysics.MAX_SPEED),
+                    getSpeedAfter(speeds[i - 1], ACCELERATION, 1));
+        }
+
+        // Backward pass: we can't go faster than we can brake down from in time.
+        for (int i = length - 2; i >= 0; i--) {
+            speeds[i] = Math.min(speeds[i], getSpeedAfter(speeds[i + 1], DECELERATION, 1));
+        }
+        return speeds;
+    }
+
+    /**
+     * Returns the speed the car reaches after constantly accelerating over a distance, from a starting speed. Read
+     * backwards, with 'acceleration' as the braking force, it is the fastest the car can go and still brake down to
+     * 'speed' within 'distance'.
+     * @param speed is the starting speed.
+     * @param acceleration is the constant acceleration.
+     * @param distance is the distance travelled.
+     * @return the speed at the end of the distance.
+     */
+    public static float getSpeedAfter(float speed, float acceleration, float distance) {
+        return (float) Math.sqrt(speed * speed + 2 * acceleration * distance);
+    }
+}
@@ -0,0 +1,356 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import tiles.HealthTrap;
+import tiles.MapTile;
+import utilities.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plans the whole trip through a list of waypoints that have to be visited in order (the keys, then the exit), with
+ * optional stops on health traps in between. Looking at the whole trip lets the car heal where it's cheapest rather
+ * than right before it runs out: e.g. topping up a little more at a health trap it's passing anyway, so it doesn't
+ * have to come back later.
+ *
+ * Between every pair of points (the car, the waypoints and the health traps) the quickest time is known for every
+ * budget of lava tiles, from the same (tile, lava tiles) search HealthAwarePlanner uses. A dynamic program over
+ * (waypoint, health on arrival) then picks, for every leg, whether to go straight there or via a health trap, and how
+ * much to heal. The searches are cached by the tile they start from and only thrown away when a tile that changes
+ * what a route costs (i.e. lava, or a tile that can't be driven on) is seen, so re-solving after the car moves or a
+ * new trap comes into view is mostly just the dynamic program.
+ *
+ * Searches from the waypoints and health traps skip the dead ends and pockets that no route between them can go
+ * through (see RouteMask). The mask is worked out again when a key or health trap is found, and only if it has grown
+ * are the cached searches thrown away.
+ */
+public class TourPlanner {
+
+    // Health is tracked in whole points between stops, rounded down to stay on the safe side.
+    private static final int NUM_HEALTH_LEVELS = (int) HealthAwarePlanner.FULL_HEALTH + 1;
+    // Extra lava tiles' worth of health lost at a point in lava (i.e. a key, or the car's position if it's on lava),
+    // since the car usually has to slow down and turn around on it.
+    private static final int LAVA_TURNAROUND_TILES = 2;
+    // Number of searches to keep. One is needed for every waypoint and health trap, plus the car's position.
+    private static final int CACHE_SIZE = 32;
+
+    // What each tile costs to drive onto: it can't be, it's lava, or it's anything else.
+    private static final byte BLOCKED = 0;
+    private static final byte NORMAL = 1;
+    private static final byte LAVA = 2;
+
+    private final GridMap grid = new GridMap();
+    private final MinHeap open = new MinHeap();
+    private final RouteMask mask = new RouteMask();
+    private byte[] tileCosts = new byte[0];
+
+    // Searches by the tile they start from, least recently used first.
+    private final LinkedHashMap<Integer, float[]> searches =
+            new LinkedHashMap<Integer, float[]>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, float[]> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    // The inputs and result of the last call, which are reused if nothing has changed.
+    private int lastStart = -1;
+    private int lastHealth = -1;
+    private int lastNumHealthLocations = -1;
+    private ArrayList<Coordinate> lastWaypoints = null;
+    private Tour lastTour = null;
+
+    /**
+     * A stop on a tour: either a waypoint, or a health trap to heal at.
+     */
+    public static class Stop {
+        private final Coordinate location;
+        private final float healTo;
+
+        Stop(Coordinate location, float healTo) {
+            this.location = location;
+            this.healTo = healTo;
+        }
+
+        public Coordinate getLocation() {
+            return location;
+        }
+
+        /**
+         * @return whether this is a stop to heal at, rather than a waypoint.
+         */
+        public boolean isHealingStop() {
+            return healTo > 0;
+        }
+
+        /**
+         * @return the health to heal up to, if this is a healing stop.
+         */
+        public float getHealTo() {
+            return healTo;
+        }
+    }
+
+    /**
+     * A tour: the stops to make, in order, and how long they're expected to take.
+     */
+    public static class Tour {
+        private final ArrayList<Stop> stops;
+        private final float time;
+
+        Tour(ArrayList<Stop> stops, float time) {
+            this.stops = stops;
+            this.time = time;
+        }
+
+        public ArrayList<Stop> getStops() {
+            return stops;
+        }
+
+        /**
+         * @return the expected time to finish the tour, in seconds, including time spent healing.
+         */
+        public float getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * Finds the quickest tour through the waypoints, in order, that keeps the car's health above zero. If the last
+     * waypoint is in lava, the car also has to have the health left to drive back out to a health trap.
+     * @param map is the map.
+     * @param start is the car's position.
+     * @param health is the car's current health.
+     * @param waypoints is the list of waypoints to visit, in order.
+     * @param healthLocations is a list of the health traps the car knows about.
+     * @return the quickest safe tour, or null if there isn't one.
+     */
+    public Tour getTour(HashMap<Coordinate, MapTile> map, Coordinate start, float health,
+            ArrayList<Coordinate> waypoints, ArrayList<Coordinate> healthLocations) {
+        if (grid.refresh(map)) {
+            updateTileCosts();
+        }
+
+        final int startTile = grid.getIndex(start);
+        final int startHealth = Math.min(NUM_HEALTH_LEVELS - 1, (int) Math.floor(health));
+        if (startTile == lastStart && startHealth == lastHealth && waypoints.equals(lastWaypoints)
+                && healthLocations.size() == lastNumHealthLocations) {
+            return lastTour;
+        }
+        updateMask(waypoints, healthLocations);
+        lastStart = startTile;
+        lastHealth = startHealth;
+        lastWaypoints = new ArrayList<>(waypoints);
+        lastNumHealthLocations = healthLocations.size();
+        lastTour = solve(startTile, startHealth, waypoints, healthLocations);
+        return lastTour;
+    }
+
+    /**
+     * Runs the dynamic program over (waypoint, health on arrival).
+     */
+    private Tour solve(int startTile, int startHealth, ArrayList<Coordinate> waypoints,
+            ArrayList<Coordinate> healthLocations) {
+        final int numWaypoints = waypoints.size();
+        if (startTile < 0 || numWaypoints == 0) {
+            return null;
+        }
+        final int[] tiles = new int[numWaypoints + 1];
+        tiles[0] = startTile;
+        for (int i = 0; i < numWaypoints; i++) {
+            tiles[i + 1] = grid.getIndex(waypoints.get(i));
+            if (tiles[i + 1] < 0 || !grid.isTraversable(tiles[i + 1])) {
+                return null;
+            }
+        }
+        final int[] healthTiles = new int[healthLocations.size()];
+        for (int i = 0; i < healthTiles.length; i++) {
+            healthTiles[i] = grid.getIndex(healthLocations.get(i));
+        }
+
+        // times[i][h] is the quickest time to arrive at point i with h health. To rebuild the tour, each state also
+        // remembers the health it left the previous point with, and the health trap it healed at on the way, if any.
+        final float[][] times = new float[numWaypoints + 1][NUM_HEALTH_LEVELS];
+        final int[][] previousHealth = new int[numWaypoints + 1][NUM_HEALTH_LEVELS];
+        final int[][] healedAt = new int[numWaypoints + 1][NUM_HEALTH_LEVELS];
+        final float[][] healedTo = new float[numWaypoints + 1][NUM_HEALTH_LEVELS];
+        for (float[] row : times) {
+            Arrays.fill(row, Float.POSITIVE_INFINITY);
+        }
+        times[0][startHealth] = 0;
+
+        for (int i = 0; i < numWaypoints; i++) {
+            final float[] fromHere = getSearch(tiles[i]);
+            final int next = tiles[i + 1];
+            // Turning around in lava when we set off (only the car's position; a waypoint's was paid on arrival) and
+            // when we get there.
+            final int leaving = i == 0 ? getTurnaroundTiles(tiles[i]) : 0;
+            final int arriving = getTurnaroundTiles(next);
+            for (int health = 0; health < NUM_HEALTH_LEVELS; health++) {
+                final float time = times[i][health];
+                final int affordable = HealthAwarePlanner.getAffordableLavaTiles(health) - leaving;
+                if (time == Float.POSITIVE_INFINITY || affordable < 0) {
+                    continue;
+                }
+
+                // Go straight to the next waypoint.
+                for (int lavaTiles = 0; lavaTiles + arriving <= affordable; lavaTiles++) {
+                    final float legTime = getTime(fromHere, next, lavaTiles);
+                    if (legTime < Float.POSITIVE_INFINITY) {
+                        relax(times, previousHealth, healedAt, healedTo, i + 1, health
+                                - (leaving + lavaTiles + arriving) * HealthAwarePlanner.LAVA_DAMAGE,
+                                time + legTime, health, -1, 0);
+                    }
+                }
+
+                // Or go via a health trap, healing up to anything from what the rest of the leg needs to full.
+                for (int stop = 0; stop < healthTiles.length; stop++) {
+                    if (healthTiles[stop] < 0) {
+                        continue;
+                    }
+                    final float[] fromStop = getSearch(healthTiles[stop]);
+                    for (int lavaThere = 0; lavaThere <= affordable; lavaThere++) {
+                        final float timeThere = getTime(fromHere, healthTiles[stop], lavaThere);
+                        if (timeThere == Float.POSITIVE_INFINITY) {
+                            continue;
+                        }
+                        final float healthThere = health - (leaving + lavaThere) * HealthAwarePlanner.LAVA_DAMAGE;
+                        for (int lavaAfter = 0; lavaAfter <= HealthAwarePlanner.MAX_LAVA_TILES; lavaAfter++) {
+                            final float timeAfter = getTime(fromStop, next, lavaAfter);
+                            if (timeAfter == Float.POSITIVE_INFINITY) {
+                                continue;
+                            }
+                            final float minHealTo = Math.max(healthThere,
+                                    HealthAwarePlanner.getHealthNeeded(lavaAfter + arriving));
+                            for (int healTo = (int) Math.ceil(minHealTo); healTo < NUM_HEALTH_LEVELS; healTo++) {
+                                final float healingTime = (healTo - healthThere) / HealthTrap.HealthDelta;
+                                relax(times, previousHealth, healedAt, healedTo, i + 1,
+                                        healTo - (lavaAfter + arriving) * HealthAwarePlanner.LAVA_DAMAGE,
+                                        time + timeThere + healingTime + timeAfter, health, stop, healTo);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // Finish with enough health to get out of the lava, if the last waypoint is in it.
+        int reserve = 0;
+        if (tileCosts[tiles[numWaypoints]] == LAVA) {
+            reserve = (int) Math.ceil(HealthAwarePlanner.getHealthNeeded(HealthAwarePlanner.getLavaTilesToSafety(
+                    grid, getSearch(tiles[numWaypoints]), healthLocations)));
+        }
+        int bestHealth = -1;
+        for (int health = Math.max(1, reserve); health < NUM_HEALTH_LEVELS; health++) {
+            if (times[numWaypoints][health] < Float.POSITIVE_INFINITY
+                    && (bestHealth < 0 || times[numWaypoints][health] < times[numWaypoints][bestHealth])) {
+                bestHealth = health;
+            }
+        }
+        if (bestHealth < 0) {
+            return null;
+        }
+
+        // Walk back through the waypoints to list the stops.
+        final ArrayList<Stop> stops = new ArrayList<>();
+        int health = bestHealth;
+        for (int i = numWaypoints; i > 0; i--) {
+            stops.add(0, new Stop(waypoints.get(i - 1), 0));
+            if (healedAt[i][health] >= 0) {
+                stops.add(0, new Stop(healthLocations.get(healedAt[i][health]), healedTo[i][health]));
+            }
+            health = previousHealth[i][health];
+        }
+        return new Tour(stops, times[numWaypoints][bestHealth]);
+    }
+
+    private int getTurnaroundTiles(int tile) {
+        return tileCosts[tile] == LAVA ? LAVA_TURNAROUND_TILES : 0;
+    }
+
+    private static void relax(float[][] times, int[][] previousHealth, int[][] healedAt, float[][] healedTo, int point,
+            float health, float time, int fromHealth, int stop, float healTo) {
+        final int level = (int) Math.floor(health);
+        if (level >= 0 && time < times[point][level]) {
+            times[point][level] = time;
+            previousHealth[point][level] = fromHealth;
+            healedAt[point][level] = stop;
+            healedTo[point][level] = healTo;
+        }
+    }
+
+    /**
+     * Returns the quickest time to a tile within a budget of lava tiles, or infinity if it's not the cheapest way to
+     * spend that budget (i.e. a smaller budget is just as quick), since there's no point trying it again.
+     */
+    private static float getTime(float[] search, int tile, int lavaTiles) {
+        final float time = search[HealthAwarePlanner.getState(tile, lavaTiles)];
+        if (lavaTiles > 0 && search[HealthAwarePlanner.getState(tile, lavaTiles - 1)] == time) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return time;
+    }
+
+    /**
+     * Returns the search from the given tile, running it if it isn't cached. Searches from relevant tiles only search
+     * relevant tiles, since they're only asked about the waypoints and health traps. A search from anywhere else (e.g.
+     * the car, in a dead end) has to go through tiles that aren't. With no health traps known, the search from a key
+     * in lava also looks for the nearest tile out of the lava, which may be in a pruned dead end; not counting it only
+     * keeps more health in reserve.
+     */
+    private float[] getSearch(int tile) {
+        float[] search = searches.get(tile);
+        if (search == null) {
+            search = new float[grid.size() * HealthAwarePlanner.NUM_BUDGETS];
+            HealthAwarePlanner.search(grid, open, search, tile, true, mask.isRelevant(tile) ? mask : null);
+            searches.put(tile, search);
+        }
+        return search;
+    }
+
+    /**
+     * Works out the tiles that can be on a route between the waypoints and health traps, and throws away the cached
+     * searches if any tile they skipped can be now.
+     */
+    private void updateMask(ArrayList<Coordinate> waypoints, ArrayList<Coordinate> healthLocations) {
+        final int[] terminals = new int[waypoints.size() + healthLocations.size()];
+        for (int i = 0; i < waypoints.size(); i++) {
+            terminals[i] = grid.getIndex(waypoints.get(i));
+        }
+        for (int i = 0; i < healthLocations.size(); i++) {
+            terminals[waypoints.size() + i] = grid.getIndex(healthLocations.get(i));
+        }
+        if (mask.update(grid, terminals)) {
+            searches.clear();
+        }
+    }
+
+    /**
+     * Works out what each tile costs to drive onto. Only if that has changed are the cached searches (and the last
+     * tour) thrown away: e.g. spotting grass next to the road doesn't change any route.
+     */
+    private void updateTileCosts() {
+        final byte[] costs = new byte[grid.size()];
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (!grid.isTraversable(tile)) {
+                costs[tile] = BLOCKED;
+            } else if (Utilities.isLava(grid.getTile(tile))) {
+                costs[tile] = LAVA;
+            } else {
+                costs[tile] = NORMAL;
+            }
+        }
+        if (!Arrays.equals(costs, tileCosts)) {
+            tileCosts = costs;
+            searches.clear();
+            lastWaypoints = null;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+// SWEN30006 S1 2018
+// Project Part C
+// Group 99
+
+package mycontroller.utilities;
+
+import swen30006.driving.SimulationMetrics;
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.WorldSpatial.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shortest path planner whose states are (tile, heading) pairs rather than tiles. Driving forward moves to the next
+ * tile in the current heading; turning 90 degrees is an explicit edge of its own that stays on the tile. Since the
+ * cost of every edge is fixed, a path no longer depends on where the car came from or on the order tiles are expanded
+ * in, so the planner can keep, per goal, the exact cost to reach the goal from every state (a distance field). Replans
+ * towards the same goal then just walk down the cached field until a tile changes.
+ *
+ * Paths to several goals at once (e.g. to pick the best of them) come from a single search forwards from the start,
+ * which stops once it has reached every goal, so they need no distance field per goal.
+ */
+public class TurnAwarePlanner {
+
+    // Edge costs. Driving onto a tile costs MOVE_COST, or LAVA_COST if it's lava. A 90 degree turn costs TURN_COST,
+    // so a turn followed by a step costs the same as a turning step did in AStar.
+    public static final float MOVE_COST = 1f;
+    public static final float LAVA_COST = 100f;
+    public static final float TURN_COST = 2f;
+
+    // Number of goals to keep distance fields for.
+    private static final int CACHE_SIZE = 8;
+
+    private final GridMap grid = new GridMap();
+    // The cost of driving onto each tile, or infinity if it can't be driven on.
+    private float[] entryCosts = new float[0];
+    private int costsVersion = -1;
+    private final MinHeap open = new MinHeap();
+    // The cost to reach each state from the start, and the state it was reached from, for searches to several goals.
+    private float[] costsFromStart = new float[0];
+    private int[] parents = new int[0];
+
+    // Distance fields by goal tile index, least recently used first.
+    private final LinkedHashMap<Integer, float[]> distanceFields =
+            new LinkedHashMap<Integer, float[]>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, float[]> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /**
+     * Given a map, start, heading and goal, returns a list of coordinates that go from start to goal.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param goal is the target coordinate.
+     * @return a sequential list of coordinates that gets from start to goal, or null if there's no path.
+     */
+    public ArrayList<Coordinate> getShortestPath(HashMap<Coordinate, MapTile> map, Coordinate start,
+            Direction heading, Coordinate goal) {
+        return walkDown(getDistanceField(map, goal), start, heading);
+    }
+
+    /**
+     * Given a map, start, heading and several goals, returns a path from start to each goal. The paths come from one
+     * Dijkstra search forwards from the start over (tile, heading) states, with the same edge costs as the distance
+     * fields, that stops once every goal has been reached.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param goals is the target coordinates.
+     * @return a path to each goal, in the same order as the goals, or null for a goal there's no path to.
+     */
+    public ArrayList<ArrayList<Coordinate>> getShortestPaths(HashMap<Coordinate, MapTile> map, Coordinate start,
+            Direction heading, List<Coordinate> goals) {
+        refresh(map);
+        final ArrayList<ArrayList<Coordinate>> paths = new ArrayList<>(Collections.nCopies(goals.size(), null));
+        final int startTile = grid.getIndex(start);
+        if (startTile < 0) {
+            return paths;
+        }
+
+        // The state each goal tile was first reached in, or -1 until it has been.
+        final HashMap<Integer, Integer> goalStates = new HashMap<>();
+        for (Coordinate goal : goals) {
+            final int goalTile = grid.getIndex(goal);
+            if (goalTile >= 0 && grid.isTraversable(goalTile)) {
+                goalStates.put(goalTile, -1);
+            }
+        }
+        search(getState(startTile, heading.ordinal()), goalStates);
+
+        for (int i = 0; i < goals.size(); i++) {
+            final Integer goalState = goalStates.get(grid.getIndex(goals.get(i)));
+            if (goalState != null && goalState >= 0) {
+                paths.set(i, walkBack(goalState, start));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm forwards from the start state until every goal tile has been reached, recording the
+     * cost to and parent of each state reached.
+     * @param startState is the state to start from.
+     * @param goalStates is the goal tiles, each of which is given the state it is first reached in.
+     */
+    private void search(int startState, HashMap<Integer, Integer> goalStates) {
+        final int numStates = grid.size() * GridMap.NUM_DIRECTIONS;
+        if (costsFromStart.length != numStates) {
+            costsFromStart = new float[numStates];
+            parents = new int[numStates];
+        }
+        Arrays.fill(costsFromStart, Float.POSITIVE_INFINITY);
+
+        open.clear();
+        costsFromStart[startState] = 0;
+        parents[startState] = -1;
+        open.push(0, startState);
+        int goalsLeft = goalStates.size();
+        while (goalsLeft > 0 && !open.isEmpty()) {
+            final float cost = open.peekKey();
+            final int state = open.pop();
+            if (cost > costsFromStart[state]) {
+                // A cheaper way to this state has already been expanded.
+                continue;
+            }
+
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            final int direction = state % GridMap.NUM_DIRECTIONS;
+
+            // Arriving at a goal facing any direction will do, so the first state expanded on it is the cheapest.
+            final Integer goalState = goalStates.get(tile);
+            if (goalState != null && goalState < 0) {
+                goalStates.put(tile, state);
+                goalsLeft--;
+            }
+
+            // We could drive forward onto the next tile, or turn on the spot.
+            final int next = grid.getNeighbor(tile, direction);
+            if (next >= 0 && entryCosts[next] != Float.POSITIVE_INFINITY) {
+                relaxFrom(state, getState(next, direction), cost + entryCosts[next]);
+            }
+            for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+                if (isTurn(direction, turn)) {
+                    relaxFrom(state, getState(tile, turn), cost + TURN_COST);
+                }
+            }
+        }
+    }
+
+    private void relaxFrom(int parent, int state, float cost) {
+        if (cost < costsFromStart[state]) {
+            costsFromStart[state] = cost;
+            parents[state] = parent;
+            open.push(cost, state);
+        }
+    }
+
+    /**
+     * Follows the parents left by the last forward search back from a goal state to the start.
+     * @param goalState is the state the goal was reached in.
+     * @param start is the starting coordinate.
+     * @return the path from start to the goal.
+     */
+    private ArrayList<Coordinate> walkBack(int goalState, Coordinate start) {
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        int tile = -1;
+        for (int state = goalState; parents[state] >= 0; state = parents[state]) {
+            if (state / GridMap.NUM_DIRECTIONS != tile) {
+                tile = state / GridMap.NUM_DIRECTIONS;
+                path.add(grid.getCoordinate(tile));
+            }
+        }
+        // The start's own states only turn on the spot, so the start is added once, as it was given.
+        if (!path.isEmpty() && path.get(path.size() - 1).equals(start)) {
+            path.remove(path.size() - 1);
+        }
+        path.add(start);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Walks down a distance field from the start to its goal.
+     * @param distances is the distance field, or null if the goal can't be driven on.
+     * @return the path, or null if there's no path.
+     */
+    private ArrayList<Coordinate> walkDown(float[] distances, Coordinate start, Direction heading) {
+        final int startTile = grid.getIndex(start);
+        if (distances == null || startTile < 0) {
+            return null;
+        }
+
+        int state = getState(startTile, heading.ordinal());
+        if (distances[state] == Float.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        // Walk down the distance field. Each edge taken lowers the remaining cost, so this always ends at the goal.
+        final ArrayList<Coordinate> path = new ArrayList<>();
+        path.add(start);
+        while (distances[state] > 0) {
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            final int direction = state % GridMap.NUM_DIRECTIONS;
+
+            // Prefer driving forward over turning when they're equally good.
+            int bestState = -1;
+            float bestCost = Float.POSITIVE_INFINITY;
+            final int next = grid.getNeighbor(tile, direction);
+            if (next >= 0 && entryCosts[next] != Float.POSITIVE_INFINITY) {
+                bestState = getState(next, direction);
+                bestCost = entryCosts[next] + distances[bestState];
+            }
+            for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+                if (isTurn(direction, turn) && TURN_COST + distances[getState(tile, turn)] < bestCost) {
+                    bestState = getState(tile, turn);
+                    bestCost = TURN_COST + distances[bestState];
+                }
+            }
+
+            if (bestState / GridMap.NUM_DIRECTIONS != tile) {
+                path.add(grid.getCoordinate(bestState / GridMap.NUM_DIRECTIONS));
+            }
+            state = bestState;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the cost of the cheapest path from start to goal, in the same units as the edge costs above.
+     * @param map is the map.
+     * @param start is the starting coordinate.
+     * @param heading is the direction the car is facing at the start.
+     * @param goal is the target coordinate.
+     * @return the cost of the cheapest path, or infinity if there's no path.
+     */
+    public float getPathCost(HashMap<Coordinate, MapTile> map, Coordinate start, Direction heading,
+            Coordinate goal) {
+        final float[] distances = getDistanceField(map, goal);
+        final int startTile = grid.getIndex(start);
+        if (distances == null || startTile < 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return distances[getState(startTile, heading.ordinal())];
+    }
+
+    /**
+     * Returns the distance field towards the given goal, computing it if it isn't cached or the map has changed.
+     * @param map is the map.
+     * @param goal is the target coordinate.
+     * @return the cost to reach the goal from every state, or null if the goal can't be driven on.
+     */
+    private float[] getDistanceField(HashMap<Coordinate, MapTile> map, Coordinate goal) {
+        refresh(map);
+        final int goalTile = grid.getIndex(goal);
+        if (goalTile < 0 || !grid.isTraversable(goalTile)) {
+            return null;
+        }
+
+        float[] distances = distanceFields.get(goalTile);
+        SimulationMetrics.recordPathCacheLookup(distances != null);
+        if (distances == null) {
+            distances = buildDistanceField(goalTile, open);
+            distanceFields.put(goalTile, distances);
+        }
+        return distances;
+    }
+
+    /**
+     * Brings the grid up to date with the map, and the entry costs with the grid.
+     */
+    private void refresh(HashMap<Coordinate, MapTile> map) {
+        grid.refresh(map);
+        if (costsVersion != grid.getVersion()) {
+            updateEntryCosts();
+        }
+    }
+
+    /**
+     * Recomputes the cost of driving onto each tile, and drops every cached distance field since they may be stale.
+     */
+    private void updateEntryCosts() {
+        if (entryCosts.length != grid.size()) {
+            entryCosts = new float[grid.size()];
+        }
+        for (int tile = 0; tile < grid.size(); tile++) {
+            if (!grid.isTraversable(tile)) {
+                entryCosts[tile] = Float.POSITIVE_INFINITY;
+            } else if (Utilities.isLava(grid.getTile(tile))) {
+                entryCosts[tile] = LAVA_COST;
+            } else {
+                entryCosts[tile] = MOVE_COST;
+            }
+        }
+        distanceFields.clear();
+        costsVersion = grid.getVersion();
+    }
+
+    /**
+     * Runs Dijkstra's algorithm backwards from the goal over (tile, heading) states.
+     * @param goalTile is the index of the goal tile.
+     * @param open is the heap to search with.
+     * @return the cost to reach the goal from every state.
+     */
+    private float[] buildDistanceField(int goalTile, MinHeap open) {
+        final float[] distances = new float[grid.size() * GridMap.NUM_DIRECTIONS];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+
+        // Arriving at the goal facing any direction will do.
+        open.clear();
+        for (int direction = 0; direction < GridMap.NUM_DIRECTIONS; direction++) {
+            distances[getState(goalTile, direction)] = 0;
+            open.push(0, getState(goalTile, direction));
+        }
+
+        while (!open.isEmpty()) {
+            final float distance = open.peekKey();
+            final int state = open.pop();
+            if (distance > distances[state]) {
+                // A cheaper way to this state has already been expanded.
+                continue;
+            }
+
+            final int tile = state / GridMap.NUM_DIRECTIONS;
+            final int direction = state % GridMap.NUM_DIRECTIONS;
+
+            // We could have driven forward onto this tile from the one behind it. That one may be a wall, in case the
+            // car has been nudged onto one; nothing leads back onto it, so the search stops there.
+            final int previous = grid.getNeighbor(tile, GridMap.getOpposite(direction));
+            if (previous >= 0) {
+                relax(distances, open, getState(previous, direction), distance + entryCosts[tile]);
+            }
+
+            // Or turned on the spot to face this way.
+            for (int turn = 0; turn < GridMap.NUM_DIRECTIONS; turn++) {
+                if (isTurn(direction, turn)) {
+                    relax(distances, open, getState(tile, turn), distance + TURN_COST);
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static void relax(float[] distances, MinHeap open, int state, float distance) {
+        if (distance < distances[state]) {
+            distances[state] = distance;
+            open.push(distance, state);
+        }
+    }
+
+    private static int getState(int tile, int direction) {
+        return tile * GridMap.NUM_DIRECTIONS + direction;
+    }
+
+    /**
+     * Determines whether the car can face 'to' from 'from' with a single 90 degree turn.
+     */
+    private static boolean isTurn(int from, int to) {
+        return GridMap.getDX(from) * GridMap.getDX(to) + GridMap.getDY(from) * GridMap.getDY(to) == 0;
+    }
+}
@@ -86,6 +86,26 @@ public class Utilities {
         return null;
     }
 
+    /**
+     * Returns the compass direction nearest to the given angle. Unlike the car's orientation, which only changes when
+     * the car snaps to a direction while turning, this follows the car however it has turned.
+     * @param angle is the angle in degrees, anticlockwise from east.
+     * @return the nearest direction.
+     */
+    public static Direction getNearestDirection(float angle) {
+        final int quadrant = Math.floorMod(Math.round(angle / 90), 4);
+        switch (quadrant) {
+            case 0:
+                return Direction.EAST;
+            case 1:
+                return Direction.NORTH;
+            case 2:
+                return Direction.WEST;
+            default:
+                return Direction.SOUTH;
+        }
+    }
+
     /**
      * Given an x and y position as floats, returns it as a coordinate position.
      * @param x is the x position.
@@ -121,7 +141,15 @@ public class Utilities {
      * @return whether the given coordinate is a lava tile according to the given map.
      */
     public static boolean isLava(HashMap<Coordinate, MapTile> map, Coordinate coordinate) {
-        MapTile mapTile = map.get(coordinate);
+        return isLava(map.get(coordinate));
+    }
+
+    /**
+     * Determines whether the given tile is a lava tile.
+     * @param mapTile is the tile to be checked. May be null.
+     * @return whether the given tile is a lava tile.
+     */
+    public static boolean isLava(MapTile mapTile) {
         if (mapTile != null && mapTile.isType(MapTile.Type.TRAP)) {
             TrapTile trapTile = (TrapTile) mapTile;
 
@@ -138,7 +166,15 @@ public class Utilities {
      * @return whether the given coordinate is a health tile according to the given map.
      */
     public static boolean isHealth(HashMap<Coordinate, MapTile> map, Coordinate coordinate) {
-        MapTile mapTile = map.get(coordinate);
+        return isHealth(map.get(coordinate));
+    }
+
+    /**
+     * Determines whether the given tile is a health tile.
+     * @param mapTile is the tile to be checked. May be null.
+     * @return whether the given tile is a health tile.
+     */
+    public static boolean isHealth(MapTile mapTile) {
         if (mapTile != null && mapTile.isType(MapTile.Type.TRAP)) {
             TrapTile trapTile = (TrapTile) mapTile;
 
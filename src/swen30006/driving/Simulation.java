@@ -42,15 +42,26 @@ public class Simulation extends ApplicationAdapter implements InputProcessor {
 	private static final int PLAYER_VIEW = 11;
 	private static boolean gameEnded = false;
 	private static boolean gameWon = false;
-	public static boolean DEBUG_MODE = true;
+	// Per-tick text logging is slow; binary telemetry (Telemetry_File) is the cheap alternative
+	public static boolean DEBUG_MODE = false;
 	private BitmapFont font;
+	private SimulationMetrics metrics = SimulationMetrics.getInstance();
 	
 	private static float TIME_STEP = 1/45f;
+	// Also read by controllers, for settings of their own (see getDrivingProperty)
+	private static Properties drivingProperties = new Properties();
 	
 	public Simulation(String[] arg) {
 		super();
 	}
 	
+	/**
+	 * Returns a setting from Driving.Properties, or the given default if it isn't set.
+	 */
+	public static String getDrivingProperty(String key, String defaultValue) {
+		return drivingProperties.getProperty(key, defaultValue);
+	}
+	
 	@Override
 	public void create () {
 		/* From new template 1/5/2018
@@ -59,10 +70,12 @@ public class Simulation extends ApplicationAdapter implements InputProcessor {
 		*/
 		startTime = System.currentTimeMillis();
 		
-		Properties drivingProperties = new Properties();
+		drivingProperties = new Properties();
 		// Defaults
 		drivingProperties.setProperty("Map", "lecture-preview.tmx");
 		drivingProperties.setProperty("Number_of_Rounds", "20");
+		drivingProperties.setProperty("Metrics_Interval", "1000");
+		drivingProperties.setProperty("Telemetry_Capacity", Integer.toString(Telemetry.DEFAULT_CAPACITY));
 		
 		try (FileReader inStream = new FileReader("assets/Driving.Properties")) {
 			drivingProperties.load(inStream);
@@ -78,9 +91,22 @@ public class Simulation extends ApplicationAdapter implements InputProcessor {
 		
 		String controllerName = drivingProperties.getProperty("Controller");
 		
+		// Record binary per-tick telemetry if asked to
+		String telemetryFile = drivingProperties.getProperty("Telemetry_File");
+		if (telemetryFile != null) {
+			Telemetry.start(telemetryFile, Integer.parseInt(drivingProperties.getProperty("Telemetry_Capacity")));
+		}
+		
 		// Create the world
 		world = new World(map, controllerName);
 		
+		// Expose live metrics over JMX, and optionally dump them to a file
+		metrics.register(world.getCar());
+		String metricsFile = drivingProperties.getProperty("Metrics_File");
+		if (metricsFile != null) {
+			metrics.startDumping(metricsFile, Long.parseLong(drivingProperties.getProperty("Metrics_Interval")));
+		}
+		
 		// Set the camera
 		camera = new OrthographicCamera();
 		camera.setToOrtho(false,World.MAP_WIDTH,World.MAP_HEIGHT);
@@ -114,8 +140,11 @@ public class Simulation extends ApplicationAdapter implements InputProcessor {
 	    accumulator += frameTime;
 	    while (accumulator >= TIME_STEP) {
 	        accumulator -= TIME_STEP;
+	        metrics.tickStarted();
 	        world.update(TIME_STEP);
+	        metrics.tickFinished(TIME_STEP);
 	    }
+	    metrics.frameRendered();
 		
 		if(CAMERA_MODE.equals(CameraMode.PLAYER)){
 			followCar();
@@ -168,6 +197,7 @@ public class Simulation extends ApplicationAdapter implements InputProcessor {
 		batch.dispose();
 		img.dispose();
 		*/
+		Telemetry.stop();
 	}
 
 	@Override
@@ -0,0 +1,243 @@
+package swen30006.driving;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import world.Car;
+
+/**
+ * Live metrics for a running simulation. The simulation thread feeds frame and tick boundaries in, controllers report
+ * their state, replans and path cache lookups through the static hooks, and the values are exposed through JMX and,
+ * optionally, dumped to a file at a fixed interval.
+ *
+ * Rates are computed over sampling windows of SAMPLE_WINDOW_NANOS so that a slow patch of the run shows up instead of
+ * being averaged away over the whole simulation.
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+	public static final String OBJECT_NAME = "swen30006.driving:type=SimulationMetrics";
+
+	private static final long SAMPLE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private static final SimulationMetrics INSTANCE = new SimulationMetrics();
+
+	private final com.sun.management.ThreadMXBean threadBean;
+	private final boolean allocationSupported;
+
+	private volatile Car car;
+	private volatile String controllerState = "UNKNOWN";
+
+	// Written by the simulation thread only.
+	private long simulationThreadId = -1;
+	private long tickAllocationStart;
+	private long windowStart = -1;
+	private long windowFrames;
+	private long windowTicks;
+	private float windowSimulatedTime;
+	private long windowAllocatedBytes;
+	private long windowReplansStart;
+
+	// Counters that may be bumped from planner threads.
+	private final AtomicLong ticks = new AtomicLong();
+	private final AtomicLong replans = new AtomicLong();
+	private final AtomicLong pathCacheHits = new AtomicLong();
+	private final AtomicLong pathCacheLookups = new AtomicLong();
+
+	// Results of the last completed sampling window.
+	private volatile double framesPerSecond;
+	private volatile double simulatedToWallTimeRatio;
+	private volatile double replansPerSecond;
+	private volatile long allocatedBytesPerTick;
+
+	private ScheduledExecutorService dumpExecutor;
+
+	private SimulationMetrics() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			threadBean = (com.sun.management.ThreadMXBean) bean;
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+			allocationSupported = true;
+		} else {
+			threadBean = null;
+			allocationSupported = false;
+		}
+	}
+
+	public static SimulationMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server so they can be read from a local JMX client.
+	 * @param car is the car whose health and key are reported.
+	 */
+	public void register(Car car) {
+		this.car = car;
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Appends a line with every metric to the given file every 'intervalMillis' milliseconds, from a daemon thread.
+	 * @param fileName is the file to append to.
+	 * @param intervalMillis is the time between two dumps.
+	 */
+	public synchronized void startDumping(String fileName, long intervalMillis) {
+		if (dumpExecutor != null) {
+			return;
+		}
+		dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "simulation-metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumpExecutor.scheduleAtFixedRate(() -> dump(fileName), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void dump(String fileName) {
+		try (PrintWriter out = new PrintWriter(new FileWriter(fileName, true))) {
+			out.printf("%d state=%s health=%.1f key=%d fps=%.1f simRatio=%.3f replans/s=%.2f cacheHit=%.3f alloc/tick=%d ticks=%d%n",
+					System.currentTimeMillis(), getControllerState(), getHealth(), getKey(), getFramesPerSecond(),
+					getSimulatedToWallTimeRatio(), getReplansPerSecond(), getPathCacheHitRatio(),
+					getAllocatedBytesPerTick(), getTicks());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/** Called by the simulation once per rendered frame. */
+	void frameRendered() {
+		long now = System.nanoTime();
+		if (windowStart < 0) {
+			windowStart = now;
+			windowReplansStart = replans.get();
+		}
+		windowFrames++;
+
+		long elapsed = now - windowStart;
+		if (elapsed >= SAMPLE_WINDOW_NANOS) {
+			double seconds = elapsed / NANOS_PER_SECOND;
+			long currentReplans = replans.get();
+			framesPerSecond = windowFrames / seconds;
+			simulatedToWallTimeRatio = windowSimulatedTime / seconds;
+			replansPerSecond = (currentReplans - windowReplansStart) / seconds;
+			allocatedBytesPerTick = windowTicks == 0 ? 0 : windowAllocatedBytes / windowTicks;
+
+			windowStart = now;
+			windowFrames = 0;
+			windowTicks = 0;
+			windowSimulatedTime = 0;
+			windowAllocatedBytes = 0;
+			windowReplansStart = currentReplans;
+		}
+	}
+
+	/** Called by the simulation right before the world is advanced by one tick. */
+	void tickStarted() {
+		if (allocationSupported) {
+			if (simulationThreadId < 0) {
+				simulationThreadId = Thread.currentThread().getId();
+			}
+			tickAllocationStart = threadBean.getThreadAllocatedBytes(simulationThreadId);
+		}
+	}
+
+	/**
+	 * Called by the simulation right after the world has been advanced by one tick.
+	 * @param delta is the simulated time the tick covered.
+	 */
+	void tickFinished(float delta) {
+		if (allocationSupported) {
+			windowAllocatedBytes += threadBean.getThreadAllocatedBytes(simulationThreadId) - tickAllocationStart;
+		}
+		windowSimulatedTime += delta;
+		windowTicks++;
+		ticks.incrementAndGet();
+	}
+
+	/**
+	 * Reports the state a controller is currently in.
+	 * @param state is a short, human readable name for the state.
+	 */
+	public static void reportControllerState(String state) {
+		INSTANCE.controllerState = state;
+	}
+
+	/** Reports that a controller recalculated its path. */
+	public static void recordReplan() {
+		INSTANCE.replans.incrementAndGet();
+	}
+
+	/**
+	 * Reports a lookup in a planner's path cache.
+	 * @param hit is whether the lookup was answered from the cache.
+	 */
+	public static void recordPathCacheLookup(boolean hit) {
+		INSTANCE.pathCacheLookups.incrementAndGet();
+		if (hit) {
+			INSTANCE.pathCacheHits.incrementAndGet();
+		}
+	}
+
+	@Override
+	public String getControllerState() {
+		return controllerState;
+	}
+
+	@Override
+	public float getHealth() {
+		Car current = car;
+		return current == null ? 0 : current.getHealth();
+	}
+
+	@Override
+	public int getKey() {
+		Car current = car;
+		return current == null ? 0 : current.getKey();
+	}
+
+	@Override
+	public double getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	@Override
+	public double getSimulatedToWallTimeRatio() {
+		return simulatedToWallTimeRatio;
+	}
+
+	@Override
+	public double getReplansPerSecond() {
+		return replansPerSecond;
+	}
+
+	@Override
+	public double getPathCacheHitRatio() {
+		long lookups = pathCacheLookups.get();
+		return lookups == 0 ? 0 : (double) pathCacheHits.get() / lookups;
+	}
+
+	@Override
+	public long getAllocatedBytesPerTick() {
+		return allocatedBytesPerTick;
+	}
+
+	@Override
+	public long getTicks() {
+		return ticks.get();
+	}
+}
@@ -0,0 +1,32 @@
+package swen30006.driving;
+
+/**
+ * Management interface for {@link SimulationMetrics}. Every attribute is read-only and can be inspected live from a
+ * local JMX client (e.g. jconsole) under the name {@link SimulationMetrics#OBJECT_NAME}.
+ */
+public interface SimulationMetricsMBean {
+
+	/** The state the car's controller last reported, or "UNKNOWN" if it never reported one. */
+	String getControllerState();
+
+	float getHealth();
+
+	int getKey();
+
+	/** Rendered frames per wall-clock second, over the last sampling window. */
+	double getFramesPerSecond();
+
+	/** Simulated seconds advanced per wall-clock second, over the last sampling window. */
+	double getSimulatedToWallTimeRatio();
+
+	/** Path replans per wall-clock second, over the last sampling window. */
+	double getReplansPerSecond();
+
+	/** Fraction of path lookups that were answered from a planner cache, since the simulation started. */
+	double getPathCacheHitRatio();
+
+	/** Bytes allocated by the simulation thread per world tick, averaged over the last sampling window. */
+	long getAllocatedBytesPerTick();
+
+	long getTicks();
+}
@@ -0,0 +1,209 @@
+package swen30006.driving;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import tiles.MapTile;
+import tiles.TrapTile;
+
+/**
+ * Binary per-tick telemetry for the car. The simulation thread writes fixed-size records into a preallocated ring
+ * buffer without allocating or formatting anything, and a background thread drains the ring to a file.
+ *
+ * The file starts with a header of MAGIC and RECORD_SIZE (both big-endian ints), followed by records laid out as:
+ * tick (long), x, y, angle, speed, health (floats), key (int), tile type (byte, MapTile.Type ordinal) and trap
+ * (byte, one of the TRAP_* codes), padded to RECORD_SIZE bytes.
+ *
+ * If the drain thread falls behind and the ring fills up, new records are dropped and counted rather than blocking
+ * the simulation.
+ */
+public class Telemetry {
+
+	public static final int MAGIC = 0x544c4d31; // "TLM1"
+	public static final int RECORD_SIZE = 40;
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+
+	public static final byte TRAP_NONE = 0;
+	public static final byte TRAP_LAVA = 1;
+	public static final byte TRAP_HEALTH = 2;
+	public static final byte TRAP_GRASS = 3;
+	public static final byte TRAP_MUD = 4;
+	public static final byte TRAP_OTHER = 5;
+
+	private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private static volatile Telemetry active;
+
+	private final ByteBuffer ring;
+	private final int capacity;
+	private final FileChannel channel;
+	private final Thread drainThread;
+
+	// Sequence numbers of the next record to write and the next record to drain.
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean running = true;
+
+	private Telemetry(String fileName, int capacity) throws IOException {
+		this.capacity = capacity;
+		this.ring = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+		this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		ByteBuffer header = ByteBuffer.allocate(8);
+		header.putInt(MAGIC).putInt(RECORD_SIZE).flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+
+		drainThread = new Thread(this::drainLoop, "telemetry-drain");
+		drainThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts recording telemetry to the given file. Only one telemetry channel can be active at a time.
+	 * @param fileName is the file the records are written to. It is truncated first.
+	 * @param capacity is the number of records the ring buffer can hold before records are dropped.
+	 */
+	public static synchronized void start(String fileName, int capacity) {
+		if (active != null) {
+			return;
+		}
+		try {
+			Telemetry telemetry = new Telemetry(fileName, capacity);
+			telemetry.drainThread.start();
+			active = telemetry;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stops recording, flushing every record still in the ring buffer to the file.
+	 */
+	public static synchronized void stop() {
+		Telemetry telemetry = active;
+		if (telemetry == null) {
+			return;
+		}
+		active = null;
+		telemetry.running = false;
+		LockSupport.unpark(telemetry.drainThread);
+		try {
+			telemetry.drainThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static boolean isActive() {
+		return active != null;
+	}
+
+	/**
+	 * Returns the number of records dropped because the ring buffer was full, or 0 if telemetry is not active.
+	 */
+	public static long getDropped() {
+		Telemetry telemetry = active;
+		return telemetry == null ? 0 : telemetry.dropped.get();
+	}
+
+	/**
+	 * Records the state of the car for one tick. Must only be called from the simulation thread. Does nothing if
+	 * telemetry has not been started.
+	 */
+	public static void record(long tick, float x, float y, float angle, float speed, float health, int key,
+			MapTile tile) {
+		Telemetry telemetry = active;
+		if (telemetry != null) {
+			telemetry.write(tick, x, y, angle, speed, health, key, tile);
+		}
+	}
+
+	private void write(long tick, float x, float y, float angle, float speed, float health, int key, MapTile tile) {
+		long sequence = head.get();
+		if (sequence - tail.get() >= capacity) {
+			dropped.incrementAndGet();
+			return;
+		}
+
+		int offset = (int) (sequence % capacity) * RECORD_SIZE;
+		ring.putLong(offset, tick);
+		ring.putFloat(offset + 8, x);
+		ring.putFloat(offset + 12, y);
+		ring.putFloat(offset + 16, angle);
+		ring.putFloat(offset + 20, speed);
+		ring.putFloat(offset + 24, health);
+		ring.putInt(offset + 28, key);
+		ring.put(offset + 32, (byte) tile.getType().ordinal());
+		ring.put(offset + 33, trapCode(tile));
+
+		// Publish the record to the drain thread.
+		head.lazySet(sequence + 1);
+	}
+
+	private static byte trapCode(MapTile tile) {
+		if (!tile.isType(MapTile.Type.TRAP)) {
+			return TRAP_NONE;
+		}
+		switch (((TrapTile) tile).getTrap()) {
+		case "lava":
+			return TRAP_LAVA;
+		case "health":
+			return TRAP_HEALTH;
+		case "grass":
+			return TRAP_GRASS;
+		case "mud":
+			return TRAP_MUD;
+		default:
+			return TRAP_OTHER;
+		}
+	}
+
+	private void drainLoop() {
+		// The drain thread has its own view of the ring so the producer's buffer position is never touched.
+		ByteBuffer view = ring.duplicate();
+		try {
+			while (running) {
+				drain(view);
+				LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+			}
+			drain(view);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void drain(ByteBuffer view) throws IOException {
+		long from = tail.get();
+		long to = head.get();
+		while (from < to) {
+			int start = (int) (from % capacity);
+			int count = (int) Math.min(to - from, capacity - start);
+
+			view.limit((start + count) * RECORD_SIZE);
+			view.position(start * RECORD_SIZE);
+			while (view.hasRemaining()) {
+				channel.write(view);
+			}
+			view.clear();
+
+			from += count;
+			tail.lazySet(from);
+		}
+	}
+}
@@ -0,0 +1,459 @@
+package world;
+
+import tiles.HealthTrap;
+import tiles.LavaTrap;
+import tiles.MapTile;
+import tiles.MudTrap;
+import tiles.TrapTile;
+
+/**
+ * The car's dynamics (steering, driving and friction forces, speed clamps, reversing and wall collisions) over
+ * primitive fields, so a physics step allocates nothing.
+ *
+ * Every operation is written out in the same order, and with the same float/double conversions, as the Vector2 calls
+ * it replaces, so a car driven through this class follows exactly the same trajectory as before.
+ *
+ * Car drives its own instance every tick. A copy of that instance (see Car.getPhysicsSnapshot) is a forward model of
+ * the car: step() plays one tick of control inputs on it, and simulate() plays many control sequences at once.
+ */
+public final class CarPhysics {
+
+	public static final float MAX_SPEED = 5f;
+	public static final float MAX_REVERSE_SPEED = 2.5f;
+	public static final float ROTATING_FACTOR = 150f;
+	public static final float STEERING_ADJUST_FACTOR = 0.05f;
+	public static final float EPSILON = 0.01f;
+	public static final float TURN_EPSILON = 0.05f;
+	public static final float BRAKING_FORCE = 2f;
+	public static final float ACCELERATION = 2f;
+	public static final float MAX_DEGREES = 360;
+	public static final float FRICTION_FORCE = 0.5f;
+	public static final int WALL_DAMAGE = 5;
+	public static final float MAX_HEALTH = 100;
+	static final int SNAP_THRESHOLD = 5;
+
+	// Control bits for step(), mirroring Car's control methods. TURN_LEFT wins over TURN_RIGHT.
+	public static final int ACCELERATE = 1;
+	public static final int REVERSE = 2;
+	public static final int BRAKE = 4;
+	public static final int TURN_LEFT = 8;
+	public static final int TURN_RIGHT = 16;
+
+	// Same constants, and so the same rounding, as MathUtils.degreesToRadians and MathUtils.radiansToDegrees.
+	private static final float DEGREES_TO_RADIANS = 0.017453292f;
+	private static final float RADIANS_TO_DEGREES = 57.295776f;
+	private static final float COS_HALF_TURN = (float) Math.cos(MAX_DEGREES / 2 * DEGREES_TO_RADIANS);
+	private static final float SIN_HALF_TURN = (float) Math.sin(MAX_DEGREES / 2 * DEGREES_TO_RADIANS);
+
+	private final double xOffset;
+	private final double yOffset;
+
+	float x;
+	float y;
+	float vx;
+	float vy;
+	float rotation;
+	float angle;
+	boolean reverseDirection;
+	boolean wasReversing;
+	WorldSpatial.Direction orientation = WorldSpatial.Direction.EAST;
+	// Only tracked by step(); Car keeps its own health.
+	float health;
+
+	/**
+	 * @param xOffset is the distance from the car's centre to its front, used when checking for walls ahead.
+	 * @param yOffset is the distance from the car's centre to its side, used when checking for walls ahead.
+	 */
+	CarPhysics(double xOffset, double yOffset) {
+		this.xOffset = xOffset;
+		this.yOffset = yOffset;
+	}
+
+	public CarPhysics copy() {
+		CarPhysics copy = new CarPhysics(xOffset, yOffset);
+		copy.set(this);
+		return copy;
+	}
+
+	void set(CarPhysics other) {
+		x = other.x;
+		y = other.y;
+		vx = other.vx;
+		vy = other.vy;
+		rotation = other.rotation;
+		angle = other.angle;
+		reverseDirection = other.reverseDirection;
+		wasReversing = other.wasReversing;
+		orientation = other.orientation;
+		health = other.health;
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	public float getSpeed() {
+		return (float) Math.sqrt(vx * vx + vy * vy);
+	}
+
+	/** Returns the car's heading in degrees, in [0, 360). */
+	public float getAngle() {
+		return (rotation % 360 + 360) % 360;
+	}
+
+	public float getHealth() {
+		return health;
+	}
+
+	public WorldSpatial.Direction getOrientation() {
+		return orientation;
+	}
+
+	/**
+	 * Plays one tick on this model: the given controls, as if a controller had called the matching Car methods,
+	 * followed by the same update Car.update performs, including the effects of the trap the car is on.
+	 * @param controls is a combination of the ACCELERATE, REVERSE, BRAKE, TURN_LEFT and TURN_RIGHT bits.
+	 * @return whether the car moved; false means it hit a wall.
+	 */
+	public boolean step(int controls, float delta) {
+		MapTile tile = World.lookUp(x, y);
+		boolean onTrap = tile.isType(MapTile.Type.TRAP);
+		boolean canAccelerate = !onTrap || ((TrapTile) tile).canAccelerate();
+
+		boolean accelerating = (controls & ACCELERATE) != 0 && canAccelerate;
+		boolean reversing = (controls & REVERSE) != 0 && canAccelerate;
+		boolean handBrake = (controls & BRAKE) != 0;
+		if (reversing) {
+			wasReversing = true;
+		}
+		if ((controls & TURN_LEFT) != 0) {
+			turn(WorldSpatial.RelativeDirection.LEFT, reversing, delta);
+		} else if ((controls & TURN_RIGHT) != 0) {
+			turn(WorldSpatial.RelativeDirection.RIGHT, reversing, delta);
+		}
+
+		float speed = getSpeed();
+		float frictionForce = getFrictionForce(speed, handBrake);
+		if (onTrap) {
+			applyTrap((TrapTile) tile, delta);
+			speed = getSpeed();
+		}
+
+		boolean moved = update(tile, speed, frictionForce, accelerating, reversing, handBrake, delta);
+		if (!moved) {
+			health -= WALL_DAMAGE * delta;
+		}
+		angle = 0;
+		return moved;
+	}
+
+	/**
+	 * Plays every control sequence of 'rollouts' in the range [first, last) from this state, writing where each one
+	 * ends up into 'rollouts'. This state is left untouched, so disjoint ranges can be simulated from different threads.
+	 *
+	 * Only the front of the car is checked for walls, so a car turning past a corner can slide its centre into a wall
+	 * tile, where it can neither drive on nor back out. Ending a step like that counts as hitting the wall.
+	 */
+	public void simulate(Rollouts rollouts, float delta, int first, int last) {
+		CarPhysics model = new CarPhysics(xOffset, yOffset);
+		final int steps = rollouts.steps;
+		for (int sequence = first; sequence < last; sequence++) {
+			model.set(this);
+			int wallHitStep = -1;
+			int offset = sequence * steps;
+			for (int step = 0; step < steps; step++) {
+				boolean moved = model.step(rollouts.controls[offset + step], delta);
+				if (wallHitStep < 0 && (!moved || !World.isTraversable(model.x, model.y))) {
+					wallHitStep = step;
+				}
+			}
+			rollouts.x[sequence] = model.x;
+			rollouts.y[sequence] = model.y;
+			rollouts.speed[sequence] = model.getSpeed();
+			rollouts.angle[sequence] = model.getAngle();
+			rollouts.health[sequence] = model.health;
+			rollouts.wallHitStep[sequence] = wallHitStep;
+		}
+	}
+
+	/** Plays every control sequence of 'rollouts' from this state. */
+	public void simulate(Rollouts rollouts, float delta) {
+		simulate(rollouts, delta, 0, rollouts.sequences);
+	}
+
+	/**
+	 * The effect a trap has on this model, matching what TrapTile.applyTo does to a real car (keys aside).
+	 */
+	private void applyTrap(TrapTile trap, float delta) {
+		switch (trap.getTrap()) {
+		case "mud":
+			float xReduction = vx * MudTrap.SLOWDOWN_FACTOR * delta;
+			float yReduction = vy * MudTrap.SLOWDOWN_FACTOR * delta;
+			vx = vx - xReduction;
+			vy = vy - yReduction;
+			break;
+		case "lava":
+			health -= LavaTrap.HealthDelta * delta;
+			break;
+		case "health":
+			health += HealthTrap.HealthDelta * delta;
+			if (health > MAX_HEALTH) health = MAX_HEALTH;
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * The physics of a tick once the controls are set and the trap has had its effect: steering (unless the trap
+	 * prevents it), acceleration and movement.
+	 * @param tile is the tile the car is on.
+	 * @param speed is the car's speed after the trap's effect.
+	 * @param frictionForce is the friction from getFrictionForce, taken before the trap's effect.
+	 * @return whether the car moved; false means it hit a wall.
+	 */
+	boolean update(MapTile tile, float speed, float frictionForce, boolean accelerating, boolean reversing,
+			boolean handBrake, float delta) {
+		if (!tile.isType(MapTile.Type.TRAP) || ((TrapTile) tile).canTurn()) {
+			steer(speed, handBrake);
+		}
+
+		float drivingForce = 0;
+		if (accelerating || reversing) {
+			drivingForce = ACCELERATION;
+		}
+		accelerate(drivingForce, frictionForce, accelerating, reversing, delta);
+
+		return move(delta);
+	}
+
+	/**
+	 * Turns the steering wheel, snapping to a compass direction if the car gets close to it.
+	 * @param reversing is whether the car is reversing, which inverts the steering.
+	 */
+	void turn(WorldSpatial.RelativeDirection turnDirection, boolean reversing, float delta) {
+		if (turnDirection == WorldSpatial.RelativeDirection.LEFT) {
+			angle += ROTATING_FACTOR * delta;
+		} else {
+			angle -= ROTATING_FACTOR * delta;
+		}
+		if (reversing) {
+			angle *= -1;
+		}
+		snapTo(reversing, orientation, turnDirection);
+	}
+
+	/**
+	 * Returns the friction to apply this step: braking force if the hand brake is on and the car is moving, a little
+	 * rolling friction otherwise.
+	 * @param speed is the current speed of the car.
+	 */
+	static float getFrictionForce(float speed, boolean handBrake) {
+		if (handBrake && speed > EPSILON) {
+			return BRAKING_FORCE;
+		} else if (speed > 0) {
+			return FRICTION_FORCE;
+		}
+		return 0;
+	}
+
+	/**
+	 * Turns the car by the current steering angle and lets the steering wheel slowly return to the centre.
+	 * @param speed is the current speed of the car; a stationary car cannot turn.
+	 */
+	void steer(float speed, boolean handBrake) {
+		if (speed >= EPSILON && !handBrake) {
+			rotation += angle;
+			if (Math.abs(angle) >= TURN_EPSILON) {
+				int sign = angle > 0 ? 1 : -1;
+				float magnitude = Math.abs(angle) - Math.abs(angle) * STEERING_ADJUST_FACTOR;
+				angle = magnitude * sign;
+			} else {
+				angle = 0;
+			}
+		}
+	}
+
+	/**
+	 * Applies the engine and friction forces to the velocity, points the velocity along the car's rotation and
+	 * clamps it to the allowed speeds. A car that comes to a stop flips its direction of travel.
+	 */
+	void accelerate(float drivingForce, float frictionForce, boolean accelerating, boolean reversing, float delta) {
+		float radians = rotation * DEGREES_TO_RADIANS;
+		float cos = (float) Math.cos(radians);
+		float sin = (float) Math.sin(radians);
+
+		// Engine force along the car's heading.
+		float ax = 1f * cos - 0f * sin;
+		float ay = 1f * sin + 0f * cos;
+		ax *= drivingForce;
+		ay *= drivingForce;
+
+		// Friction opposes the engine force, or the car's heading if the engine is off. The unit heading scaled by
+		// a positive force is never the zero vector, so this is the same test as checking its length.
+		float frictionDegrees;
+		if (drivingForce > 0) {
+			float accelerationDegrees = (float) Math.atan2(ay, ax) * RADIANS_TO_DEGREES;
+			if (accelerationDegrees < 0) {
+				accelerationDegrees += MAX_DEGREES;
+			}
+			frictionDegrees = accelerationDegrees - MAX_DEGREES / 2;
+		} else {
+			frictionDegrees = (rotation - MAX_DEGREES / 2) % MAX_DEGREES;
+		}
+		float frictionRadians = frictionDegrees * DEGREES_TO_RADIANS;
+		float frictionCos = (float) Math.cos(frictionRadians);
+		float frictionSin = (float) Math.sin(frictionRadians);
+		float fx = (1f * frictionCos - 0f * frictionSin) * frictionForce;
+		float fy = (1f * frictionSin + 0f * frictionCos) * frictionForce;
+
+		float netX = ax + fx;
+		float netY = ay + fy;
+
+		// Point the velocity along the car's rotation, keeping its magnitude.
+		float speed = getSpeed();
+		vx = speed * cos - 0f * sin;
+		vy = speed * sin + 0f * cos;
+
+		if ((reverseDirection && accelerating) || (!reverseDirection && reversing)) {
+			vx -= netX * delta;
+			vy -= netY * delta;
+		} else {
+			vx += netX * delta;
+			vy += netY * delta;
+		}
+
+		speed = getSpeed();
+		if (speed > MAX_SPEED && !reversing) {
+			float scalar = 1 / (speed / MAX_SPEED);
+			vx *= scalar;
+			vy *= scalar;
+		} else if (speed > MAX_REVERSE_SPEED && reversing) {
+			float scalar = 1 / (speed / MAX_REVERSE_SPEED);
+			vx *= scalar;
+			vy *= scalar;
+		} else if (speed < 2 * EPSILON) {
+			vx = 0;
+			vy = 0;
+			reverseDirection = !reverseDirection;
+			wasReversing = false;
+		}
+
+		if (reverseDirection) {
+			float reversedX = vx * COS_HALF_TURN - vy * SIN_HALF_TURN;
+			float reversedY = vx * SIN_HALF_TURN + vy * COS_HALF_TURN;
+			vx = reversedX;
+			vy = reversedY;
+		}
+	}
+
+	/**
+	 * Moves the car along its velocity, unless the front of the car would end up in a wall or off the map, in which
+	 * case the car stops dead.
+	 * @return whether the car moved; false means it hit a wall.
+	 */
+	boolean move(float delta) {
+		double futureX = x + vx * delta;
+		double futureY = y + vy * delta;
+		if (vx > 0) {
+			futureX += xOffset;
+		}
+		if (vx < 0) {
+			futureX -= xOffset;
+		}
+
+		if (vy > 0) {
+			futureY += yOffset;
+		} else {
+			futureY -= xOffset;
+		}
+
+		if (World.isTraversable(futureX, futureY)) {
+			x = x + vx * delta;
+			y = y + vy * delta;
+			return true;
+		}
+		vx = 0;
+		vy = 0;
+		return false;
+	}
+
+	private void snapTo(boolean reversing, WorldSpatial.Direction currentOrientation, WorldSpatial.RelativeDirection turnDirection) {
+		float angleDifference = SNAP_THRESHOLD;
+		if((!reversing && turnDirection.equals(WorldSpatial.RelativeDirection.LEFT)) || (reversing && turnDirection.equals(WorldSpatial.RelativeDirection.RIGHT))){
+
+			switch(currentOrientation){
+			case EAST:
+				angleDifference = WorldSpatial.NORTH_DEGREE - getAngle();
+				if(angleDifference >= 0 && angleDifference < SNAP_THRESHOLD){
+					angle = angleDifference;
+					this.orientation = WorldSpatial.Direction.NORTH;
+				}
+				break;
+			case NORTH:
+				angleDifference = WorldSpatial.WEST_DEGREE - getAngle();
+				if(angleDifference >= 0 && angleDifference < SNAP_THRESHOLD){
+					angle = angleDifference;
+					this.orientation = WorldSpatial.Direction.WEST;
+				}
+				break;
+			case SOUTH:
+				angleDifference = WorldSpatial.EAST_DEGREE_MAX - getAngle();
+				if(angleDifference >= 0 && angleDifference < SNAP_THRESHOLD){
+					angle = angleDifference;
+					this.orientation = WorldSpatial.Direction.EAST;
+				}
+				break;
+			case WEST:
+				angleDifference = WorldSpatial.SOUTH_DEGREE - getAngle();
+				if(angleDifference >= 0 && angleDifference < SNAP_THRESHOLD){
+					angle = angleDifference;
+					this.orientation = WorldSpatial.Direction.SOUTH;
+				}
+				break;
+			default:
+				break;
+
+			}
+		}
+		else if((!reversing && turnDirection.equals(WorldSpatial.RelativeDirection.RIGHT)) || (reversing && turnDirection.equals(WorldSpatial.RelativeDirection.LEFT))){
+			switch(currentOrientation){
+			case EAST:
+				angleDifference = getAngle() - WorldSpatial.SOUTH_DEGREE;
+				if(angleDifference >= 0 && angleDifference < SNAP_THRESHOLD){
+					angle = -angleDifference;
+					this.orientation = WorldSpatial.Direction.SOUTH;
+				}
+				break;
+			case NORTH:
+				angleDifference = getAngle();
+				if(angleDifference >= 0 && angleDifference < SNAP_THRESHOLD){
+					angle = -angleDifference;
+					this.orientation = WorldSpatial.Direction.EAST;
+				}
+				break;
+			case SOUTH:
+				angleDifference = getAngle() - WorldSpatial.WEST_DEGREE;
+				if(angleDifference >= 0 && angleDifference < SNAP_THRESHOLD){
+					angle = -angleDifference;
+					this.orientation = WorldSpatial.Direction.WEST;
+				}
+				break;
+			case WEST:
+				angleDifference = getAngle() - WorldSpatial.NORTH_DEGREE;
+				if(angleDifference >= 0 && angleDifference < SNAP_THRESHOLD){
+					angle = -angleDifference;
+					this.orientation = WorldSpatial.Direction.NORTH;
+				}
+				break;
+			default:
+				break;
+
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package world;
+
+/**
+ * A batch of control sequences for CarPhysics.simulate, and where the car ends up after each of them. Everything is
+ * held in preallocated primitive arrays so that a batch can be refilled and simulated every frame without garbage.
+ */
+public final class Rollouts {
+
+	public final int sequences;
+	public final int steps;
+
+	/** CarPhysics control bits, laid out as [sequence * steps + step]. */
+	public final byte[] controls;
+
+	// Results, one per sequence.
+	public final float[] x;
+	public final float[] y;
+	public final float[] speed;
+	public final float[] angle;
+	public final float[] health;
+	/** The first step at which the car hit a wall or ended up in one, or -1 if it never did. */
+	public final int[] wallHitStep;
+
+	public Rollouts(int sequences, int steps) {
+		this.sequences = sequences;
+		this.steps = steps;
+		this.controls = new byte[sequences * steps];
+		this.x = new float[sequences];
+		this.y = new float[sequences];
+		this.speed = new float[sequences];
+		this.angle = new float[sequences];
+		this.health = new float[sequences];
+		this.wallHitStep = new int[sequences];
+	}
+
+	public void setControls(int sequence, int step, int controls) {
+		this.controls[sequence * steps + step] = (byte) controls;
+	}
+
+	public int getControls(int sequence, int step) {
+		return controls[sequence * steps + step];
+	}
+}
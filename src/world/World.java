@@ -44,6 +44,10 @@ public class World {
 	private static Coordinate start, carStart;
 	private static List<Coordinate> finish = new ArrayList<Coordinate>();
 	
+	// Same tiles as mapTiles, indexed [x][y], so the car's per-tick lookups don't allocate
+	private static MapTile[][] tileGrid = new MapTile[0][0];
+	private static final MapTile EMPTY_TILE = new MapTile(MapTile.Type.EMPTY);
+	
 	public World(TiledMap map, String controllerName){
 		World.map = map;
 		TiledMapTileLayer roadLayer = (TiledMapTileLayer) getTiledMap().getLayers().get("Road");
@@ -133,9 +137,19 @@ public class World {
 		for (int i = 0; i < keys.size(); i++) assert(keys.get(i) == i+1);
 		assert(null != start);
 		assert(finish.size() > 0);
+		buildTileGrid();
 		return keys.size()+1; // the key that will unlock the key with the highest number
 	}
 
+	static void buildTileGrid() {
+		tileGrid = new MapTile[MAP_WIDTH][MAP_HEIGHT+1];
+		for(Coordinate coord : mapTiles.keySet()){
+			if(coord.x >= 0 && coord.x < MAP_WIDTH && coord.y >= 0 && coord.y <= MAP_HEIGHT){
+				tileGrid[coord.x][coord.y] = mapTiles.get(coord);
+			}
+		}
+	}
+
 	public void update(float delta){
 		controller.update(delta);
 
@@ -166,8 +180,15 @@ public class World {
 	protected static MapTile lookUp(double futureX, double futureY){
 		int x = (int) Math.round(futureX);
 		int y =  MAP_HEIGHT - (int) Math.round(futureY); // Convert Y coordinate
-		Coordinate coord = new Coordinate(x,y);
-		return mapTiles.containsKey(coord) ? mapTiles.get(coord) : new MapTile(MapTile.Type.EMPTY);
+		if(x < 0 || x >= tileGrid.length || y < 0 || y >= tileGrid[x].length || tileGrid[x][y] == null){
+			return EMPTY_TILE;
+		}
+		return tileGrid[x][y];
+	}
+	
+	static boolean isTraversable(double futureX, double futureY){
+		MapTile tile = lookUp(futureX, futureY);
+		return !tile.isType(MapTile.Type.EMPTY) && !tile.isType(MapTile.Type.WALL);
 	}
 	
 	public Car getCar(){